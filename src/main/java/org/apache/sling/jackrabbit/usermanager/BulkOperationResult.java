@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The outcome for one of the records of a bulk operation.
+ *
+ * @param index the zero based position of the record in the supplied records
+ * @param id the id of the user or group the record was applied to or null if it is not known
+ * @param error the reason the record could not be applied or null if it was applied
+ *
+ * @since 2.7.0
+ */
+public record BulkOperationResult(long index, @Nullable String id, @Nullable String error) {
+
+    /**
+     * @return true if the record was applied and saved
+     */
+    public boolean isSuccessful() {
+        return error == null;
+    }
+}
@@ -21,8 +21,10 @@ package org.apache.sling.jackrabbit.usermanager;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import org.apache.jackrabbit.api.security.user.Group;
 import org.apache.sling.servlets.post.Modification;
@@ -65,4 +67,51 @@ public interface CreateGroup {
             throws RepositoryException {
         return createGroup(jcrSession, null, properties, changes);
     }
+
+    /**
+     * Create many groups and their memberships in one operation. Each record
+     * holds the same keys as the parameters of a single create request: the
+     * optional <code>:name</code> (or name hint), any properties of the group
+     * and the <code>:member</code> values, which are the ids of the declared
+     * members. The values should be either a String or String[].
+     * <p>
+     * The outcome of each record is passed to the consumer once it is known. A
+     * record that can not be applied, or that the iterator can not provide because
+     * it is malformed (signaled by an {@link IllegalArgumentException} from
+     * {@link Iterator#next()}), does not stop the other records from being
+     * created. Implementations may create all the groups before adding the
+     * members, so the members may be groups of later records, and may report a
+     * record again when some of its members could not be added.
+     * </p>
+     *
+     * @param jcrSession the JCR session of the user creating the groups
+     * @param records the groups to create, which are consumed one at a time
+     * @param chunkSize the maximum number of groups to change before the changes are saved
+     * @param results receives the outcome of each record
+     * @param changes The list of changes for this operation (optional)
+     * @throws RepositoryException if the groups can't be created at all
+     * @since 2.7.0
+     */
+    public default void createGroups(
+            Session jcrSession,
+            Iterator<? extends Map<String, ?>> records,
+            int chunkSize,
+            Consumer<BulkOperationResult> results,
+            List<Modification> changes)
+            throws RepositoryException {
+        long index = 0;
+        while (records.hasNext()) {
+            try {
+                Group group = createGroup(jcrSession, records.next(), changes);
+                if (jcrSession.hasPendingChanges()) {
+                    jcrSession.save();
+                }
+                results.accept(new BulkOperationResult(index, group == null ? null : group.getID(), null));
+            } catch (RepositoryException | IllegalArgumentException e) {
+                jcrSession.refresh(false);
+                results.accept(new BulkOperationResult(index, null, e.getMessage()));
+            }
+            index++;
+        }
+    }
 }
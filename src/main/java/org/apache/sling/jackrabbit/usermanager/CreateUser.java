@@ -21,8 +21,10 @@ package org.apache.sling.jackrabbit.usermanager;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import org.apache.jackrabbit.api.security.user.User;
 import org.apache.sling.servlets.post.Modification;
@@ -80,4 +82,66 @@ public interface CreateUser {
             throws RepositoryException {
         return createUser(jcrSession, null, password, passwordConfirm, properties, changes);
     }
+
+    /**
+     * Create many users in one operation. Each record holds the same keys as the
+     * parameters of a single create request: the optional <code>:name</code>
+     * (or name hint), <code>pwd</code>, <code>pwdConfirm</code> and any
+     * properties of the user. The values should be either a String or String[].
+     * <p>
+     * The outcome of each record is passed to the consumer once it is known. A
+     * record that can not be applied, or that the iterator can not provide because
+     * it is malformed (signaled by an {@link IllegalArgumentException} from
+     * {@link Iterator#next()}), does not stop the other records from being
+     * created. Implementations may save the changes after each chunk of records
+     * instead of after each record.
+     * </p>
+     *
+     * @param jcrSession the JCR session of the user creating the users
+     * @param records the users to create, which are consumed one at a time
+     * @param chunkSize the maximum number of users to create before the changes are saved
+     * @param results receives the outcome of each record
+     * @param changes The list of changes for this operation (optional)
+     * @throws RepositoryException if the users can't be created at all
+     * @since 2.7.0
+     */
+    public default void createUsers(
+            Session jcrSession,
+            Iterator<? extends Map<String, ?>> records,
+            int chunkSize,
+            Consumer<BulkOperationResult> results,
+            List<Modification> changes)
+            throws RepositoryException {
+        long index = 0;
+        while (records.hasNext()) {
+            try {
+                Map<String, ?> record = records.next();
+                User user = createUser(
+                        jcrSession, null, firstValue(record, "pwd"), firstValue(record, "pwdConfirm"), record, changes);
+                if (jcrSession.hasPendingChanges()) {
+                    jcrSession.save();
+                }
+                results.accept(new BulkOperationResult(index, user == null ? null : user.getID(), null));
+            } catch (RepositoryException | IllegalArgumentException e) {
+                jcrSession.refresh(false);
+                results.accept(new BulkOperationResult(index, null, e.getMessage()));
+            }
+            index++;
+        }
+    }
+
+    /**
+     * Get the first of the values of a record of {@link #createUsers}
+     *
+     * @param record the record to get the value from
+     * @param key the key of the value
+     * @return the first value or null if there is none
+     */
+    private static String firstValue(Map<String, ?> record, String key) {
+        Object value = record.get(key);
+        if (value instanceof String[] values) {
+            value = values.length == 0 ? null : values[0];
+        }
+        return value == null ? null : value.toString();
+    }
 }
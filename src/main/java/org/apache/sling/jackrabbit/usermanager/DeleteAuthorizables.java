@@ -22,6 +22,7 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.servlets.post.Modification;
@@ -49,4 +50,43 @@ public interface DeleteAuthorizables {
     public void deleteAuthorizables(
             Session jcrSession, Resource baseResource, String[] paths, List<Modification> changes)
             throws RepositoryException;
+
+    /**
+     * Deletes many users or groups from the repository, saving the changes once
+     * for each chunk of removals so the unsaved changes stay small. The outcome
+     * of each path is passed to the consumer once its removal was saved or
+     * discarded, with the index of the path in the supplied array. A path that
+     * can not be resolved or removed does not stop the other removals, and the
+     * removals that were saved stay applied when the operation is stopped.
+     *
+     * @param jcrSession the JCR session of the user deleting the users or groups
+     * @param baseResource the base resource to calculate the relative paths from (required)
+     * @param paths An array of relative resource paths to Authorizables to be deleted (required)
+     * @param chunkSize the maximum number of removals before the changes are saved
+     * @param results receives the outcome of each path
+     * @param changes The list of changes for this operation (optional)
+     * @throws RepositoryException if the removals were stopped
+     * @since 2.7.0
+     */
+    public default void deleteAuthorizables(
+            Session jcrSession,
+            Resource baseResource,
+            String[] paths,
+            int chunkSize,
+            Consumer<BulkOperationResult> results,
+            List<Modification> changes)
+            throws RepositoryException {
+        for (int i = 0; i < paths.length; i++) {
+            try {
+                deleteAuthorizables(jcrSession, baseResource, new String[] {paths[i]}, changes);
+                if (jcrSession.hasPendingChanges()) {
+                    jcrSession.save();
+                }
+                results.accept(new BulkOperationResult(i, null, null));
+            } catch (RepositoryException e) {
+                jcrSession.refresh(false);
+                results.accept(new BulkOperationResult(i, null, e.getMessage()));
+            }
+        }
+    }
 }
@@ -21,8 +21,13 @@ package org.apache.sling.jackrabbit.usermanager.impl.post;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.jackrabbit.api.JackrabbitSession;
 import org.apache.jackrabbit.api.security.user.Authorizable;
@@ -39,10 +44,31 @@ import org.apache.sling.servlets.post.SlingPostConstants;
 public abstract class AbstractGroupPostServlet extends AbstractAuthorizablePostServlet {
     private static final long serialVersionUID = 1159063041816944076L;
 
+    /**
+     * The parameter holding the complete set of declared members of the group
+     */
+    static final String PARAM_MEMBER_SET = SlingPostConstants.RP_PREFIX + "memberSet";
+
+    /**
+     * The maximum number of ids that are passed to the group in one call
+     */
+    private static final int MEMBER_BATCH_SIZE = 1000;
+
     /**
      * Update the group membership based on the ":member" request parameters. If
      * the ":member" value ends with @Delete it is removed from the group
      * membership, otherwise it is added to the group membership.
+     * <p>
+     * If the ":memberSet" parameter is present, its values are the complete
+     * set of declared members. It is compared with the current declared members
+     * and only the difference is applied, before any ":member" values.
+     * </p>
+     * <p>
+     * The values that are plain ids are passed to the group in one call, so the
+     * membership is updated once instead of once for each member. Only the
+     * values that are paths are resolved one at a time, while the ids that the
+     * group did not accept are not members or do not exist.
+     * </p>
      *
      * @param baseResource the group resource of the {@code authorizable}
      * @param properties the request parameters
@@ -62,24 +88,42 @@ public abstract class AbstractGroupPostServlet extends AbstractAuthorizablePostS
 
             UserManager userManager = ((JackrabbitSession) resolver.adaptTo(Session.class)).getUserManager();
 
+            // replace the declared members with any posted as ":memberSet"
+            if (properties.containsKey(PARAM_MEMBER_SET)) {
+                changed = updateMemberSet(
+                        group,
+                        convertToStringArray(properties.get(PARAM_MEMBER_SET)),
+                        baseResource,
+                        userManager,
+                        resolver);
+            }
+
             // first remove any members posted as ":member@Delete"
             String[] membersToDelete = convertToStringArray(
                     properties.get(SlingPostConstants.RP_PREFIX + "member" + SlingPostConstants.SUFFIX_DELETE));
-            for (String member : membersToDelete) {
+            List<String> paths = new ArrayList<>();
+            String[] ids = splitIds(membersToDelete, paths);
+            if (ids.length > 0) {
+                changed |= group.removeMembers(ids).size() < ids.length;
+            }
+            for (String member : paths) {
                 Authorizable memberAuthorizable = getAuthorizable(baseResource, member, userManager, resolver);
                 if (memberAuthorizable != null) {
-                    group.removeMember(memberAuthorizable);
-                    changed = true;
+                    changed |= group.removeMember(memberAuthorizable);
                 }
             }
 
             // second add any members posted as ":member"
             String[] membersToAdd = convertToStringArray(properties.get(SlingPostConstants.RP_PREFIX + "member"));
-            for (String member : membersToAdd) {
+            paths.clear();
+            ids = splitIds(membersToAdd, paths);
+            if (ids.length > 0) {
+                changed |= group.addMembers(ids).size() < ids.length;
+            }
+            for (String member : paths) {
                 Authorizable memberAuthorizable = getAuthorizable(baseResource, member, userManager, resolver);
                 if (memberAuthorizable != null) {
-                    group.addMember(memberAuthorizable);
-                    changed = true;
+                    changed |= group.addMember(memberAuthorizable);
                 }
             }
 
@@ -91,6 +135,74 @@ public abstract class AbstractGroupPostServlet extends AbstractAuthorizablePostS
         }
     }
 
+    /**
+     * Applies the difference between the declared members of the group and
+     * the requested members, so nothing is written when they are the same.
+     *
+     * @param group the group to update
+     * @param memberSet the ids or paths of all the requested members
+     * @return true if the members were changed
+     * @throws RepositoryException when updating the membership failed
+     */
+    private boolean updateMemberSet(
+            Group group, String[] memberSet, Resource baseResource, UserManager userManager, ResourceResolver resolver)
+            throws RepositoryException {
+        List<String> paths = new ArrayList<>();
+        Set<String> requested = new HashSet<>(Arrays.asList(splitIds(memberSet, paths)));
+        for (String path : paths) {
+            Authorizable memberAuthorizable = getAuthorizable(baseResource, path, userManager, resolver);
+            if (memberAuthorizable != null) {
+                requested.add(memberAuthorizable.getID());
+            }
+        }
+
+        List<String> toRemove = new ArrayList<>();
+        Iterator<Authorizable> declaredMembers = group.getDeclaredMembers();
+        while (declaredMembers.hasNext()) {
+            String id = declaredMembers.next().getID();
+            // what is left over afterwards needs to be added
+            if (!requested.remove(id)) {
+                toRemove.add(id);
+            }
+        }
+
+        boolean changed = false;
+        for (int from = 0; from < toRemove.size(); from += MEMBER_BATCH_SIZE) {
+            String[] batch = toRemove.subList(from, Math.min(toRemove.size(), from + MEMBER_BATCH_SIZE))
+                    .toArray(new String[0]);
+            changed |= group.removeMembers(batch).size() < batch.length;
+        }
+        List<String> toAdd = new ArrayList<>(requested);
+        for (int from = 0; from < toAdd.size(); from += MEMBER_BATCH_SIZE) {
+            String[] batch = toAdd.subList(from, Math.min(toAdd.size(), from + MEMBER_BATCH_SIZE))
+                    .toArray(new String[0]);
+            changed |= group.addMembers(batch).size() < batch.length;
+        }
+        return changed;
+    }
+
+    /**
+     * Separates the values that can only be ids from the values that may be paths.
+     *
+     * @param members the posted member values
+     * @param paths receives the values that are or contain a relative path
+     * @return the values that are plain ids
+     */
+    private static String[] splitIds(String[] members, List<String> paths) {
+        List<String> ids = new ArrayList<>(members.length);
+        for (String member : members) {
+            if (member.isEmpty()) {
+                continue;
+            }
+            if (member.indexOf('/') >= 0 || ".".equals(member) || "..".equals(member)) {
+                paths.add(member);
+            } else {
+                ids.add(member);
+            }
+        }
+        return ids.toArray(new String[0]);
+    }
+
     /**
      * Gets the member, assuming its a principal name, failing that it assumes it a path to the resource.
      * @param member the token pointing to the member, either a name or a uri
@@ -23,12 +23,18 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -40,6 +46,8 @@ import org.apache.sling.api.resource.ResourceNotFoundException;
 import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.servlets.SlingJakartaAllMethodsServlet;
 import org.apache.sling.api.wrappers.SlingRequestPaths;
+import org.apache.sling.jackrabbit.usermanager.BulkOperationResult;
+import org.apache.sling.jackrabbit.usermanager.impl.resource.AuthorizableChangeListener;
 import org.apache.sling.servlets.post.JakartaHtmlResponse;
 import org.apache.sling.servlets.post.JakartaJSONResponse;
 import org.apache.sling.servlets.post.JakartaPostResponse;
@@ -47,6 +55,9 @@ import org.apache.sling.servlets.post.JakartaPostResponseCreator;
 import org.apache.sling.servlets.post.Modification;
 import org.apache.sling.servlets.post.SlingPostConstants;
 import org.osgi.framework.Constants;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -68,6 +79,15 @@ public abstract class AbstractPostServlet extends SlingJakartaAllMethodsServlet
     /** Cached array of post response creators used during request processing. */
     private transient JakartaPostResponseCreator[] cachedPostResponseCreators = new JakartaPostResponseCreator[0];
 
+    /** The listeners to notify about the changed users and groups */
+    private final transient List<AuthorizableChangeListener> authorizableChangeListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * The ids of the users and groups that were changed by the post request
+     * that is handled by the current thread
+     */
+    private final transient ThreadLocal<Set<String>> pendingAuthorizableChanges = new ThreadLocal<>();
+
     /*
      * (non-Javadoc)
      * @see
@@ -98,6 +118,9 @@ public abstract class AbstractPostServlet extends SlingJakartaAllMethodsServlet
         Session session = request.getResourceResolver().adaptTo(Session.class);
 
         final List<Modification> changes = new ArrayList<>();
+        // the listeners are notified once the changes were saved or discarded
+        final Set<String> changedAuthorizableIds = new LinkedHashSet<>();
+        pendingAuthorizableChanges.set(changedAuthorizableIds);
 
         try {
             handleOperation(request, response, changes);
@@ -158,6 +181,8 @@ public abstract class AbstractPostServlet extends SlingJakartaAllMethodsServlet
             } catch (RepositoryException e) {
                 log.warn("RepositoryException in finally block: {}", e.getMessage(), e);
             }
+            pendingAuthorizableChanges.remove();
+            changedAuthorizableIds.forEach(this::fireAuthorizableChange);
         }
 
         // check for redirect URL if processing succeeded
@@ -406,6 +431,44 @@ public abstract class AbstractPostServlet extends SlingJakartaAllMethodsServlet
         }
     }
 
+    /**
+     * Bind a new authorizable change listener. Unlike the post response creators,
+     * the listeners are the same for each servlet, so the reference is inherited
+     * by the subclasses (see the dsannotations-options instruction in bnd.bnd).
+     */
+    @Reference(
+            service = AuthorizableChangeListener.class,
+            cardinality = ReferenceCardinality.MULTIPLE,
+            policy = ReferencePolicy.DYNAMIC)
+    protected void bindAuthorizableChangeListener(final AuthorizableChangeListener listener) {
+        this.authorizableChangeListeners.add(listener);
+    }
+
+    /**
+     * Unbind an authorizable change listener
+     */
+    protected void unbindAuthorizableChangeListener(final AuthorizableChangeListener listener) {
+        this.authorizableChangeListeners.remove(listener);
+    }
+
+    /**
+     * Notify the listeners that the user or group was created, changed or removed.
+     * While a post request is handled, the listeners are notified after the
+     * changes of the request were saved.
+     *
+     * @param authorizableId the id of the changed user or group
+     */
+    protected void fireAuthorizableChange(final String authorizableId) {
+        Set<String> pending = pendingAuthorizableChanges.get();
+        if (pending != null) {
+            pending.add(authorizableId);
+        } else {
+            for (AuthorizableChangeListener listener : this.authorizableChangeListeners) {
+                listener.onChange(authorizableId);
+            }
+        }
+    }
+
     /**
      * Update the post response creator cache
      * This method is called by sync'ed methods, no need to add additional syncing.
@@ -427,4 +490,81 @@ public abstract class AbstractPostServlet extends SlingJakartaAllMethodsServlet
     }
 
     private static final record JakartaPostResponseCreatorHolder(JakartaPostResponseCreator creator, int ranking) {}
+
+    /**
+     * Applies the records of a bulk request
+     */
+    @FunctionalInterface
+    protected interface BulkOperation {
+
+        /**
+         * @param results receives the outcome of each record
+         * @param changes receives the changes that were saved
+         * @throws RepositoryException if the operation was stopped
+         */
+        void apply(Consumer<BulkOperationResult> results, List<Modification> changes) throws RepositoryException;
+    }
+
+    /**
+     * Drops the changes of a bulk request, so the memory used does not depend
+     * on the number of records
+     */
+    private static final class DiscardedChanges extends AbstractList<Modification> {
+
+        @Override
+        public boolean add(Modification modification) {
+            return true;
+        }
+
+        @Override
+        public Modification get(int index) {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+    }
+
+    /**
+     * Streams the outcome of each record of a bulk request as a JSON report
+     * instead of the usual post response.
+     *
+     * @param request the bulk request
+     * @param httpResponse the response to write the report to
+     * @param pathPrefix the prefix of the resource path of the users or groups, or null
+     *          if the report should not contain the paths
+     * @param operation applies the records
+     * @throws IOException if the report could not be written
+     */
+    protected void doBulkOperation(
+            SlingJakartaHttpServletRequest request,
+            SlingJakartaHttpServletResponse httpResponse,
+            String pathPrefix,
+            BulkOperation operation)
+            throws IOException {
+        Session session = request.getResourceResolver().adaptTo(Session.class);
+        httpResponse.setContentType("application/json");
+        httpResponse.setCharacterEncoding("UTF-8");
+        try (BulkOperationReport report = new BulkOperationReport(httpResponse.getWriter(), pathPrefix)) {
+            Exception failure = null;
+            try {
+                // the outcome is reported per record, so the changes are not kept
+                operation.apply(report, new DiscardedChanges());
+            } catch (RepositoryException | UncheckedIOException e) {
+                log.warn("Bulk operation stopped: {}", e.getMessage());
+                failure = e;
+            } finally {
+                try {
+                    if (session != null && session.hasPendingChanges()) {
+                        session.refresh(false);
+                    }
+                } catch (RepositoryException e) {
+                    log.warn("RepositoryException in finally block: {}", e.getMessage(), e);
+                }
+            }
+            report.finish(failure);
+        }
+    }
 }
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.post;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.apache.sling.jackrabbit.usermanager.BulkOperationResult;
+import org.apache.sling.servlets.post.Modification;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies the records of a bulk operation and saves the changes once for
+ * each chunk of records instead of once for each record.
+ * <p>
+ * When a record fails after changes were made for it or a chunk can not be
+ * saved, the unsaved changes are discarded and the other records of the chunk
+ * are applied again one at a time, so a bad record only fails itself. The
+ * outcome of each record is reported once its changes were saved or discarded,
+ * and the results are flushed after each chunk when they are {@link Flushable}.
+ * </p>
+ *
+ * @param <T> the type of the records
+ */
+final class BulkChunk<T extends BulkChunk.Item> {
+
+    /**
+     * default log
+     */
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * A record of the bulk operation
+     */
+    interface Item {
+
+        /**
+         * @return the position of the record
+         */
+        long index();
+
+        /**
+         * @return the id of the user or group of the record
+         */
+        String id();
+    }
+
+    /**
+     * Makes the changes for one record without saving them
+     *
+     * @param <T> the type of the records
+     */
+    @FunctionalInterface
+    interface Step<T> {
+
+        /**
+         * @param item the record to apply
+         * @param changes the changes for the record
+         * @return a problem to report for the record even though its changes are
+         *          saved, or null if the record was applied completely
+         * @throws RepositoryException if the record could not be applied
+         */
+        @Nullable
+        String apply(@NotNull T item, @NotNull List<Modification> changes) throws RepositoryException;
+    }
+
+    private record Entry<T>(T item, List<Modification> changes, String problem) {}
+
+    private final Session session;
+    private final int chunkSize;
+    private final Step<T> step;
+    private final Consumer<BulkOperationResult> results;
+    private final List<Modification> changes;
+    private final Consumer<T> onSaved;
+    private final List<Entry<T>> entries = new ArrayList<>();
+
+    /**
+     * @param session the session to make the changes with
+     * @param chunkSize the maximum number of records to apply before the changes are saved
+     * @param step makes the changes for one record
+     * @param results receives the outcome of each record
+     * @param changes receives the changes of the records that were saved
+     * @param onSaved receives each record that was saved
+     */
+    BulkChunk(
+            @NotNull Session session,
+            int chunkSize,
+            @NotNull Step<T> step,
+            @NotNull Consumer<BulkOperationResult> results,
+            @NotNull List<Modification> changes,
+            @NotNull Consumer<T> onSaved) {
+        this.session = session;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.step = step;
+        this.results = results;
+        this.changes = changes;
+        this.onSaved = onSaved;
+    }
+
+    /**
+     * Apply the record and save the changes if the chunk is full
+     *
+     * @param item the record to apply
+     * @throws RepositoryException if the changes could not be discarded
+     */
+    void add(@NotNull T item) throws RepositoryException {
+        List<Modification> itemChanges = new ArrayList<>();
+        String problem;
+        try {
+            problem = step.apply(item, itemChanges);
+        } catch (RepositoryException e) {
+            // the partial changes of this record can not be discarded on their own
+            session.refresh(false);
+            applyOneAtATime();
+            results.accept(new BulkOperationResult(item.index(), item.id(), e.getMessage()));
+            return;
+        }
+        entries.add(new Entry<>(item, itemChanges, problem));
+        if (entries.size() >= chunkSize) {
+            save();
+        }
+    }
+
+    /**
+     * Save the changes of the records of the chunk
+     *
+     * @throws RepositoryException if the changes could not be discarded
+     */
+    void save() throws RepositoryException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            session.save();
+        } catch (RepositoryException e) {
+            log.debug("Failed to save the chunk, applying the records one at a time", e);
+            session.refresh(false);
+            applyOneAtATime();
+            return;
+        }
+        for (Entry<T> entry : entries) {
+            saved(entry.item(), entry.changes(), entry.problem());
+        }
+        entries.clear();
+        flushResults();
+    }
+
+    private void applyOneAtATime() throws RepositoryException {
+        List<Entry<T>> pending = new ArrayList<>(entries);
+        entries.clear();
+        for (Entry<T> entry : pending) {
+            T item = entry.item();
+            List<Modification> itemChanges = new ArrayList<>();
+            String problem;
+            try {
+                problem = step.apply(item, itemChanges);
+                session.save();
+            } catch (RepositoryException e) {
+                session.refresh(false);
+                results.accept(new BulkOperationResult(item.index(), item.id(), e.getMessage()));
+                continue;
+            }
+            saved(item, itemChanges, problem);
+        }
+        flushResults();
+    }
+
+    /**
+     * Pass on the outcomes of the chunk, if the results are written somewhere
+     */
+    private void flushResults() {
+        if (results instanceof Flushable flushable) {
+            try {
+                flushable.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void saved(T item, List<Modification> itemChanges, String problem) {
+        changes.addAll(itemChanges);
+        onSaved.accept(item);
+        results.accept(new BulkOperationResult(item.index(), item.id(), problem));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.post;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.function.Consumer;
+
+import jakarta.json.Json;
+import jakarta.json.stream.JsonGenerator;
+import org.apache.sling.jackrabbit.usermanager.BulkOperationResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Writes the outcome of each record of a bulk operation as soon as it is known,
+ * so the memory used does not depend on the number of records.
+ * <p>
+ * The report is a JSON object with a <code>results</code> array containing an
+ * object for each record with its <code>index</code> and either the <code>id</code>
+ * and, if it still exists, <code>path</code> of the user or group or the <code>error</code> that prevented
+ * the record from being applied, followed by the <code>succeeded</code> and
+ * <code>failed</code> counts and the <code>error</code> that stopped the operation, if any.
+ * </p>
+ */
+final class BulkOperationReport implements Consumer<BulkOperationResult>, Flushable, AutoCloseable {
+
+    static final String PROPERTY_RESULTS = "results";
+    static final String PROPERTY_INDEX = "index";
+    static final String PROPERTY_ID = "id";
+    static final String PROPERTY_PATH = "path";
+    static final String PROPERTY_ERROR = "error";
+    static final String PROPERTY_SUCCEEDED = "succeeded";
+    static final String PROPERTY_FAILED = "failed";
+
+    private final JsonGenerator generator;
+
+    /**
+     * The prefix of the resource path of the users or groups, or null to leave out the paths
+     */
+    private final String pathPrefix;
+
+    private long succeeded;
+    private long failed;
+
+    /**
+     * @param writer the writer to write the report to
+     * @param pathPrefix the prefix of the resource path of the users or groups, or null
+     *          to leave out the paths
+     */
+    BulkOperationReport(@NotNull Writer writer, @Nullable String pathPrefix) {
+        this.pathPrefix = pathPrefix;
+        generator = Json.createGenerator(writer);
+        generator.writeStartObject();
+        generator.writeStartArray(PROPERTY_RESULTS);
+    }
+
+    @Override
+    public void accept(BulkOperationResult result) {
+        generator.writeStartObject();
+        generator.write(PROPERTY_INDEX, result.index());
+        if (result.id() != null) {
+            generator.write(PROPERTY_ID, result.id());
+        }
+        if (result.isSuccessful()) {
+            succeeded++;
+            if (result.id() != null && pathPrefix != null) {
+                generator.write(PROPERTY_PATH, pathPrefix + result.id());
+            }
+        } else {
+            failed++;
+            generator.write(PROPERTY_ERROR, result.error());
+        }
+        generator.writeEnd();
+    }
+
+    /**
+     * Write the counts and close the report
+     *
+     * @param failure the problem that stopped the operation or null if all the records were read
+     */
+    void finish(@Nullable Exception failure) {
+        generator.writeEnd();
+        generator.write(PROPERTY_SUCCEEDED, succeeded);
+        generator.write(PROPERTY_FAILED, failed);
+        if (failure != null) {
+            String message = failure.getMessage();
+            generator.write(PROPERTY_ERROR, message == null ? failure.getClass().getName() : message);
+        }
+        generator.writeEnd();
+    }
+
+    /**
+     * Send the outcomes written so far, so the client can follow the progress
+     */
+    @Override
+    public void flush() {
+        generator.flush();
+    }
+
+    long getSucceeded() {
+        return succeeded;
+    }
+
+    long getFailed() {
+        return failed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
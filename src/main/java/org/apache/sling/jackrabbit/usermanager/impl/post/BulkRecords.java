@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.post;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Reads the records of a bulk operation from the request body one at a time,
+ * so the memory used does not depend on the number of records.
+ * <p>
+ * Each record is a map of the same keys and values as the request parameters
+ * of the single operation. The values are either a String or a String[].
+ * A record that can not be parsed is reported by throwing an
+ * {@link IllegalArgumentException} from {@link Iterator#next()}, after which
+ * the following records can still be read.
+ * </p>
+ */
+final class BulkRecords {
+
+    /**
+     * The content type of a body with one record per line as CSV, where the
+     * first line holds the keys
+     */
+    static final String CONTENT_TYPE_CSV = "text/csv";
+
+    /**
+     * The maximum number of characters of a CSV row including its line break, so an unterminated quote
+     * does not read the rest of the body into a single field
+     */
+    static final int MAX_ROW_LENGTH = 64 * 1024;
+
+    /**
+     * Returned by {@link #readRow} for a row that is longer than the maximum
+     */
+    private static final List<String> ROW_TOO_LONG = Collections.unmodifiableList(new ArrayList<>());
+
+    private BulkRecords() {
+        // static methods only
+    }
+
+    /**
+     * Choose the format of the records from the content type of the body
+     *
+     * @param contentType the content type of the request body
+     * @param reader the request body
+     * @return the records of the body
+     */
+    static @NotNull Iterator<Map<String, Object>> read(String contentType, @NotNull BufferedReader reader) {
+        if (contentType != null && contentType.startsWith(CONTENT_TYPE_CSV)) {
+            return csv(reader);
+        }
+        return jsonLines(reader);
+    }
+
+    /**
+     * Read a JSON object from each non-blank line
+     *
+     * @param reader the lines to read
+     * @return the records
+     */
+    static @NotNull Iterator<Map<String, Object>> jsonLines(@NotNull BufferedReader reader) {
+        return new RecordIterator() {
+            private int lineNumber = 0;
+
+            @Override
+            protected List<String> readFields() throws IOException {
+                String line;
+                do {
+                    line = reader.readLine();
+                    lineNumber++;
+                } while (line != null && line.isBlank());
+                return line == null ? null : List.of(line);
+            }
+
+            @Override
+            protected Map<String, Object> toRecord(List<String> fields) {
+                JsonObject json;
+                try (JsonReader jsonReader = Json.createReader(new StringReader(fields.get(0)))) {
+                    json = jsonReader.readObject();
+                } catch (JsonException | IllegalStateException e) {
+                    throw new IllegalArgumentException(
+                            String.format("Line %d is not a JSON object: %s", lineNumber, e.getMessage()), e);
+                }
+                Map<String, Object> values = new LinkedHashMap<>();
+                for (Map.Entry<String, JsonValue> entry : json.entrySet()) {
+                    if (entry.getValue() instanceof JsonArray array) {
+                        String[] strings = new String[array.size()];
+                        for (int i = 0; i < strings.length; i++) {
+                            strings[i] = toString(array.get(i));
+                        }
+                        values.put(entry.getKey(), strings);
+                    } else if (entry.getValue() != JsonValue.NULL) {
+                        values.put(entry.getKey(), toString(entry.getValue()));
+                    }
+                }
+                return values;
+            }
+
+            private String toString(JsonValue value) {
+                return value instanceof JsonString str ? str.getString() : value.toString();
+            }
+        };
+    }
+
+    /**
+     * Read a record from each CSV row, using the first row as the keys.
+     * Empty fields are left out of the records. A key that is used for more
+     * than one column has all the values of those columns.
+     *
+     * @param reader the rows to read
+     * @return the records
+     */
+    static @NotNull Iterator<Map<String, Object>> csv(@NotNull BufferedReader reader) {
+        return new RecordIterator() {
+            private List<String> header;
+            private int rowNumber = 0;
+
+            @Override
+            protected List<String> readFields() throws IOException {
+                if (header == null) {
+                    header = readRow(reader);
+                    if (header == null) {
+                        return null;
+                    }
+                }
+                List<String> row;
+                do {
+                    row = readRow(reader);
+                    rowNumber++;
+                } while (row != null && row.size() == 1 && row.get(0).isEmpty());
+                return row;
+            }
+
+            @Override
+            protected Map<String, Object> toRecord(List<String> fields) {
+                if (header == ROW_TOO_LONG) { // NOSONAR the marker is compared by identity
+                    throw new IllegalArgumentException(
+                            String.format("The header is longer than %d characters", MAX_ROW_LENGTH));
+                } else if (fields == ROW_TOO_LONG) { // NOSONAR
+                    throw new IllegalArgumentException(
+                            String.format("Row %d is longer than %d characters", rowNumber, MAX_ROW_LENGTH));
+                } else if (fields.size() > header.size()) {
+                    throw new IllegalArgumentException(
+                            String.format("Row %d has more fields than the header", rowNumber));
+                }
+                Map<String, Object> values = new LinkedHashMap<>();
+                for (int i = 0; i < fields.size(); i++) {
+                    if (!fields.get(i).isEmpty()) {
+                        values.merge(header.get(i), fields.get(i), BulkRecords::append);
+                    }
+                }
+                return values;
+            }
+        };
+    }
+
+    /**
+     * Get the first of the values of a record
+     *
+     * @param record the record to get the value from
+     * @param key the key of the value
+     * @return the first value or null if there is none
+     */
+    static String firstValue(@NotNull Map<String, ?> record, @NotNull String key) {
+        Object value = record.get(key);
+        if (value instanceof String[] values) {
+            value = values.length == 0 ? null : values[0];
+        }
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Combine the values of a key that is used for more than one column
+     */
+    private static Object append(Object values, Object value) {
+        String[] previous = values instanceof String[] array ? array : new String[] {(String) values};
+        String[] combined = Arrays.copyOf(previous, previous.length + 1);
+        combined[previous.length] = (String) value;
+        return combined;
+    }
+
+    /**
+     * Read the fields of one CSV row. Fields may be quoted with double quotes,
+     * in which case they may contain commas, line breaks and doubled quotes.
+     * A row that is longer than {@link #MAX_ROW_LENGTH} is skipped up to the
+     * next line break.
+     *
+     * @param reader the rows to read
+     * @return the fields, {@link #ROW_TOO_LONG} if the row is too long or null at the end of the input
+     */
+    static List<String> readRow(@NotNull BufferedReader reader) throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int length = 0;
+        while (c != -1) {
+            if (++length > MAX_ROW_LENGTH) {
+                // a quote that is not closed would otherwise run to the end of the body
+                while (c != -1 && c != '\n') {
+                    c = reader.read();
+                }
+                return ROW_TOO_LONG;
+            } else if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        reader.reset();
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Reads ahead one record at a time
+     */
+    private abstract static class RecordIterator implements Iterator<Map<String, Object>> {
+        private List<String> next;
+        private boolean done;
+
+        /**
+         * @return the raw fields of the next record or null at the end of the input
+         */
+        protected abstract List<String> readFields() throws IOException;
+
+        /**
+         * @param fields the raw fields of the record
+         * @return the record
+         * @throws IllegalArgumentException if the fields are not a valid record
+         */
+        protected abstract Map<String, Object> toRecord(List<String> fields);
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                try {
+                    next = readFields();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                done = next == null;
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            List<String> fields = next;
+            next = null;
+            return toRecord(fields);
+        }
+    }
+}
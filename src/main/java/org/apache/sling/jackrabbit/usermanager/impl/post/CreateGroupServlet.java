@@ -21,22 +21,37 @@ package org.apache.sling.jackrabbit.usermanager.impl.post;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
 import jakarta.servlet.Servlet;
+import jakarta.servlet.ServletException;
 import org.apache.jackrabbit.api.JackrabbitSession;
 import org.apache.jackrabbit.api.security.user.Authorizable;
 import org.apache.jackrabbit.api.security.user.Group;
 import org.apache.jackrabbit.api.security.user.UserManager;
 import org.apache.jackrabbit.oak.spi.security.user.AuthorizableType;
 import org.apache.sling.api.SlingJakartaHttpServletRequest;
+import org.apache.sling.api.SlingJakartaHttpServletResponse;
 import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.jackrabbit.usermanager.BulkOperationResult;
 import org.apache.sling.jackrabbit.usermanager.CreateGroup;
 import org.apache.sling.jackrabbit.usermanager.PrincipalNameFilter;
 import org.apache.sling.jackrabbit.usermanager.PrincipalNameGenerator;
@@ -53,6 +68,11 @@ import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
 import org.osgi.service.component.annotations.ReferencePolicyOption;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * <p>
@@ -97,6 +117,25 @@ import org.osgi.service.component.annotations.ReferencePolicyOption;
  * <code>
  * curl -F:name=newGroupA  -Fproperty1=value1 http://localhost:8080/system/userManager/group.create.html
  * </code>
+ * <h2>Bulk Import</h2>
+ * <p>
+ * Many groups are created with one request at <code>/system/userManager/group.create.bulk.json</code>.
+ * The request body holds one record for each group with the same keys as the post parameters
+ * above, either as a JSON object on each line or, when the content type is <code>text/csv</code>,
+ * as CSV rows where the first row holds the keys and the <code>:member</code> column may be repeated.
+ * The declared members of a group are given by their ids in <code>:member</code>.
+ * </p>
+ * <p>
+ * All the groups are created first, saving the changes after each chunk of records, so the
+ * members may be groups that are created by later records. The members are then added in
+ * batches by id, which are saved in chunks too. The records are read one at a time and the
+ * members are kept in a temporary file in between, so the memory used does not depend on
+ * the size of the body. The response lists the outcome of each record, and lists a record
+ * once more if some of its members could not be added.
+ * </p>
+ * <code>
+ * curl -H 'Content-Type: application/x-ndjson' --data-binary @groups.jsonl http://localhost:8080/system/userManager/group.create.bulk.json
+ * </code>
  *
  * <h4>Notes</h4>
  */
@@ -106,6 +145,7 @@ import org.osgi.service.component.annotations.ReferencePolicyOption;
             "sling.servlet.resourceTypes=sling/groups",
             "sling.servlet.methods=POST",
             "sling.servlet.selectors=create",
+            "sling.servlet.selectors=" + CreateGroupServlet.BULK_SELECTORS,
             "sling.servlet.prefix:Integer=-1",
             AbstractAuthorizablePostServlet.PROP_DATE_FORMAT + "=EEE MMM dd yyyy HH:mm:ss 'GMT'Z",
             AbstractAuthorizablePostServlet.PROP_DATE_FORMAT + "=yyyy-MM-dd'T'HH:mm:ss.SSSZ",
@@ -120,16 +160,43 @@ import org.osgi.service.component.annotations.ReferencePolicyOption;
                     bind = "bindSystemUserManagerPaths",
                     service = SystemUserManagerPaths.class)
         })
+@Designate(ocd = CreateGroupServlet.Config.class)
 public class CreateGroupServlet extends AbstractGroupPostServlet implements CreateGroup {
     private static final long serialVersionUID = -1084915263933901466L;
 
+    @ObjectClassDefinition(
+            name = "Apache Sling Create Group",
+            description = "The Sling operation to handle create group requests in Sling.")
+    public @interface Config {
+
+        @AttributeDefinition(
+                name = "Bulk Chunk Size",
+                description = "The number of groups, or of members, that are changed before the changes "
+                        + "are saved when many groups are created with one request.")
+        int bulk_chunk_size() default 1000; // NOSONAR
+    }
+
+    /**
+     * The selectors of the bulk import requests
+     */
+    static final String BULK_SELECTORS = "create.bulk";
+
+    private static final String MEMBER_PARAM = SlingPostConstants.RP_PREFIX + "member";
+
+    /**
+     * default log
+     */
+    private final transient Logger log = LoggerFactory.getLogger(getClass());
+
+    private int bulkChunkSize = 1000;
+
     @Reference
     private transient ResourceResolverFactory resourceResolverFactory;
 
-    @Override
     @Activate
-    protected void activate(final Map<String, Object> props) {
+    protected void activate(Config config, Map<String, Object> props) {
         super.activate(props);
+        bulkChunkSize = config.bulk_chunk_size();
     }
 
     @Override
@@ -186,6 +253,26 @@ public class CreateGroupServlet extends AbstractGroupPostServlet implements Crea
         super.unbindPostResponseCreator(creator, properties);
     }
 
+    /**
+     * Handles the bulk import requests, which stream their own report
+     * instead of the usual post response
+     */
+    @Override
+    protected void doPost(SlingJakartaHttpServletRequest request, SlingJakartaHttpServletResponse httpResponse)
+            throws ServletException, IOException {
+        if (BULK_SELECTORS.equals(request.getRequestPathInfo().getSelectorString())) {
+            Session session = request.getResourceResolver().adaptTo(Session.class);
+            Iterator<Map<String, Object>> records = BulkRecords.read(request.getContentType(), request.getReader());
+            doBulkOperation(
+                    request,
+                    httpResponse,
+                    systemUserManagerPaths.getGroupPrefix(),
+                    (results, changes) -> createGroups(session, records, bulkChunkSize, results, changes));
+        } else {
+            super.doPost(request, httpResponse);
+        }
+    }
+
     /*
      * (non-Javadoc)
      * @see
@@ -238,19 +325,7 @@ public class CreateGroupServlet extends AbstractGroupPostServlet implements Crea
             // principal already exists!
             throw new RepositoryException("A group already exists with the requested name: " + principalName);
         } else {
-            group = userManager.createGroup(() -> principalName);
-
-            String groupPath = systemUserManagerPaths.getGroupPrefix() + group.getID();
-
-            Map<String, RequestProperty> reqPropertiesMap = collectContentMap(properties);
-            Collection<RequestProperty> reqPropertyValues = reqPropertiesMap.values();
-            changes.add(Modification.onCreated(groupPath));
-
-            // ensure root of new content with the expected primary/mixin types
-            processCreate(jcrSession, group, reqPropertiesMap, changes);
-
-            // write content from form
-            writeContent(jcrSession, group, reqPropertyValues, changes);
+            group = addGroup(jcrSession, principalName, properties, changes);
 
             // update the group memberships
             ResourceResolver resourceResolver = null;
@@ -269,8 +344,201 @@ public class CreateGroupServlet extends AbstractGroupPostServlet implements Crea
                     resourceResolver.close();
                 }
             }
+            fireAuthorizableChange(group.getID());
         }
 
         return group;
     }
+
+    /**
+     * Create the group and write its properties without saving the changes
+     */
+    private Group addGroup(
+            Session jcrSession, final String principalName, Map<String, ?> properties, List<Modification> changes)
+            throws RepositoryException {
+        UserManager userManager = ((JackrabbitSession) jcrSession).getUserManager();
+        Group group = userManager.createGroup(() -> principalName);
+
+        String groupPath = systemUserManagerPaths.getGroupPrefix() + group.getID();
+
+        Map<String, RequestProperty> reqPropertiesMap = collectContentMap(properties);
+        Collection<RequestProperty> reqPropertyValues = reqPropertiesMap.values();
+        changes.add(Modification.onCreated(groupPath));
+
+        // ensure root of new content with the expected primary/mixin types
+        processCreate(jcrSession, group, reqPropertiesMap, changes);
+
+        // write content from form
+        writeContent(jcrSession, group, reqPropertyValues, changes);
+        return group;
+    }
+
+    /**
+     * A group to create
+     *
+     * @param index the position of the record
+     * @param id the name of the group
+     * @param record the values of the record
+     */
+    private record PendingGroup(long index, String id, Map<String, ?> record) implements BulkChunk.Item {}
+
+    /**
+     * A batch of members to add to a group
+     *
+     * @param index the position of the record of the group
+     * @param id the name of the group
+     * @param members the ids of the members
+     */
+    private record PendingMembers(long index, String id, String[] members) implements BulkChunk.Item {}
+
+    /**
+     * Creates the groups in chunks and then adds the members in batches by id,
+     * so the members may refer to groups of later records. The members of the
+     * groups that were created are kept in a temporary file in between.
+     *
+     * @see org.apache.sling.jackrabbit.usermanager.CreateGroup#createGroups(javax.jcr.Session, java.util.Iterator, int, java.util.function.Consumer, java.util.List)
+     */
+    @Override
+    public void createGroups(
+            Session jcrSession,
+            Iterator<? extends Map<String, ?>> records,
+            int chunkSize,
+            Consumer<BulkOperationResult> results,
+            List<Modification> changes)
+            throws RepositoryException {
+        if (jcrSession == null) {
+            throw new RepositoryException("JCR Session not found");
+        }
+
+        Path membersFile = null;
+        try {
+            membersFile = Files.createTempFile("usermanager-members", ".jsonl");
+            try (BufferedWriter writer = Files.newBufferedWriter(membersFile, StandardCharsets.UTF_8)) {
+                createGroupsWithoutMembers(jcrSession, records, chunkSize, results, changes, writer);
+            }
+            try (BufferedReader reader = Files.newBufferedReader(membersFile, StandardCharsets.UTF_8)) {
+                addMembers(jcrSession, BulkRecords.jsonLines(reader), chunkSize, results, changes);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new RepositoryException("Failed to keep the members of the groups", e);
+        } finally {
+            if (membersFile != null) {
+                try {
+                    Files.deleteIfExists(membersFile);
+                } catch (IOException e) {
+                    log.warn("Failed to delete the temporary file {}", membersFile, e);
+                }
+            }
+        }
+    }
+
+    private void createGroupsWithoutMembers(
+            Session jcrSession,
+            Iterator<? extends Map<String, ?>> records,
+            int chunkSize,
+            Consumer<BulkOperationResult> results,
+            List<Modification> changes,
+            BufferedWriter membersWriter)
+            throws RepositoryException {
+        UserManager userManager = ((JackrabbitSession) jcrSession).getUserManager();
+        BulkChunk<PendingGroup> chunk = new BulkChunk<>(
+                jcrSession,
+                chunkSize,
+                (pending, groupChanges) -> {
+                    addGroup(jcrSession, pending.id(), pending.record(), groupChanges);
+                    return null;
+                },
+                results,
+                changes,
+                pending -> {
+                    fireAuthorizableChange(pending.id());
+                    writeMembers(membersWriter, pending, chunkSize);
+                });
+        for (long index = 0; records.hasNext(); index++) {
+            PendingGroup pending;
+            try {
+                Map<String, ?> record = records.next();
+                String principalName = getOrGeneratePrincipalName(jcrSession, record, AuthorizableType.GROUP);
+                if (principalName == null || principalName.isEmpty()) {
+                    throw new IllegalArgumentException("Group name was not supplied");
+                }
+                if (userManager.getAuthorizable(principalName) != null) {
+                    throw new RepositoryException("A group already exists with the requested name: " + principalName);
+                }
+                pending = new PendingGroup(index, principalName, record);
+            } catch (RepositoryException | IllegalArgumentException e) {
+                // nothing was changed for this record yet
+                results.accept(new BulkOperationResult(index, null, e.getMessage()));
+                continue;
+            }
+            chunk.add(pending);
+        }
+        chunk.save();
+    }
+
+    /**
+     * Write the members of the group as lines of at most batchSize members each
+     */
+    private void writeMembers(BufferedWriter writer, PendingGroup pending, int batchSize) {
+        String[] members = convertToStringArray(pending.record().get(MEMBER_PARAM));
+        int size = Math.max(1, batchSize);
+        try {
+            for (int from = 0; from < members.length; from += size) {
+                JsonArrayBuilder batch = Json.createArrayBuilder();
+                for (int i = from; i < Math.min(members.length, from + size); i++) {
+                    batch.add(members[i]);
+                }
+                writer.write(Json.createObjectBuilder()
+                        .add("index", pending.index())
+                        .add("id", pending.id())
+                        .add("members", batch)
+                        .build()
+                        .toString());
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void addMembers(
+            Session jcrSession,
+            Iterator<Map<String, Object>> batches,
+            int chunkSize,
+            Consumer<BulkOperationResult> results,
+            List<Modification> changes)
+            throws RepositoryException {
+        UserManager userManager = ((JackrabbitSession) jcrSession).getUserManager();
+        BulkChunk<PendingMembers> chunk = new BulkChunk<>(
+                jcrSession,
+                chunkSize,
+                (pending, memberChanges) -> {
+                    Authorizable authorizable = userManager.getAuthorizable(pending.id());
+                    if (!(authorizable instanceof Group group)) {
+                        throw new RepositoryException("Group not found: " + pending.id());
+                    }
+                    Set<String> failed = group.addMembers(pending.members());
+                    if (failed.size() < pending.members().length) {
+                        memberChanges.add(Modification.onModified(
+                                systemUserManagerPaths.getGroupPrefix() + pending.id() + "/members"));
+                    }
+                    return failed.isEmpty() ? null : "The members could not be added: " + String.join(", ", failed);
+                },
+                // the records were reported when the groups were created
+                result -> {
+                    if (!result.isSuccessful()) {
+                        results.accept(result);
+                    }
+                },
+                changes,
+                pending -> fireAuthorizableChange(pending.id()));
+        while (batches.hasNext()) {
+            Map<String, Object> batch = batches.next();
+            chunk.add(new PendingMembers(
+                    Long.parseLong((String) batch.get("index")),
+                    (String) batch.get("id"),
+                    convertToStringArray(batch.get("members"))));
+        }
+        chunk.save();
+    }
 }
@@ -18,16 +18,22 @@
  */
 package org.apache.sling.jackrabbit.usermanager.impl.post;
 
+import javax.jcr.AccessDeniedException;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.security.AccessControlManager;
 import javax.jcr.security.Privilege;
 
+import java.io.IOException;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import jakarta.servlet.Servlet;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletResponse;
 import org.apache.jackrabbit.api.JackrabbitSession;
 import org.apache.jackrabbit.api.security.user.Authorizable;
 import org.apache.jackrabbit.api.security.user.User;
@@ -37,6 +43,8 @@ import org.apache.jackrabbit.oak.spi.security.user.AuthorizableType;
 import org.apache.jackrabbit.oak.spi.security.user.UserConfiguration;
 import org.apache.jackrabbit.oak.spi.security.user.UserConstants;
 import org.apache.sling.api.SlingJakartaHttpServletRequest;
+import org.apache.sling.api.SlingJakartaHttpServletResponse;
+import org.apache.sling.jackrabbit.usermanager.BulkOperationResult;
 import org.apache.sling.jackrabbit.usermanager.CreateUser;
 import org.apache.sling.jackrabbit.usermanager.PrincipalNameFilter;
 import org.apache.sling.jackrabbit.usermanager.PrincipalNameGenerator;
@@ -108,6 +116,17 @@ import org.slf4j.LoggerFactory;
  * <code>
  * curl -F:name=ieb -Fpwd=password -FpwdConfirm=password -Fproperty1=value1 http://localhost:8080/system/userManager/user.create.html
  * </code>
+ * <h2>Bulk Creation</h2>
+ * <p>
+ * Many users are created with one request at <code>/system/userManager/user.create.bulk.json</code>.
+ * The request body holds one record for each user with the same keys as the post parameters
+ * above, either as a JSON object on each line or, when the content type is <code>text/csv</code>,
+ * as CSV rows where the first row holds the keys. The records are read one at a time and the
+ * changes are saved after each chunk of records. The response lists the outcome of each record.
+ * </p>
+ * <code>
+ * curl -H 'Content-Type: application/x-ndjson' --data-binary @users.jsonl http://localhost:8080/system/userManager/user.create.bulk.json
+ * </code>
  */
 @Component(
         service = {Servlet.class, CreateUser.class},
@@ -115,6 +134,7 @@ import org.slf4j.LoggerFactory;
             "sling.servlet.resourceTypes=sling/users",
             "sling.servlet.methods=POST",
             "sling.servlet.selectors=create",
+            "sling.servlet.selectors=" + CreateUserServlet.BULK_SELECTORS,
             "sling.servlet.prefix:Integer=-1",
             AbstractAuthorizablePostServlet.PROP_DATE_FORMAT + "=EEE MMM dd yyyy HH:mm:ss 'GMT'Z",
             AbstractAuthorizablePostServlet.PROP_DATE_FORMAT + "=yyyy-MM-dd'T'HH:mm:ss.SSSZ",
@@ -142,8 +162,19 @@ public class CreateUserServlet extends AbstractAuthorizablePostServlet implement
                 name = "Self-Registration Enabled",
                 description = "When selected, the anonymous user is allowed to register a new user with the system.")
         boolean self_registration_enabled() default false; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Bulk Chunk Size",
+                description = "The number of users that are created before the changes are saved "
+                        + "when many users are created with one request.")
+        int bulk_chunk_size() default 1000; // NOSONAR
     }
 
+    /**
+     * The selectors of the bulk creation requests
+     */
+    static final String BULK_SELECTORS = "create.bulk";
+
     /**
      * default log
      */
@@ -151,6 +182,8 @@ public class CreateUserServlet extends AbstractAuthorizablePostServlet implement
 
     private boolean selfRegistrationEnabled;
 
+    private int bulkChunkSize = 1000;
+
     /**
      * The JCR Repository we access to resolve resources
      */
@@ -201,6 +234,7 @@ public class CreateUserServlet extends AbstractAuthorizablePostServlet implement
     protected void activate(Config config, Map<String, Object> props) {
         super.activate(props);
         selfRegistrationEnabled = config.self_registration_enabled();
+        bulkChunkSize = config.bulk_chunk_size();
     }
 
     @Override
@@ -258,6 +292,35 @@ public class CreateUserServlet extends AbstractAuthorizablePostServlet implement
         super.unbindPostResponseCreator(creator, properties);
     }
 
+    /**
+     * Handles the bulk creation requests, which stream their own report
+     * instead of the usual post response
+     */
+    @Override
+    protected void doPost(SlingJakartaHttpServletRequest request, SlingJakartaHttpServletResponse httpResponse)
+            throws ServletException, IOException {
+        if (BULK_SELECTORS.equals(request.getRequestPathInfo().getSelectorString())) {
+            doBulkPost(request, httpResponse);
+        } else {
+            super.doPost(request, httpResponse);
+        }
+    }
+
+    private void doBulkPost(SlingJakartaHttpServletRequest request, SlingJakartaHttpServletResponse httpResponse)
+            throws IOException {
+        Session session = request.getResourceResolver().adaptTo(Session.class);
+        if (session == null || !isUserAdministrator(session)) {
+            httpResponse.sendError(HttpServletResponse.SC_FORBIDDEN, "Not allowed to create users in bulk");
+            return;
+        }
+        Iterator<Map<String, Object>> records = BulkRecords.read(request.getContentType(), request.getReader());
+        doBulkOperation(
+                request,
+                httpResponse,
+                systemUserManagerPaths.getUserPrefix(),
+                (results, changes) -> createUsers(session, records, bulkChunkSize, results, changes));
+    }
+
     /*
      * (non-Javadoc)
      * @see
@@ -322,28 +385,7 @@ public class CreateUserServlet extends AbstractAuthorizablePostServlet implement
             principalName = name;
         }
 
-        // check for an administrator
-        boolean administrator = false;
-        try {
-            UserManager um = ((JackrabbitSession) jcrSession).getUserManager();
-            User currentUser = (User) um.getAuthorizable(jcrSession.getUserID());
-            administrator = currentUser.isAdmin();
-
-            if (!administrator && usersPath != null) {
-                // check if the current user has the minimum privileges needed to create a user
-                AccessControlManager acm = jcrSession.getAccessControlManager();
-                administrator = acm.hasPrivileges(usersPath, new Privilege[] {
-                    acm.privilegeFromName(Privilege.JCR_READ),
-                    acm.privilegeFromName(Privilege.JCR_READ_ACCESS_CONTROL),
-                    acm.privilegeFromName(Privilege.JCR_MODIFY_ACCESS_CONTROL),
-                    acm.privilegeFromName(PrivilegeConstants.REP_WRITE),
-                    acm.privilegeFromName(PrivilegeConstants.REP_USER_MANAGEMENT)
-                });
-            }
-        } catch (Exception ex) {
-            log.warn("Failed to determine if the user is an admin, assuming not. Cause: {}", ex.getMessage());
-            administrator = false;
-        }
+        boolean administrator = isUserAdministrator(jcrSession);
 
         // make sure user self-registration is enabled
         if (!administrator && !selfRegistrationEnabled) {
@@ -351,16 +393,7 @@ public class CreateUserServlet extends AbstractAuthorizablePostServlet implement
                     "Sorry, registration of new users is not currently enabled.  Please try again later.");
         }
 
-        // check that the submitted parameter values have valid values.
-        if (principalName == null || principalName.length() == 0) {
-            throw new RepositoryException("User name was not submitted");
-        }
-        if (password == null) {
-            throw new RepositoryException("Password was not submitted");
-        }
-        if (!password.equals(passwordConfirm)) {
-            throw new RepositoryException("Password value does not match the confirmation password");
-        }
+        checkSubmittedValues(principalName, password, passwordConfirm);
 
         User user = null;
         Session selfRegSession = jcrSession;
@@ -380,23 +413,12 @@ public class CreateUserServlet extends AbstractAuthorizablePostServlet implement
                 // user already exists!
                 throw new RepositoryException("A principal already exists with the requested name: " + principalName);
             } else {
-                user = userManager.createUser(principalName, password);
-                String userPath = systemUserManagerPaths.getUserPrefix() + user.getID();
-
-                Map<String, RequestProperty> reqPropertiesMap = collectContentMap(properties);
-                Collection<RequestProperty> reqPropertyValues = reqPropertiesMap.values();
-
-                changes.add(Modification.onCreated(userPath));
-
-                // ensure root of new content with the expected primary/mixin types
-                processCreate(selfRegSession, user, reqPropertiesMap, changes);
-
-                // write content from form
-                writeContent(selfRegSession, user, reqPropertyValues, changes);
+                user = addUser(selfRegSession, principalName, password, properties, changes);
 
                 if (selfRegSession.hasPendingChanges()) {
                     selfRegSession.save();
                 }
+                fireAuthorizableChange(user.getID());
 
                 if (useAdminSession) {
                     // lookup the user from the user session so we can return a live object
@@ -418,4 +440,147 @@ public class CreateUserServlet extends AbstractAuthorizablePostServlet implement
 
         return user;
     }
+
+    /**
+     * Checks if the current user is allowed to create users without self-registration
+     *
+     * @param jcrSession the JCR session of the current user
+     * @return true if the user is an administrator or has the privileges to manage the users
+     */
+    private boolean isUserAdministrator(Session jcrSession) {
+        boolean administrator = false;
+        try {
+            UserManager um = ((JackrabbitSession) jcrSession).getUserManager();
+            User currentUser = (User) um.getAuthorizable(jcrSession.getUserID());
+            administrator = currentUser.isAdmin();
+
+            if (!administrator && usersPath != null) {
+                // check if the current user has the minimum privileges needed to create a user
+                AccessControlManager acm = jcrSession.getAccessControlManager();
+                administrator = acm.hasPrivileges(usersPath, new Privilege[] {
+                    acm.privilegeFromName(Privilege.JCR_READ),
+                    acm.privilegeFromName(Privilege.JCR_READ_ACCESS_CONTROL),
+                    acm.privilegeFromName(Privilege.JCR_MODIFY_ACCESS_CONTROL),
+                    acm.privilegeFromName(PrivilegeConstants.REP_WRITE),
+                    acm.privilegeFromName(PrivilegeConstants.REP_USER_MANAGEMENT)
+                });
+            }
+        } catch (Exception ex) {
+            log.warn("Failed to determine if the user is an admin, assuming not. Cause: {}", ex.getMessage());
+            administrator = false;
+        }
+        return administrator;
+    }
+
+    /**
+     * Check that the submitted parameter values have valid values
+     */
+    private void checkSubmittedValues(String principalName, String password, String passwordConfirm)
+            throws RepositoryException {
+        if (principalName == null || principalName.length() == 0) {
+            throw new RepositoryException("User name was not submitted");
+        }
+        if (password == null) {
+            throw new RepositoryException("Password was not submitted");
+        }
+        if (!password.equals(passwordConfirm)) {
+            throw new RepositoryException("Password value does not match the confirmation password");
+        }
+    }
+
+    /**
+     * Create the user and write its properties without saving the changes
+     */
+    private User addUser(
+            Session session,
+            String principalName,
+            String password,
+            Map<String, ?> properties,
+            List<Modification> changes)
+            throws RepositoryException {
+        UserManager userManager = ((JackrabbitSession) session).getUserManager();
+        User user = userManager.createUser(principalName, password);
+        String userPath = systemUserManagerPaths.getUserPrefix() + user.getID();
+
+        Map<String, RequestProperty> reqPropertiesMap = collectContentMap(properties);
+        Collection<RequestProperty> reqPropertyValues = reqPropertiesMap.values();
+
+        changes.add(Modification.onCreated(userPath));
+
+        // ensure root of new content with the expected primary/mixin types
+        processCreate(session, user, reqPropertiesMap, changes);
+
+        // write content from form
+        writeContent(session, user, reqPropertyValues, changes);
+        return user;
+    }
+
+    /**
+     * A user to create
+     *
+     * @param index the position of the record
+     * @param id the name of the user
+     * @param password the password of the user
+     * @param record the values of the record
+     */
+    private record PendingUser(long index, String id, String password, Map<String, ?> record)
+            implements BulkChunk.Item {}
+
+    /**
+     * Creates the users in chunks, saving the changes once for each chunk
+     * instead of once for each user.
+     * <p>
+     * Self-registration does not apply, so the current user must be allowed
+     * to create users.
+     * </p>
+     *
+     * @see org.apache.sling.jackrabbit.usermanager.CreateUser#createUsers(javax.jcr.Session, java.util.Iterator, int, java.util.function.Consumer, java.util.List)
+     */
+    @Override
+    public void createUsers(
+            Session jcrSession,
+            Iterator<? extends Map<String, ?>> records,
+            int chunkSize,
+            Consumer<BulkOperationResult> results,
+            List<Modification> changes)
+            throws RepositoryException {
+        if (jcrSession == null) {
+            throw new RepositoryException("JCR Session not found");
+        }
+        if (!isUserAdministrator(jcrSession)) {
+            throw new AccessDeniedException("Not allowed to create users in bulk");
+        }
+
+        UserManager userManager = ((JackrabbitSession) jcrSession).getUserManager();
+        BulkChunk<PendingUser> chunk = new BulkChunk<>(
+                jcrSession,
+                chunkSize,
+                (pending, userChanges) -> {
+                    addUser(jcrSession, pending.id(), pending.password(), pending.record(), userChanges);
+                    return null;
+                },
+                results,
+                changes,
+                pending -> fireAuthorizableChange(pending.id()));
+        for (long index = 0; records.hasNext(); index++) {
+            PendingUser pending;
+            try {
+                Map<String, ?> record = records.next();
+                String principalName = getOrGeneratePrincipalName(jcrSession, record, AuthorizableType.USER);
+                String password = BulkRecords.firstValue(record, "pwd");
+                checkSubmittedValues(principalName, password, BulkRecords.firstValue(record, "pwdConfirm"));
+                if (userManager.getAuthorizable(principalName) != null) {
+                    throw new RepositoryException(
+                            "A principal already exists with the requested name: " + principalName);
+                }
+                pending = new PendingUser(index, principalName, password, record);
+            } catch (RepositoryException | IllegalArgumentException e) {
+                // nothing was changed for this record yet
+                results.accept(new BulkOperationResult(index, null, e.getMessage()));
+                continue;
+            }
+            chunk.add(pending);
+        }
+        chunk.save();
+    }
 }
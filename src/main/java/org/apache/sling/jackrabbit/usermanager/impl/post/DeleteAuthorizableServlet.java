@@ -21,12 +21,15 @@ package org.apache.sling.jackrabbit.usermanager.impl.post;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 
 import jakarta.servlet.Servlet;
+import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletResponse;
 import org.apache.jackrabbit.api.JackrabbitSession;
 import org.apache.jackrabbit.api.security.user.Authorizable;
@@ -34,9 +37,11 @@ import org.apache.jackrabbit.api.security.user.Group;
 import org.apache.jackrabbit.api.security.user.User;
 import org.apache.jackrabbit.api.security.user.UserManager;
 import org.apache.sling.api.SlingJakartaHttpServletRequest;
+import org.apache.sling.api.SlingJakartaHttpServletResponse;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceNotFoundException;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.jackrabbit.usermanager.BulkOperationResult;
 import org.apache.sling.jackrabbit.usermanager.DeleteAuthorizables;
 import org.apache.sling.jackrabbit.usermanager.DeleteGroup;
 import org.apache.sling.jackrabbit.usermanager.DeleteUser;
@@ -45,10 +50,14 @@ import org.apache.sling.servlets.post.JakartaPostResponse;
 import org.apache.sling.servlets.post.JakartaPostResponseCreator;
 import org.apache.sling.servlets.post.Modification;
 import org.apache.sling.servlets.post.SlingPostConstants;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 
 /**
  * <h2>Rest Service Description</h2>
@@ -82,6 +91,18 @@ import org.osgi.service.component.annotations.ReferencePolicy;
  * <code>
  * curl -Fgo=1 http://localhost:8080/system/userManager/user/ieb.delete.html
  * </code>
+ * <h2>Chunked Deletion</h2>
+ * <p>
+ * When many users or groups are deleted with <code>:applyTo</code>, the request can be sent to
+ * <code>/system/userManager.delete.bulk.json</code> instead. The removals are then saved after
+ * each chunk of targets rather than once at the end, so the unsaved changes stay small and a
+ * target that can not be removed only fails itself. The response is a JSON report that is
+ * written while the removals are saved, listing the outcome of each <code>:applyTo</code>
+ * value by its index. The removals that were saved stay applied if the request is stopped.
+ * </p>
+ * <code>
+ * curl -F:applyTo=user/ieb -F:applyTo=group/newGroup http://localhost:8080/system/userManager.delete.bulk.json
+ * </code>
  */
 @Component(
         service = {Servlet.class, DeleteUser.class, DeleteGroup.class, DeleteAuthorizables.class},
@@ -91,15 +112,41 @@ import org.osgi.service.component.annotations.ReferencePolicy;
             "sling.servlet.resourceTypes=sling/userManager",
             "sling.servlet.methods=POST",
             "sling.servlet.selectors=delete",
+            "sling.servlet.selectors=" + DeleteAuthorizableServlet.BULK_SELECTORS,
             "sling.servlet.prefix:Integer=-1"
         })
+@Designate(ocd = DeleteAuthorizableServlet.Config.class)
 public class DeleteAuthorizableServlet extends AbstractPostServlet
         implements DeleteUser, DeleteGroup, DeleteAuthorizables {
     private static final long serialVersionUID = 5874621724096106496L;
 
+    @ObjectClassDefinition(
+            name = "Apache Sling Delete Authorizable",
+            description = "The Sling operation to handle delete user or group requests in Sling.")
+    public @interface Config {
+
+        @AttributeDefinition(
+                name = "Bulk Chunk Size",
+                description = "The number of users or groups that are removed before the changes are saved "
+                        + "when many users or groups are deleted with one chunked request.")
+        int bulk_chunk_size() default 1000; // NOSONAR
+    }
+
+    /**
+     * The selectors of the chunked deletion requests
+     */
+    static final String BULK_SELECTORS = "delete.bulk";
+
     @Reference
     private transient SystemUserManagerPaths systemUserManagerPaths;
 
+    private int bulkChunkSize = 1000;
+
+    @Activate
+    protected void activate(Config config) {
+        bulkChunkSize = config.bulk_chunk_size();
+    }
+
     /**
      * Overridden since the @Reference annotation is not inherited from the super method
      *
@@ -123,6 +170,32 @@ public class DeleteAuthorizableServlet extends AbstractPostServlet
         super.unbindPostResponseCreator(creator, properties);
     }
 
+    /**
+     * Handles the chunked deletion requests, which stream their own report
+     * instead of the usual post response
+     */
+    @Override
+    protected void doPost(SlingJakartaHttpServletRequest request, SlingJakartaHttpServletResponse httpResponse)
+            throws ServletException, IOException {
+        if (BULK_SELECTORS.equals(request.getRequestPathInfo().getSelectorString())) {
+            String[] applyTo = request.getParameterValues(SlingPostConstants.RP_APPLY_TO);
+            if (applyTo == null) {
+                httpResponse.sendError(
+                        HttpServletResponse.SC_BAD_REQUEST, "Missing " + SlingPostConstants.RP_APPLY_TO + " parameter");
+                return;
+            }
+            Session session = request.getResourceResolver().adaptTo(Session.class);
+            doBulkOperation(
+                    request,
+                    httpResponse,
+                    null,
+                    (results, changes) -> deleteAuthorizables(
+                            session, request.getResource(), applyTo, bulkChunkSize, results, changes));
+        } else {
+            super.doPost(request, httpResponse);
+        }
+    }
+
     /*
      * (non-Javadoc)
      * @see
@@ -173,6 +246,7 @@ public class DeleteAuthorizableServlet extends AbstractPostServlet
         String userPath = systemUserManagerPaths.getUserPrefix() + user.getID();
         user.remove();
         changes.add(Modification.onDeleted(userPath));
+        fireAuthorizableChange(name);
     }
 
     /* (non-Javadoc)
@@ -192,6 +266,7 @@ public class DeleteAuthorizableServlet extends AbstractPostServlet
         String groupPath = systemUserManagerPaths.getGroupPrefix() + group.getID();
         group.remove();
         changes.add(Modification.onDeleted(groupPath));
+        fireAuthorizableChange(name);
     }
 
     /* (non-Javadoc)
@@ -206,10 +281,69 @@ public class DeleteAuthorizableServlet extends AbstractPostServlet
             Resource resource = iterator.next();
             Authorizable item = resource.adaptTo(Authorizable.class);
             if (item != null) {
+                String id = item.getID();
                 item.remove();
                 changes.add(Modification.onDeleted(resource.getPath()));
+                fireAuthorizableChange(id);
+            }
+        }
+    }
+
+    /**
+     * A user or group to remove
+     *
+     * @param index the position of the path in the :applyTo values
+     * @param id the id of the user or group
+     * @param path the resource path of the user or group
+     */
+    private record PendingRemoval(long index, String id, String path) implements BulkChunk.Item {}
+
+    /**
+     * Removes the users or groups in chunks, saving the changes once for each
+     * chunk instead of once at the end.
+     *
+     * @see org.apache.sling.jackrabbit.usermanager.DeleteAuthorizables#deleteAuthorizables(javax.jcr.Session, org.apache.sling.api.resource.Resource, java.lang.String[], int, java.util.function.Consumer, java.util.List)
+     */
+    @Override
+    public void deleteAuthorizables(
+            Session jcrSession,
+            Resource baseResource,
+            String[] paths,
+            int chunkSize,
+            Consumer<BulkOperationResult> results,
+            List<Modification> changes)
+            throws RepositoryException {
+        if (jcrSession == null) {
+            throw new RepositoryException("JCR Session not found");
+        }
+
+        UserManager userManager = ((JackrabbitSession) jcrSession).getUserManager();
+        ResourceResolver resolver = baseResource.getResourceResolver();
+        BulkChunk<PendingRemoval> chunk = new BulkChunk<>(
+                jcrSession,
+                chunkSize,
+                (pending, removalChanges) -> {
+                    Authorizable item = userManager.getAuthorizable(pending.id());
+                    if (item == null) {
+                        throw new RepositoryException("Authorizable to delete could not be determined");
+                    }
+                    item.remove();
+                    removalChanges.add(Modification.onDeleted(pending.path()));
+                    return null;
+                },
+                results,
+                changes,
+                pending -> fireAuthorizableChange(pending.id()));
+        for (int index = 0; index < paths.length; index++) {
+            Resource resource = resolver.getResource(baseResource, paths[index]);
+            Authorizable item = resource == null ? null : resource.adaptTo(Authorizable.class);
+            if (item == null) {
+                results.accept(new BulkOperationResult(index, null, "Missing source " + paths[index] + " for delete"));
+            } else {
+                chunk.add(new PendingRemoval(index, item.getID(), resource.getPath()));
             }
         }
+        chunk.save();
     }
 
     private static class ApplyToIterator implements Iterator<Resource> {
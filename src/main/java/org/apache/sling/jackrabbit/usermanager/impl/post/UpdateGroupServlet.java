@@ -73,6 +73,14 @@ import org.osgi.service.component.annotations.ReferencePolicy;
  * <dd>Any additional parameters become properties of the group node (optional)</dd>
  * <dt>*@Delete</dt>
  * <dd>The property is deleted, eg prop1@Delete</dd>
+ * <dt>:member</dt>
+ * <dd>The id or resource path of a member to add to the group (optional)</dd>
+ * <dt>:member@Delete</dt>
+ * <dd>The id or resource path of a member to remove from the group (optional)</dd>
+ * <dt>:memberSet</dt>
+ * <dd>The ids or resource paths of all the declared members of the group. Only the members
+ * that differ from the current declared members are added or removed, and an empty value
+ * removes all of them (optional)</dd>
  * </dl>
  * <h3>Response</h3>
  * <dl>
@@ -201,6 +209,7 @@ public class UpdateGroupServlet extends AbstractGroupPostServlet implements Upda
             // update the group memberships
             Resource baseResource = resourceResolver.getResource(groupPath);
             updateGroupMembership(baseResource, properties, group, changes);
+            fireAuthorizableChange(group.getID());
         } catch (RepositoryException | LoginException re) {
             throw new RepositoryException("Failed to update group.", re);
         }
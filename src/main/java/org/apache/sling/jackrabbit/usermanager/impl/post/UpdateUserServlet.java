@@ -185,6 +185,7 @@ public class UpdateUserServlet extends AbstractAuthorizablePostServlet implement
 
             // write content from form
             writeContent(jcrSession, user, reqPropertyValues, changes);
+            fireAuthorizableChange(user.getID());
 
             // SLING-2072 set the user as enabled or disabled if the request
             // has supplied the relevant properties
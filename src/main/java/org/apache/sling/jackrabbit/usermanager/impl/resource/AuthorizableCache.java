@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Size bounded and expiring cache of the values that belong to an authorizable
+ * as seen by a user.
+ * <p>
+ * The keys are indexed by the id and by the repository path of the authorizable,
+ * so the values of a changed authorizable are discarded without visiting the
+ * other entries of the cache.
+ * </p>
+ *
+ * @param <V> the type of the values
+ */
+public class AuthorizableCache<V> {
+
+    /**
+     * Key for a value of an authorizable as seen by the user of a session
+     *
+     * @param userId the id of the user of the session
+     * @param id the id of the authorizable
+     * @param path the repository path of the authorizable
+     */
+    public record Key(@NotNull String userId, @NotNull String id, @NotNull String path) {}
+
+    private final ExpiringCache<Key, V> entries;
+
+    /**
+     * The keys of the entries by authorizable id
+     */
+    private final Map<String, Set<Key>> keysById = new ConcurrentHashMap<>();
+
+    /**
+     * The keys of the entries by authorizable path, sorted so the entries below
+     * a changed path are found without a full scan
+     */
+    private final NavigableMap<String, Set<Key>> keysByPath = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param maxSize the maximum number of values to remember (0 to disable the cache)
+     * @param ttl the time to live of each value (0 or less for no expiration)
+     * @param unit the time unit of the ttl argument
+     */
+    public AuthorizableCache(int maxSize, long ttl, @NotNull TimeUnit unit) {
+        this.entries = new ExpiringCache<>(maxSize, ttl, unit, this::unindex);
+    }
+
+    /**
+     * @return true if the cache remembers any values at all
+     */
+    public boolean isEnabled() {
+        return entries.isEnabled();
+    }
+
+    /**
+     * Get the value for the key
+     *
+     * @param key the key to lookup
+     * @return the value or null if there is no value or it has expired
+     */
+    public @Nullable V get(@NotNull Key key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Put a value into the cache
+     *
+     * @param key the key of the value
+     * @param value the value to remember
+     */
+    public void put(@NotNull Key key, @NotNull V value) {
+        if (isEnabled()) {
+            entries.put(key, value);
+            // indexed after the put, so an overlapping eviction can at worst
+            //  leave an index entry behind that is cleared with the next removal
+            index(key);
+        }
+    }
+
+    /**
+     * Discard the value of the key
+     *
+     * @param key the key to discard
+     */
+    public void remove(@NotNull Key key) {
+        entries.remove(key);
+        unindex(key);
+    }
+
+    /**
+     * Discard the values of the authorizable
+     *
+     * @param id the id of the authorizable
+     */
+    public void removeId(@NotNull String id) {
+        removeAll(keysById.get(id));
+    }
+
+    /**
+     * Discard the values of the authorizables whose node is the same as,
+     * an ancestor of or a descendant of the changed path
+     *
+     * @param changedPath the path that changed
+     */
+    public void removePath(@NotNull String changedPath) {
+        for (String p = changedPath; p.lastIndexOf('/') > 0; p = p.substring(0, p.lastIndexOf('/'))) {
+            removeAll(keysByPath.get(p));
+        }
+        // '0' is the character after '/', so this is the range of the descendant paths
+        for (Set<Key> keys : keysByPath
+                .subMap(changedPath + "/", true, changedPath + "0", false)
+                .values()) {
+            removeAll(keys);
+        }
+    }
+
+    /**
+     * @return the number of remembered values
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private void removeAll(@Nullable Set<Key> keys) {
+        if (keys != null) {
+            for (Key key : keys) {
+                remove(key);
+            }
+        }
+    }
+
+    private void index(Key key) {
+        keysById.compute(key.id(), (k, keys) -> added(keys, key));
+        keysByPath.compute(key.path(), (k, keys) -> added(keys, key));
+    }
+
+    private void unindex(Key key) {
+        keysById.computeIfPresent(key.id(), (k, keys) -> removed(keys, key));
+        keysByPath.computeIfPresent(key.path(), (k, keys) -> removed(keys, key));
+    }
+
+    private static Set<Key> added(Set<Key> keys, Key key) {
+        if (keys != null && keys.contains(key)) {
+            return keys;
+        }
+        Set<Key> updated = keys == null ? new HashSet<>() : new HashSet<>(keys);
+        updated.add(key);
+        return Set.copyOf(updated);
+    }
+
+    private static Set<Key> removed(Set<Key> keys, Key key) {
+        if (!keys.contains(key)) {
+            return keys;
+        }
+        Set<Key> updated = new HashSet<>(keys);
+        updated.remove(key);
+        return updated.isEmpty() ? null : Set.copyOf(updated);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import java.util.List;
+
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Internal service that is notified about the users and groups that were
+ * created, changed or removed by the operations of this bundle. This allows
+ * any cached information about them to be discarded right away instead of
+ * waiting for the repository observation events to arrive.
+ * <p>
+ * Changes made by other means are delivered from the repository observation
+ * events by the {@link AuthorizableObservationListener}.
+ */
+public interface AuthorizableChangeListener {
+
+    /**
+     * Called when the user or group was created, changed or removed
+     *
+     * @param authorizableId the id of the user or group
+     */
+    void onChange(@NotNull String authorizableId);
+
+    /**
+     * Called when the repository content of the users and groups was changed
+     *
+     * @param changes the observed changes
+     */
+    void onRepositoryChange(@NotNull List<ResourceChange> changes);
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+/**
+ * Observes the repository content of the users and groups and passes the
+ * changes on to the {@link AuthorizableChangeListener} services, so any
+ * information they cached about the changed users and groups can be discarded.
+ */
+@Component(
+        service = ResourceChangeListener.class,
+        property = {
+            "service.description=Observes the changes to the users and groups",
+            "service.vendor=The Apache Software Foundation",
+            ResourceChangeListener.PATHS + "=/home"
+        })
+@Designate(ocd = AuthorizableObservationListener.Config.class)
+public class AuthorizableObservationListener implements ResourceChangeListener, ExternalResourceChangeListener {
+
+    @ObjectClassDefinition(name = "Apache Sling UserManager Change Observer")
+    public @interface Config {
+
+        @AttributeDefinition(
+                name = "Observed Paths",
+                description = "The repository paths where the users and groups are stored.")
+        String[] resource_paths() default {"/home"}; // NOSONAR
+    }
+
+    private final List<AuthorizableChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC)
+    protected void bindAuthorizableChangeListener(AuthorizableChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    protected void unbindAuthorizableChangeListener(AuthorizableChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void onChange(@NotNull List<ResourceChange> changes) {
+        for (AuthorizableChangeListener listener : listeners) {
+            listener.onRepositoryChange(changes);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import javax.jcr.Node;
+import javax.jcr.PathNotFoundException;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.UnsupportedRepositoryOperationException;
+import javax.jcr.Value;
+import javax.jcr.nodetype.PropertyDefinition;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads the direct properties of an authorizable in a single iteration
+ * over the properties of the authorizable node, instead of resolving each
+ * property name that was returned by {@link Authorizable#getPropertyNames()}
+ * again.
+ * <p>
+ * The same properties as the Authorizable API are provided. Those are
+ * the properties the session can read that are not protected and that
+ * are defined by the <code>rep:Authorizable</code> node type.
+ * </p>
+ */
+public final class AuthorizablePropertySnapshot {
+
+    private static final String NT_REP_AUTHORIZABLE = "rep:Authorizable";
+
+    private AuthorizablePropertySnapshot() {
+        // no instances
+    }
+
+    /**
+     * Read the direct properties of the authorizable
+     *
+     * @param session the current session
+     * @param authorizable the user or group
+     * @return the values by property name or null if the authorizable node could not be read
+     * @throws RepositoryException if the properties could not be read
+     */
+    public static @Nullable Map<String, Value[]> read(@NotNull Session session, @NotNull Authorizable authorizable)
+            throws RepositoryException {
+        Node node;
+        try {
+            node = session.getNode(authorizable.getPath());
+        } catch (PathNotFoundException | UnsupportedRepositoryOperationException e) {
+            // not accessible as a node, so the caller falls back to the Authorizable API
+            return null;
+        }
+
+        Map<String, Value[]> values = new LinkedHashMap<>();
+        for (PropertyIterator properties = node.getProperties(); properties.hasNext(); ) {
+            Property property = properties.nextProperty();
+            if (isAuthorizableProperty(property.getDefinition())) {
+                values.put(
+                        property.getName(),
+                        property.isMultiple() ? property.getValues() : new Value[] {property.getValue()});
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Checks if the property is provided by the Authorizable API
+     *
+     * @param definition the definition of the property
+     * @return true if the property is not protected and defined by the authorizable node type
+     */
+    static boolean isAuthorizableProperty(@NotNull PropertyDefinition definition) {
+        return !definition.isProtected() && definition.getDeclaringNodeType().isNodeType(NT_REP_AUTHORIZABLE);
+    }
+}
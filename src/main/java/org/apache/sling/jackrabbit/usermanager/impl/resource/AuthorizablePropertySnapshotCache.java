@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.jcr.ValueFactory;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Remembers the property snapshots of the authorizables across requests.
+ * <p>
+ * The snapshots are read through the session of the request, so only
+ * the properties that the user of the session can read are remembered and
+ * a snapshot is only shared between sessions of the same user. The
+ * snapshot is only looked up after the session has resolved the
+ * authorizable, so a user that can no longer see the authorizable does not
+ * get the snapshot either.
+ * </p>
+ * <p>
+ * The values of a session must not be used by another session, so the
+ * snapshots are remembered as the strings of the values and each session gets
+ * new values from its own value factory. Snapshots with binary, name or path
+ * values, whose strings can not be shared, are not remembered.
+ * </p>
+ * <p>
+ * The snapshots are discarded when the authorizable changes. Each change
+ * increments the revisions of the changed id or path and of the subtrees that
+ * contain it, and a snapshot whose revisions changed while it was read is
+ * discarded again, so a read that overlaps with a change does not leave a stale
+ * snapshot behind. The revisions are striped, so unrelated changes rarely keep
+ * a snapshot from being remembered.
+ * </p>
+ */
+public class AuthorizablePropertySnapshotCache {
+
+    /**
+     * The number of revision stripes (a power of two)
+     */
+    private static final int REVISION_STRIPES = 64;
+
+    private final AuthorizableCache<Map<String, StoredValues>> snapshots;
+
+    /**
+     * Incremented for each changed id or path that hashes to the stripe
+     */
+    private final AtomicLongArray changedRevisions = new AtomicLongArray(REVISION_STRIPES);
+
+    /**
+     * Incremented for each changed path below a path that hashes to the stripe
+     */
+    private final AtomicLongArray subtreeRevisions = new AtomicLongArray(REVISION_STRIPES);
+
+    /**
+     * @param maxSize the maximum number of snapshots to remember (0 to disable the cache)
+     * @param ttl the time to live of each snapshot (0 or less for no expiration)
+     * @param unit the time unit of the ttl argument
+     */
+    public AuthorizablePropertySnapshotCache(int maxSize, long ttl, @NotNull TimeUnit unit) {
+        this.snapshots = new AuthorizableCache<>(maxSize, ttl, unit);
+    }
+
+    /**
+     * @return true if the cache remembers any snapshots at all
+     */
+    public boolean isEnabled() {
+        return snapshots.isEnabled();
+    }
+
+    /**
+     * Get the snapshot of the direct properties of the authorizable, reading
+     * it when it is not remembered yet
+     *
+     * @param session the session that resolved the authorizable
+     * @param authorizable the user or group
+     * @return the values by property name or null if the authorizable node could not be read
+     * @throws RepositoryException if the properties could not be read
+     */
+    public @Nullable Map<String, Value[]> read(@NotNull Session session, @NotNull Authorizable authorizable)
+            throws RepositoryException {
+        if (session.hasPendingChanges() || !isEnabled()) {
+            // the unsaved changes of this session may not be in the shared snapshot
+            return AuthorizablePropertySnapshot.read(session, authorizable);
+        }
+
+        AuthorizableCache.Key key =
+                new AuthorizableCache.Key(session.getUserID(), authorizable.getID(), authorizable.getPath());
+        Map<String, StoredValues> stored = snapshots.get(key);
+        if (stored != null) {
+            return toValues(session.getValueFactory(), stored);
+        }
+        long readRevision = getRevision(key);
+        Map<String, Value[]> snapshot = AuthorizablePropertySnapshot.read(session, authorizable);
+        stored = snapshot == null ? null : toStored(snapshot);
+        if (stored != null) {
+            snapshots.put(key, stored);
+            // checked after the put, so either this check sees the change or
+            //  the change discards the snapshot after it was remembered
+            if (readRevision != getRevision(key)) {
+                snapshots.remove(key);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Copy the strings of the values, so they can be shared between sessions
+     *
+     * @param snapshot the values read by a session
+     * @return the strings of the values or null if some values can not be shared
+     */
+    private static @Nullable Map<String, StoredValues> toStored(@NotNull Map<String, Value[]> snapshot)
+            throws RepositoryException {
+        Map<String, StoredValues> stored = new LinkedHashMap<>();
+        for (Map.Entry<String, Value[]> entry : snapshot.entrySet()) {
+            Value[] values = entry.getValue();
+            // the type of an empty multi-valued property does not matter
+            int type = values.length == 0 ? PropertyType.STRING : values[0].getType();
+            if (type == PropertyType.BINARY || type == PropertyType.NAME || type == PropertyType.PATH) {
+                // binaries are not strings and names and paths depend on the namespace mappings of the session
+                return null;
+            }
+            String[] strings = new String[values.length];
+            for (int i = 0; i < values.length; i++) {
+                strings[i] = values[i].getString();
+            }
+            stored.put(entry.getKey(), new StoredValues(type, strings));
+        }
+        return Collections.unmodifiableMap(stored);
+    }
+
+    /**
+     * Create the values of the remembered snapshot for a session
+     *
+     * @param valueFactory the value factory of the session
+     * @param stored the remembered strings of the values
+     * @return the values by property name
+     */
+    private static @NotNull Map<String, Value[]> toValues(
+            @NotNull ValueFactory valueFactory, @NotNull Map<String, StoredValues> stored) throws RepositoryException {
+        Map<String, Value[]> snapshot = new LinkedHashMap<>();
+        for (Map.Entry<String, StoredValues> entry : stored.entrySet()) {
+            String[] strings = entry.getValue().strings();
+            Value[] values = new Value[strings.length];
+            for (int i = 0; i < strings.length; i++) {
+                values[i] =
+                        valueFactory.createValue(strings[i], entry.getValue().type());
+            }
+            snapshot.put(entry.getKey(), values);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Discard the snapshots of the authorizable
+     *
+     * @param authorizableId the id of the authorizable that changed
+     */
+    public void invalidate(@NotNull String authorizableId) {
+        changedRevisions.incrementAndGet(stripe(authorizableId));
+        snapshots.removeId(authorizableId);
+    }
+
+    /**
+     * Discard the snapshots of the authorizables whose node is the same as,
+     * an ancestor of or a descendant of the changed path
+     *
+     * @param changedPath the path that changed
+     */
+    public void invalidatePath(@NotNull String changedPath) {
+        changedRevisions.incrementAndGet(stripe(changedPath));
+        for (String p = changedPath; !p.isEmpty(); p = p.substring(0, p.lastIndexOf('/'))) {
+            subtreeRevisions.incrementAndGet(stripe(p));
+        }
+        snapshots.removePath(changedPath);
+    }
+
+    /**
+     * @return the number of remembered snapshots
+     */
+    public int size() {
+        return snapshots.size();
+    }
+
+    /**
+     * Sum the revisions that change with the authorizable: its id, its path or
+     * an ancestor path, or any path below it. The sum only grows, so it differs
+     * when any of them changed.
+     */
+    private long getRevision(@NotNull AuthorizableCache.Key key) {
+        long revision = changedRevisions.get(stripe(key.id())) + subtreeRevisions.get(stripe(key.path()));
+        for (String p = key.path(); !p.isEmpty(); p = p.substring(0, p.lastIndexOf('/'))) {
+            revision += changedRevisions.get(stripe(p));
+        }
+        return revision;
+    }
+
+    private static int stripe(@NotNull String idOrPath) {
+        int hash = idOrPath.hashCode();
+        return (hash ^ (hash >>> 16)) & (REVISION_STRIPES - 1);
+    }
+
+    /**
+     * The strings of the values of a property, which do not depend on a session
+     *
+     * @param type the property type of the values
+     * @param strings the string of each value
+     */
+    private record StoredValues(int type, @NotNull String[] strings) {}
+}
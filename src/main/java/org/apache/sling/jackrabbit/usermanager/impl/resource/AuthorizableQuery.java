@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import javax.jcr.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.jackrabbit.api.security.user.Query;
+import org.apache.jackrabbit.api.security.user.QueryBuilder;
+import org.apache.jackrabbit.api.security.user.QueryBuilder.Direction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Query for the authorizables that are listed as the children of the
+ * users or groups resource or are found with the user manager query language.
+ * The conditions and paging are pushed down to the repository so only the
+ * requested page of authorizables is read.
+ */
+public class AuthorizableQuery implements Query {
+    private final Class<? extends Authorizable> selector;
+    private final long offset;
+    private final long limit;
+    private final List<Condition> conditions = new ArrayList<>();
+    private String groupId;
+    private boolean declaredOnly;
+    private String sortPropertyName;
+    private Direction sortDirection = Direction.ASCENDING;
+
+    /**
+     * @param selector the type of authorizables to find
+     * @param offset the number of results to skip (0 for none)
+     * @param limit the maximum number of results to return (-1 for no limit)
+     */
+    public AuthorizableQuery(@NotNull Class<? extends Authorizable> selector, long offset, long limit) {
+        this.selector = selector;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * Restrict the results to the members of a group
+     *
+     * @param groupId the id of the group
+     * @param declaredOnly true to only find the declared members, false to also find the inherited members
+     */
+    public void setScope(@NotNull String groupId, boolean declaredOnly) {
+        this.groupId = groupId;
+        this.declaredOnly = declaredOnly;
+    }
+
+    /**
+     * Sort the results by the value of a property
+     *
+     * @param propertyName the relative path of the property (for example "profile/@familyName")
+     * @param direction the sort direction
+     */
+    public void setSortOrder(@NotNull String propertyName, @NotNull Direction direction) {
+        this.sortPropertyName = propertyName;
+        this.sortDirection = direction;
+    }
+
+    /**
+     * Only find the authorizables where the property has the value
+     *
+     * @param relPath the relative path of the property (for example "profile/@email")
+     * @param value the value to match
+     */
+    public void addPropertyEquals(@NotNull String relPath, @NotNull Value value) {
+        conditions.add(new PropertyEquals(relPath, value));
+    }
+
+    /**
+     * Only find the authorizables where the property matches the pattern
+     *
+     * @param relPath the relative path of the property (for example "profile/@email")
+     * @param pattern the pattern to match where '%' matches any string and '_' matches a single character
+     */
+    public void addPropertyLike(@NotNull String relPath, @NotNull String pattern) {
+        conditions.add(new PropertyLike(relPath, pattern));
+    }
+
+    /**
+     * Only find the authorizables where the id or principal name matches the pattern
+     *
+     * @param pattern the pattern to match where '%' matches any string and '_' matches a single character
+     */
+    public void addNameMatches(@NotNull String pattern) {
+        conditions.add(new NameMatches(pattern));
+    }
+
+    @Override
+    public <T> void build(QueryBuilder<T> builder) {
+        builder.setSelector(selector);
+        if (groupId != null) {
+            builder.setScope(groupId, declaredOnly);
+        }
+        T condition = null;
+        for (Condition c : conditions) {
+            T next = c.create(builder);
+            condition = condition == null ? next : builder.and(condition, next);
+        }
+        if (condition != null) {
+            builder.setCondition(condition);
+        }
+        if (sortPropertyName != null) {
+            builder.setSortOrder(sortPropertyName, sortDirection);
+        }
+        if (offset > 0 || limit >= 0) {
+            builder.setLimit(Math.max(offset, 0), limit);
+        }
+    }
+
+    /**
+     * A condition of the query
+     */
+    private interface Condition {
+        @Nullable
+        <T> T create(@NotNull QueryBuilder<T> builder);
+    }
+
+    private record PropertyEquals(String relPath, Value value) implements Condition {
+        @Override
+        public <T> T create(@NotNull QueryBuilder<T> builder) {
+            return builder.eq(relPath, value);
+        }
+    }
+
+    private record PropertyLike(String relPath, String pattern) implements Condition {
+        @Override
+        public <T> T create(@NotNull QueryBuilder<T> builder) {
+            return builder.like(relPath, pattern);
+        }
+    }
+
+    private record NameMatches(String pattern) implements Condition {
+        @Override
+        public <T> T create(@NotNull QueryBuilder<T> builder) {
+            return builder.nameMatches(pattern);
+        }
+    }
+}
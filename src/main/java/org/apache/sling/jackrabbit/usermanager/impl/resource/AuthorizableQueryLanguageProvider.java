@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.ValueFactory;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.function.Function;
+
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.jackrabbit.api.security.user.Group;
+import org.apache.jackrabbit.api.security.user.QueryBuilder.Direction;
+import org.apache.jackrabbit.api.security.user.User;
+import org.apache.jackrabbit.api.security.user.UserManager;
+import org.apache.sling.api.SlingException;
+import org.apache.sling.api.resource.QuerySyntaxException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.spi.resource.provider.QueryLanguageProvider;
+import org.apache.sling.spi.resource.provider.ResolveContext;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Query language provider that finds the users and groups with the
+ * {@link UserManager#findAuthorizables(org.apache.jackrabbit.api.security.user.Query)}
+ * api of the repository.
+ *
+ * <p>
+ * The query is a list of clauses separated by '&amp;' where the values are
+ * URL encoded, for example:
+ * <code>type=user&amp;@profile/email~=%25%40example.org&amp;sort=profile/familyName&amp;limit=10</code>
+ * </p>
+ * <dl>
+ * <dt>type=[user|group|authorizable]</dt>
+ * <dd>the type of authorizables to find (defaults to authorizable for both)</dd>
+ * <dt>@relPath=value</dt>
+ * <dd>the property at the relative path has the value</dd>
+ * <dt>@relPath~=pattern</dt>
+ * <dd>the property at the relative path is like the pattern where '%' matches any string
+ *      and '_' matches a single character</dd>
+ * <dt>nameMatches=pattern</dt>
+ * <dd>the id or principal name is like the pattern</dd>
+ * <dt>memberOf=groupId</dt>
+ * <dd>the authorizable is a declared or inherited member of the group</dd>
+ * <dt>declaredMemberOf=groupId</dt>
+ * <dd>the authorizable is a declared member of the group</dd>
+ * <dt>sort=relPath</dt>
+ * <dd>sort the results by the property at the relative path</dd>
+ * <dt>order=[asc|desc]</dt>
+ * <dd>the sort direction (defaults to asc)</dd>
+ * <dt>offset=number</dt>
+ * <dd>the number of results to skip</dd>
+ * <dt>limit=number</dt>
+ * <dd>the maximum number of results to return</dd>
+ * </dl>
+ * <p>
+ * The results are read from the repository while the returned iterator
+ * is consumed.
+ * </p>
+ */
+public class AuthorizableQueryLanguageProvider implements QueryLanguageProvider<AuthorizableResolveState> {
+
+    /**
+     * The name of the supported query language
+     */
+    public static final String LANGUAGE = "usermanager";
+
+    private static final String[] SUPPORTED_LANGUAGES = new String[] {LANGUAGE};
+
+    private final AuthorizableResourceProvider provider;
+
+    public AuthorizableQueryLanguageProvider(@NotNull AuthorizableResourceProvider provider) {
+        this.provider = provider;
+    }
+
+    @Override
+    public String[] getSupportedLanguages(@NotNull ResolveContext<AuthorizableResolveState> ctx) {
+        return SUPPORTED_LANGUAGES.clone();
+    }
+
+    @Override
+    public Iterator<Resource> findResources(
+            @NotNull ResolveContext<AuthorizableResolveState> ctx, String query, String language) {
+        Iterator<Resource> result = Collections.emptyIterator();
+        if (LANGUAGE.equals(language)) {
+            ResourceResolver resourceResolver = ctx.getResourceResolver();
+            Session session = resourceResolver.adaptTo(Session.class);
+            if (session instanceof JackrabbitSession jackrabbitSession) {
+                try {
+                    AuthorizableQuery authorizableQuery = parseQuery(query, language, session.getValueFactory());
+                    UserManager userManager = jackrabbitSession.getUserManager();
+                    Iterator<Authorizable> authorizables = userManager.findAuthorizables(authorizableQuery);
+                    result = new TransformIterator<>(
+                            authorizables, authorizable -> toResource(resourceResolver, authorizable));
+                } catch (RepositoryException e) {
+                    throw new SlingException("Failed to find authorizables with query: " + query, e);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Iterator<ValueMap> queryResources(
+            @NotNull ResolveContext<AuthorizableResolveState> ctx, String query, String language) {
+        return new TransformIterator<>(findResources(ctx, query, language), Resource::getValueMap);
+    }
+
+    /**
+     * Create the resource for an authorizable that was found
+     */
+    protected @NotNull Resource toResource(
+            @NotNull ResourceResolver resourceResolver, @NotNull Authorizable authorizable) {
+        try {
+            String prefix = authorizable.isGroup() ? provider.getGroupPrefix() : provider.getUserPrefix();
+            String path = prefix + authorizable.getID();
+            return new AuthorizableResource(
+                    authorizable, resourceResolver, path, provider, provider.getValueMapOptions());
+        } catch (RepositoryException e) {
+            throw new SlingException("Failed to create resource for authorizable", e);
+        }
+    }
+
+    /**
+     * Parse the query statement
+     *
+     * @param query the query statement
+     * @param language the query language
+     * @param valueFactory the factory for the property values to match
+     * @return the query to find the authorizables with
+     * @throws QuerySyntaxException if the query statement is not valid
+     */
+    protected static @NotNull AuthorizableQuery parseQuery(
+            String query, String language, @NotNull ValueFactory valueFactory) {
+        if (query == null) {
+            throw new QuerySyntaxException("Missing query statement", query, language);
+        }
+        String[] clauses = query.isEmpty() ? new String[0] : query.split("&");
+
+        // first pass for the arguments of the query constructor
+        Class<? extends Authorizable> selector = Authorizable.class;
+        long offset = -1;
+        long limit = -1;
+        for (String clause : clauses) {
+            String[] nameAndValue = splitClause(clause, query, language);
+            String name = nameAndValue[0];
+            String value = nameAndValue[1];
+            if ("type".equals(name)) {
+                selector = switch (value) {
+                    case "user" -> User.class;
+                    case "group" -> Group.class;
+                    case "authorizable" -> Authorizable.class;
+                    default -> throw new QuerySyntaxException("Invalid type: " + value, query, language);};
+            } else if ("offset".equals(name)) {
+                offset = parseNumber(name, value, query, language);
+            } else if ("limit".equals(name)) {
+                limit = parseNumber(name, value, query, language);
+            }
+        }
+
+        // second pass for the conditions
+        AuthorizableQuery authorizableQuery = new AuthorizableQuery(selector, offset, limit);
+        String sort = null;
+        Direction direction = Direction.ASCENDING;
+        try {
+            for (String clause : clauses) {
+                String[] nameAndValue = splitClause(clause, query, language);
+                String name = nameAndValue[0];
+                String value = nameAndValue[1];
+                if (name.startsWith("@") && name.endsWith("~")) {
+                    authorizableQuery.addPropertyLike(toPropertyPath(name.substring(0, name.length() - 1)), value);
+                } else if (name.startsWith("@")) {
+                    authorizableQuery.addPropertyEquals(toPropertyPath(name), valueFactory.createValue(value));
+                } else if ("nameMatches".equals(name)) {
+                    authorizableQuery.addNameMatches(value);
+                } else if ("memberOf".equals(name)) {
+                    authorizableQuery.setScope(value, false);
+                } else if ("declaredMemberOf".equals(name)) {
+                    authorizableQuery.setScope(value, true);
+                } else if ("sort".equals(name)) {
+                    sort = toPropertyPath(value);
+                } else if ("order".equals(name)) {
+                    direction = switch (value) {
+                        case "asc" -> Direction.ASCENDING;
+                        case "desc" -> Direction.DESCENDING;
+                        default -> throw new QuerySyntaxException("Invalid order: " + value, query, language);};
+                } else if (!"type".equals(name) && !"offset".equals(name) && !"limit".equals(name)) {
+                    throw new QuerySyntaxException("Unknown clause: " + name, query, language);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new QuerySyntaxException("Invalid query statement", query, language, e);
+        }
+        if (sort != null) {
+            authorizableQuery.setSortOrder(sort, direction);
+        }
+        return authorizableQuery;
+    }
+
+    private static @NotNull String[] splitClause(@NotNull String clause, String query, String language) {
+        int eq = clause.indexOf('=');
+        if (eq <= 0) {
+            throw new QuerySyntaxException("Invalid clause: " + clause, query, language);
+        }
+        String name = URLDecoder.decode(clause.substring(0, eq), StandardCharsets.UTF_8);
+        String value = URLDecoder.decode(clause.substring(eq + 1), StandardCharsets.UTF_8);
+        return new String[] {name, value};
+    }
+
+    private static long parseNumber(@NotNull String name, @NotNull String value, String query, String language) {
+        try {
+            long number = Long.parseLong(value);
+            if (number < 0) {
+                throw new QuerySyntaxException("Negative " + name + ": " + value, query, language);
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new QuerySyntaxException("Invalid " + name + ": " + value, query, language, e);
+        }
+    }
+
+    /**
+     * Convert a property path like "@profile/email" or "profile/email" to the
+     * "profile/@email" form that the authorizable query expects
+     */
+    protected static @NotNull String toPropertyPath(@NotNull String name) {
+        String relPath = name.startsWith("@") ? name.substring(1) : name;
+        int lastSlash = relPath.lastIndexOf('/');
+        String propertyName = relPath.substring(lastSlash + 1);
+        if (propertyName.startsWith("@")) {
+            propertyName = propertyName.substring(1);
+        }
+        if (propertyName.isEmpty()) {
+            throw new IllegalArgumentException("Missing property name: " + name);
+        }
+        return relPath.substring(0, lastSlash + 1) + "@" + propertyName;
+    }
+
+    /**
+     * Iterator that converts the items of another iterator while
+     * they are consumed
+     */
+    private static class TransformIterator<S, T> implements Iterator<T> {
+        private final Iterator<S> source;
+        private final Function<S, T> transform;
+
+        TransformIterator(@NotNull Iterator<S> source, @NotNull Function<S, T> transform) {
+            this.source = source;
+            this.transform = transform;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return source.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return transform.apply(source.next());
+        }
+    }
+}
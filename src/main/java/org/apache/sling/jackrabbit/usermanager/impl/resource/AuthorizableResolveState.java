@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import javax.jcr.RepositoryException;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.jackrabbit.api.security.principal.PrincipalManager;
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.jackrabbit.api.security.user.UserManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Provider state that lives as long as the resource resolver it was
+ * created for. Remembers the authorizables and principals that were
+ * already found, so resolving the same path again during the same
+ * request does not have to look them up in the repository again.
+ * <p>
+ * The entries of a user or group are forgotten when it is changed by the
+ * operations of this bundle, which may happen on another thread.
+ * </p>
+ */
+public class AuthorizableResolveState {
+    private final Map<String, Authorizable> authorizables = new ConcurrentHashMap<>();
+    private final Map<String, Principal> principals = new ConcurrentHashMap<>();
+
+    /**
+     * Get the authorizable with the supplied id
+     *
+     * @param userManager the user manager to use for a lookup
+     * @param id the id of the authorizable
+     * @return the authorizable or null if not found
+     * @throws RepositoryException if the lookup fails
+     */
+    public @Nullable Authorizable getAuthorizable(@NotNull UserManager userManager, @NotNull String id)
+            throws RepositoryException {
+        Authorizable authorizable = authorizables.get(id);
+        if (authorizable == null) {
+            authorizable = userManager.getAuthorizable(id);
+            if (authorizable != null) {
+                authorizables.put(id, authorizable);
+            }
+        }
+        return authorizable;
+    }
+
+    /**
+     * Get the principal with the supplied name
+     *
+     * @param principalManager the principal manager to use for a lookup
+     * @param name the name of the principal
+     * @return the principal or null if not found
+     */
+    public @Nullable Principal getPrincipal(@NotNull PrincipalManager principalManager, @NotNull String name) {
+        Principal principal = principals.get(name);
+        if (principal == null) {
+            principal = principalManager.getPrincipal(name);
+            if (principal != null) {
+                principals.put(name, principal);
+            }
+        }
+        return principal;
+    }
+
+    /**
+     * Forget the authorizable and principal that were remembered for the id
+     *
+     * @param id the id of the changed or removed authorizable
+     */
+    public void forget(@NotNull String id) {
+        authorizables.remove(id);
+        principals.remove(id);
+    }
+
+    /**
+     * Forget everything that was remembered so far
+     */
+    public void clear() {
+        authorizables.clear();
+        principals.clear();
+    }
+}
@@ -19,6 +19,7 @@
 package org.apache.sling.jackrabbit.usermanager.impl.resource;
 
 import javax.jcr.RepositoryException;
+import javax.jcr.Session;
 
 import java.util.Map;
 
@@ -50,16 +51,27 @@ public class AuthorizableResource extends BaseResource {
     protected final Authorizable authorizable;
     private final String resourceType;
     protected final SystemUserManagerPaths systemUserManagerPaths;
+    protected final AuthorizableValueMapOptions valueMapOptions;
 
     public AuthorizableResource(
             Authorizable authorizable,
             ResourceResolver resourceResolver,
             String path,
             SystemUserManagerPaths systemUserManagerPaths) {
+        this(authorizable, resourceResolver, path, systemUserManagerPaths, AuthorizableValueMapOptions.DEFAULTS);
+    }
+
+    public AuthorizableResource(
+            Authorizable authorizable,
+            ResourceResolver resourceResolver,
+            String path,
+            SystemUserManagerPaths systemUserManagerPaths,
+            AuthorizableValueMapOptions valueMapOptions) {
         super(resourceResolver, path);
 
         this.authorizable = authorizable;
         this.systemUserManagerPaths = systemUserManagerPaths;
+        this.valueMapOptions = valueMapOptions;
         this.resourceType = toResourceType(authorizable);
     }
 
@@ -91,7 +103,11 @@ public class AuthorizableResource extends BaseResource {
     @Override
     public <T> T adaptTo(Class<T> type) {
         if (type == Map.class || type == ValueMap.class) {
-            ValueMap valueMap = new AuthorizableValueMap(authorizable, systemUserManagerPaths);
+            ValueMap valueMap = new AuthorizableValueMap(
+                    authorizable,
+                    systemUserManagerPaths,
+                    valueMapOptions.withProjection(this),
+                    resourceResolver.adaptTo(Session.class));
             return type.cast(valueMap);
         } else if (type == Authorizable.class
                 || (type == User.class && !authorizable.isGroup())
@@ -20,28 +20,43 @@ package org.apache.sling.jackrabbit.usermanager.impl.resource;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.RowIterator;
 
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.jackrabbit.api.JackrabbitSession;
 import org.apache.jackrabbit.api.security.principal.GroupPrincipal;
+import org.apache.jackrabbit.api.security.principal.ItemBasedPrincipal;
 import org.apache.jackrabbit.api.security.principal.PrincipalIterator;
 import org.apache.jackrabbit.api.security.principal.PrincipalManager;
 import org.apache.jackrabbit.api.security.user.Authorizable;
 import org.apache.jackrabbit.api.security.user.Group;
+import org.apache.jackrabbit.api.security.user.QueryBuilder.Direction;
 import org.apache.jackrabbit.api.security.user.User;
 import org.apache.jackrabbit.api.security.user.UserManager;
+import org.apache.jackrabbit.oak.spi.security.user.UserConstants;
 import org.apache.sling.api.SlingException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.SyntheticResource;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
 import org.apache.sling.commons.osgi.OsgiUtil;
 import org.apache.sling.jackrabbit.usermanager.resource.SystemUserManagerPaths;
+import org.apache.sling.spi.resource.provider.QueryLanguageProvider;
 import org.apache.sling.spi.resource.provider.ResolveContext;
 import org.apache.sling.spi.resource.provider.ResourceContext;
 import org.apache.sling.spi.resource.provider.ResourceProvider;
@@ -49,6 +64,10 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.Designate;
 import org.osgi.service.metatype.annotations.ObjectClassDefinition;
@@ -57,16 +76,60 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Resource Provider implementation for jackrabbit UserManager resources.
+ * <p>
+ * The children of the users and groups resources can be listed one page at
+ * a time by supplying the <code>offset</code> and/or <code>limit</code> path
+ * parameters when resolving the parent resource. For example:
+ * <code>/system/userManager/user;offset=100;limit=50.1.json</code>
+ * </p>
+ * <p>
+ * The children are sorted by a property of the authorizables when the
+ * <code>sort</code> path parameter supplies the relative path of the property
+ * and the optional <code>order</code> path parameter is <code>asc</code> or
+ * <code>desc</code>. For example:
+ * <code>/system/userManager/user;sort='profile/familyName';order=desc;limit=50.1.json</code>
+ * </p>
+ * <p>
+ * The properties of the users and groups can be limited to the keys that
+ * are supplied as the comma separated value of the <code>properties</code>
+ * path parameter, so the other properties and the memberships are not read.
+ * When supplied for the users or groups resource, the projection applies
+ * to the listed children. For example:
+ * <code>/system/userManager/user;properties='email,memberOf';limit=50.1.json</code>
+ * </p>
+ * <p>
+ * The number of children of the users and groups resources is rendered
+ * without listing them with the <code>count</code> selector. For example:
+ * <code>/system/userManager/user.count.json</code>
+ * </p>
+ * <p>
+ * The members of a group are provided one page at a time by the
+ * <code>members</code> child resource of the group, which supports the
+ * <code>offset</code> and <code>limit</code> path parameters and the
+ * <code>declared</code> path parameter to skip the inherited members.
+ * For example:
+ * <code>/system/userManager/group/group1/members;declared=true;offset=100;limit=50.json</code>
+ * The members resource is not listed as a child of the group and takes
+ * precedence over a nested property container with the same name.
+ * </p>
+ * <p>
+ * The users and groups can also be searched with the
+ * {@link AuthorizableQueryLanguageProvider#LANGUAGE} query language of the
+ * resource resolver find and query methods.
+ * </p>
  */
 @Component(
-        service = {ResourceProvider.class, SystemUserManagerPaths.class},
+        service = {ResourceProvider.class, SystemUserManagerPaths.class, AuthorizableChangeListener.class},
         property = {
             "service.description=Resource provider implementation for UserManager resources",
             "service.vendor=The Apache Software Foundation",
-            ResourceProvider.PROPERTY_ROOT + "=" + AuthorizableResourceProvider.DEFAULT_SYSTEM_USER_MANAGER_PATH
+            ResourceProvider.PROPERTY_ROOT + "=" + AuthorizableResourceProvider.DEFAULT_SYSTEM_USER_MANAGER_PATH,
+            ResourceProvider.PROPERTY_AUTHENTICATE + "=" + ResourceProvider.AUTHENTICATE_LAZY,
+            ResourceProvider.PROPERTY_REFRESHABLE + ":Boolean=true"
         })
 @Designate(ocd = AuthorizableResourceProvider.Config.class)
-public class AuthorizableResourceProvider extends ResourceProvider<Object> implements SystemUserManagerPaths {
+public class AuthorizableResourceProvider extends ResourceProvider<AuthorizableResolveState>
+        implements SystemUserManagerPaths, AuthorizableChangeListener {
 
     @ObjectClassDefinition(name = "Apache Sling UserManager Resource Provider")
     public @interface Config {
@@ -80,8 +143,78 @@ public class AuthorizableResourceProvider extends ResourceProvider<Object> imple
                 name = "Provide Resources For Nested Properties",
                 description =
                         "Specifies whether container resources are provided for any nested authorizable properties. "
-                                + "The resourceType for these ancestor resources would be 'sling/[user|group]/properties'")
+                                + "The resourceType for these ancestor resources would be 'sling/[user|group]/properties'. "
+                                + "A nested container named 'members' of a group and its direct children are not "
+                                + "provided, as that path is the members resource of the group.")
         boolean resources_for_nested_properties() default false; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Negative Lookup Cache Size",
+                description = "The maximum number of unknown user or group ids to remember, so resolving "
+                        + "the same unknown id again does not have to look it up in the repository. "
+                        + "Set to 0 to disable.")
+        int negative_lookup_cache_size() default 1000; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Negative Lookup Cache TTL",
+                description = "The number of seconds an unknown user or group id is remembered.")
+        int negative_lookup_cache_ttl() default 60; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Nested Property Index Cache Size",
+                description = "The maximum number of authorizables to remember the nested property containers for, "
+                        + "so they are not read again for each nested resource. Set to 0 to disable.")
+        int nested_property_index_cache_size() default 1000; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Nested Property Index Cache TTL",
+                description = "The number of seconds the nested property containers of an authorizable are remembered.")
+        int nested_property_index_cache_ttl() default 300; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Count Cache TTL",
+                description = "The number of seconds the number of users and groups rendered by the "
+                        + "count selector is remembered, so the count may lag behind the added and removed "
+                        + "users and groups for that long. Set to 0 to count each time.")
+        int count_cache_ttl() default 30; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Count Limit",
+                description = "The maximum number of users or groups that are counted one at a time when the "
+                        + "index does not provide the size of the query result. When there are more, the limit "
+                        + "is rendered as an estimate of the count.")
+        int count_limit() default 10000; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Include Transitive Memberships",
+                description = "Specifies whether the members and memberOf values of a user or group are included "
+                        + "when all the values are read (for example when rendering the authorizable as JSON). "
+                        + "Walking the transitive memberships may be slow for large groups. When excluded, "
+                        + "the values can still be read by name.")
+        boolean transitive_memberships_in_full_read() default true; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Property Snapshot Cache Size",
+                description = "The maximum number of user and group property snapshots to share across requests, "
+                        + "so the properties of frequently read authorizables are not read again for each request. "
+                        + "A snapshot is only shared between sessions of the same user and is discarded when the "
+                        + "authorizable changes. Set to 0 to disable.")
+        int property_snapshot_cache_size() default 0; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Property Snapshot Cache TTL",
+                description = "The number of seconds a property snapshot is shared.")
+        int property_snapshot_cache_ttl() default 300; // NOSONAR
+
+        @AttributeDefinition(
+                name = "List Non-Authorizable Principals",
+                description = "Specifies whether the principals of the other principal providers (for example "
+                        + "external or dynamic groups) that are not backed by a user or group are listed as "
+                        + "children of the users and groups resources. Finding those principals walks all the "
+                        + "principals for each listing, which makes every listing and page as slow as the number "
+                        + "of principals, so when disabled only the everyone group is listed in addition to the "
+                        + "users and groups.")
+        boolean non_authorizable_principals_listed() default false; // NOSONAR
     }
 
     /**
@@ -97,8 +230,90 @@ public class AuthorizableResourceProvider extends ResourceProvider<Object> imple
 
     public static final String DEFAULT_SYSTEM_USER_MANAGER_PATH = "/system/userManager"; // NOSONAR
 
+    /**
+     * Name of the path parameter for the number of children to skip
+     */
+    public static final String PARAM_OFFSET = "offset"; // NOSONAR
+
+    /**
+     * Name of the path parameter for the maximum number of children to return
+     */
+    public static final String PARAM_LIMIT = "limit"; // NOSONAR
+
+    /**
+     * Name of the path parameter for the relative path of the property to sort the children by
+     */
+    public static final String PARAM_SORT = "sort"; // NOSONAR
+
+    /**
+     * Name of the path parameter for the sort direction (asc or desc)
+     */
+    public static final String PARAM_ORDER = "order"; // NOSONAR
+
+    /**
+     * Name of the path parameter to list only the declared members of a group
+     */
+    public static final String PARAM_DECLARED = "declared"; // NOSONAR
+
+    /**
+     * Name of the path parameter for the comma separated keys of the
+     * properties to provide for the users and groups
+     */
+    public static final String PARAM_PROPERTIES = "properties"; // NOSONAR
+
     private boolean resourcesForNestedProperties = true;
 
+    private boolean nonAuthorizablePrincipalsListed = false;
+
+    private volatile AuthorizableValueMapOptions valueMapOptions = AuthorizableValueMapOptions.DEFAULTS; // NOSONAR
+
+    /**
+     * The index of the group memberships or null if it is not available
+     */
+    private volatile MembershipGraph membershipGraph; // NOSONAR
+
+    /**
+     * The ids that were found to be neither an authorizable nor a principal
+     * with the ids of the users that looked them up
+     */
+    private ExpiringCache<String, Set<String>> negativeLookups = new ExpiringCache<>(0, 0, TimeUnit.SECONDS);
+
+    /**
+     * The nested property containers of the authorizables
+     */
+    private AuthorizableCache<NestedPropertyIndex> nestedPropertyIndexes =
+            new AuthorizableCache<>(0, 0, TimeUnit.SECONDS);
+
+    /**
+     * The property snapshots of the authorizables that are shared across requests
+     */
+    private AuthorizablePropertySnapshotCache propertySnapshots =
+            new AuthorizablePropertySnapshotCache(0, 0, TimeUnit.SECONDS);
+
+    /**
+     * Finds the users and groups for the resource resolver queries
+     */
+    private final AuthorizableQueryLanguageProvider queryLanguageProvider = new AuthorizableQueryLanguageProvider(this);
+
+    /**
+     * The maximum number of remembered counts (one for each type per user)
+     */
+    private static final int COUNT_CACHE_SIZE = 100;
+
+    /**
+     * The number of users or groups that were counted
+     */
+    private ExpiringCache<CountKey, AuthorizablesResource.Count> counts = new ExpiringCache<>(0, 0, TimeUnit.SECONDS);
+
+    private long countLimit = 10000;
+
+    /**
+     * The states of the open resource resolvers, so the authorizables they
+     * remember can be forgotten when changed
+     */
+    private final Set<AuthorizableResolveState> resolveStates =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
     @Activate
     protected void activate(final Config config) {
         systemUserManagerPath = OsgiUtil.toString(config.provider_root(), DEFAULT_SYSTEM_USER_MANAGER_PATH);
@@ -107,6 +322,119 @@ public class AuthorizableResourceProvider extends ResourceProvider<Object> imple
         systemUserManagerGroupPath = String.format("%s/group", systemUserManagerPath);
         systemUserManagerGroupPrefix = String.format("%s/", systemUserManagerGroupPath);
         resourcesForNestedProperties = config.resources_for_nested_properties();
+        nonAuthorizablePrincipalsListed = config.non_authorizable_principals_listed();
+        propertySnapshots = new AuthorizablePropertySnapshotCache(
+                config.property_snapshot_cache_size(), config.property_snapshot_cache_ttl(), TimeUnit.SECONDS);
+        valueMapOptions = new AuthorizableValueMapOptions(
+                config.transitive_memberships_in_full_read(), null, propertySnapshots, membershipGraph);
+        negativeLookups = new ExpiringCache<>(
+                config.negative_lookup_cache_size(), config.negative_lookup_cache_ttl(), TimeUnit.SECONDS);
+        counts = new ExpiringCache<>(
+                config.count_cache_ttl() > 0 ? COUNT_CACHE_SIZE : 0, config.count_cache_ttl(), TimeUnit.SECONDS);
+        countLimit = Math.max(1, config.count_limit());
+        nestedPropertyIndexes = new AuthorizableCache<>(
+                config.nested_property_index_cache_size(), config.nested_property_index_cache_ttl(), TimeUnit.SECONDS);
+    }
+
+    @Reference(
+            cardinality = ReferenceCardinality.OPTIONAL,
+            policy = ReferencePolicy.DYNAMIC,
+            policyOption = ReferencePolicyOption.GREEDY)
+    protected void bindMembershipGraph(MembershipGraph graph) {
+        membershipGraph = graph;
+        valueMapOptions = valueMapOptions.withMembershipGraph(graph);
+    }
+
+    protected void unbindMembershipGraph(MembershipGraph graph) {
+        if (membershipGraph == graph) {
+            membershipGraph = null;
+            valueMapOptions = valueMapOptions.withMembershipGraph(null);
+        }
+    }
+
+    /**
+     * Get the index of the nested property containers of the authorizable
+     *
+     * @param session the current session
+     * @param authorizable the user or group
+     * @return the index of the nested property containers
+     * @throws RepositoryException if the id or path of the authorizable could not be read
+     */
+    protected @NotNull NestedPropertyIndex getNestedPropertyIndex(
+            @NotNull Session session, @NotNull Authorizable authorizable) throws RepositoryException {
+        // the visible nested properties depend on the access rights of the user
+        AuthorizableCache.Key key =
+                new AuthorizableCache.Key(session.getUserID(), authorizable.getID(), authorizable.getPath());
+        NestedPropertyIndex index = nestedPropertyIndexes.get(key);
+        if (index == null) {
+            index = new NestedPropertyIndex();
+            nestedPropertyIndexes.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * @return the options for reading the values of the authorizables
+     */
+    public @NotNull AuthorizableValueMapOptions getValueMapOptions() {
+        return valueMapOptions;
+    }
+
+    /**
+     * Provides the users and groups query language
+     *
+     * @see org.apache.sling.spi.resource.provider.ResourceProvider#getQueryLanguageProvider()
+     */
+    @Override
+    public @Nullable QueryLanguageProvider<AuthorizableResolveState> getQueryLanguageProvider() {
+        return queryLanguageProvider;
+    }
+
+    /**
+     * Discard the cached information about the authorizable
+     *
+     * @see org.apache.sling.jackrabbit.usermanager.impl.resource.AuthorizableChangeListener#onChange(java.lang.String)
+     */
+    @Override
+    public void onChange(@NotNull String authorizableId) {
+        negativeLookups.remove(authorizableId);
+        nestedPropertyIndexes.removeId(authorizableId);
+        propertySnapshots.invalidate(authorizableId);
+        synchronized (resolveStates) {
+            for (AuthorizableResolveState state : resolveStates) {
+                state.forget(authorizableId);
+            }
+        }
+    }
+
+    /**
+     * Discard the cached information that may be stale after the observed
+     * changes to the users and groups.
+     *
+     * @see org.apache.sling.jackrabbit.usermanager.impl.resource.AuthorizableChangeListener#onRepositoryChange(java.util.List)
+     */
+    @Override
+    public void onRepositoryChange(@NotNull List<ResourceChange> changes) {
+        // a save usually reports many properties of the same nodes, so each
+        //  changed node is only invalidated once
+        Set<String> changedPaths = new LinkedHashSet<>();
+        for (ResourceChange change : changes) {
+            String changedPath = change.getPath();
+            if (change.getType() == ChangeType.ADDED) {
+                // the node name is the id of the added authorizable unless a custom
+                //  AuthorizableNodeName is configured, in which case the unknown id
+                //  is remembered until it expires
+                negativeLookups.remove(ResourceUtil.getName(changedPath));
+            }
+            changedPaths.add(changedPath);
+        }
+        for (String changedPath : changedPaths) {
+            // forget the nested property containers of the changed home folders
+            nestedPropertyIndexes.removePath(changedPath);
+            propertySnapshots.invalidatePath(changedPath);
+        }
+        // the counts are not discarded here, as nearly every change under /home adds
+        //  or removes some node, so they are only remembered for a short time instead
     }
 
     /* (non-Javadoc)
@@ -149,17 +477,53 @@ public class AuthorizableResourceProvider extends ResourceProvider<Object> imple
         return systemUserManagerGroupPrefix;
     }
 
+    /**
+     * Creates the state that remembers the authorizables and principals that
+     * were looked up during the lifetime of the resource resolver.
+     */
+    @Override
+    public @Nullable AuthorizableResolveState authenticate(@NotNull Map<String, Object> authenticationInfo) {
+        AuthorizableResolveState state = new AuthorizableResolveState();
+        resolveStates.add(state);
+        return state;
+    }
+
+    @Override
+    public void logout(@Nullable AuthorizableResolveState state) {
+        if (state != null) {
+            resolveStates.remove(state);
+            state.clear();
+        }
+    }
+
+    /**
+     * Forget the remembered lookups so the next access reflects the current
+     * state of the repository.
+     */
+    @Override
+    public void refresh(@NotNull ResolveContext<AuthorizableResolveState> ctx) {
+        AuthorizableResolveState state = ctx.getProviderState();
+        if (state != null) {
+            state.clear();
+        }
+    }
+
     @Override
     public Resource getResource(
-            ResolveContext<Object> ctx, String path, ResourceContext resourceContext, Resource parent) {
+            ResolveContext<AuthorizableResolveState> ctx,
+            String path,
+            ResourceContext resourceContext,
+            Resource parent) {
 
         // handle resources for the virtual container resources
         if (path.equals(systemUserManagerPath)) {
             return new SyntheticResource(ctx.getResourceResolver(), path, "sling/userManager");
         } else if (path.equals(systemUserManagerUserPath)) {
-            return new SyntheticResource(ctx.getResourceResolver(), path, "sling/users");
+            return new AuthorizablesResource(
+                    ctx.getResourceResolver(), path, "sling/users", () -> countAuthorizables(ctx, User.class));
         } else if (path.equals(systemUserManagerGroupPath)) {
-            return new SyntheticResource(ctx.getResourceResolver(), path, "sling/groups");
+            return new AuthorizablesResource(
+                    ctx.getResourceResolver(), path, "sling/groups", () -> countAuthorizables(ctx, Group.class));
         }
 
         AuthorizableWorker<Resource> authorizableWorker = (authorizable, relPath) -> {
@@ -168,11 +532,21 @@ public class AuthorizableResourceProvider extends ResourceProvider<Object> imple
             // that wraps it.
             if (relPath == null) {
                 result = new AuthorizableResource(
-                        authorizable, ctx.getResourceResolver(), path, AuthorizableResourceProvider.this);
+                        authorizable,
+                        ctx.getResourceResolver(),
+                        path,
+                        AuthorizableResourceProvider.this,
+                        valueMapOptions);
+            } else if (authorizable instanceof Group group && isGroupMembersPath(relPath)) {
+                Map<String, String> parameters =
+                        resourceContext == null ? null : resourceContext.getResolveParameters();
+                boolean declaredOnly = parameters != null && "true".equalsIgnoreCase(parameters.get(PARAM_DECLARED));
+                result = getGroupMembersResource(ctx, group, path, relPath, declaredOnly);
             } else if (resourcesForNestedProperties) {
-                // check if the relPath resolves valid property names
-                Iterator<String> propertyNames = getPropertyNames(relPath, authorizable);
-                if (propertyNames.hasNext()) {
+                // check if the relPath is a nested property container
+                Session session = ctx.getResourceResolver().adaptTo(Session.class);
+                if (session != null
+                        && getNestedPropertyIndex(session, authorizable).isContainer(session, authorizable, relPath)) {
                     // provide a resource that wraps for the specific nested properties
                     result = new NestedAuthorizableResource(
                             authorizable, ctx.getResourceResolver(), path, AuthorizableResourceProvider.this, relPath);
@@ -192,7 +566,7 @@ public class AuthorizableResourceProvider extends ResourceProvider<Object> imple
      * then invoke the worker to do some work.
      */
     protected <T> T maybeDoAuthorizableWork(
-            @NotNull ResolveContext<Object> ctx,
+            @NotNull ResolveContext<AuthorizableResolveState> ctx,
             @NotNull String path,
             @NotNull AuthorizableWorker<T> authorizableWorker,
             @Nullable PrincipalWorker<T> principalWorker) {
@@ -220,11 +594,17 @@ public class AuthorizableResourceProvider extends ResourceProvider<Object> imple
                 relPath = suffix.substring(firstSlash + 1);
             }
             Session session = ctx.getResourceResolver().adaptTo(Session.class);
-            if (session != null) {
+            // the visible authorizables depend on the access rights of the user
+            String userId = session == null ? null : String.valueOf(session.getUserID());
+            Set<String> unknownTo = negativeLookups.get(pid);
+            if (userId != null && (unknownTo == null || !unknownTo.contains(userId))) {
                 try {
                     UserManager userManager = ((JackrabbitSession) session).getUserManager();
                     if (userManager != null) {
-                        Authorizable authorizable = userManager.getAuthorizable(pid);
+                        AuthorizableResolveState state = ctx.getProviderState();
+                        Authorizable authorizable = state == null
+                                ? userManager.getAuthorizable(pid)
+                                : state.getAuthorizable(userManager, pid);
                         if (authorizable != null) {
                             if (expectedAuthorizableClass.isInstance(authorizable)) { // SLING-12185
                                 result = authorizableWorker.doWork(authorizable, relPath);
@@ -233,9 +613,19 @@ public class AuthorizableResourceProvider extends ResourceProvider<Object> imple
                             // SLING-11098 check for a principal that is not an authorizable like the everyone group
                             PrincipalManager principalManager = ((JackrabbitSession) session).getPrincipalManager();
                             if (principalManager != null) {
-                                @Nullable Principal principal = principalManager.getPrincipal(pid);
+                                @Nullable
+                                Principal principal = state == null
+                                        ? principalManager.getPrincipal(pid)
+                                        : state.getPrincipal(principalManager, pid);
                                 if (principal != null) {
                                     result = principalWorker.doWork(principal);
+                                } else {
+                                    // neither an authorizable or a principal, so remember that
+                                    if (unknownTo == null) {
+                                        unknownTo = ConcurrentHashMap.newKeySet();
+                                        negativeLookups.put(pid, unknownTo);
+                                    }
+                                    unknownTo.add(userId);
                                 }
                             }
                         }
@@ -251,9 +641,9 @@ public class AuthorizableResourceProvider extends ResourceProvider<Object> imple
     protected static Iterator<String> getPropertyNames(String relPath, Authorizable authorizable) {
         Iterator<String> propertyNames;
         try {
-            // TODO: there isn't any way to check if relPath is valid
-            //    as this call throws an exception instead of returning null
-            //    or an empty iterator.
+            // there isn't any way to check if relPath is valid as this call
+            //    throws an exception instead of returning null or an empty
+            //    iterator, so the provider checks the NestedPropertyIndex first
             propertyNames = authorizable.getPropertyNames(relPath);
         } catch (RepositoryException re) {
             Logger logger = LoggerFactory.getLogger(AuthorizableResourceProvider.class);
@@ -266,7 +656,7 @@ public class AuthorizableResourceProvider extends ResourceProvider<Object> imple
     }
 
     @Override
-    public Iterator<Resource> listChildren(ResolveContext<Object> ctx, Resource parent) {
+    public Iterator<Resource> listChildren(ResolveContext<AuthorizableResolveState> ctx, Resource parent) {
         try {
             String path = parent.getPath();
 
@@ -278,41 +668,47 @@ public class AuthorizableResourceProvider extends ResourceProvider<Object> imple
                 return resources.iterator();
             }
 
-            int searchType = -1;
+            Class<? extends Authorizable> selector = null;
             if (systemUserManagerUserPath.equals(path)) {
-                searchType = PrincipalManager.SEARCH_TYPE_NOT_GROUP;
+                selector = User.class;
             } else if (systemUserManagerGroupPath.equals(path)) {
-                searchType = PrincipalManager.SEARCH_TYPE_GROUP;
+                selector = Group.class;
             }
-            if (searchType != -1) {
-                PrincipalIterator principals = null;
+            if (selector != null) {
                 ResourceResolver resourceResolver = parent.getResourceResolver();
                 Session session = resourceResolver.adaptTo(Session.class);
                 if (session != null) {
-                    PrincipalManager principalManager = ((JackrabbitSession) session).getPrincipalManager();
-                    principals = principalManager.getPrincipals(searchType);
-                }
-
-                if (principals != null) {
-                    return new ChildrenIterator(parent, principals);
+                    return listAuthorizableChildren(
+                            parent,
+                            (JackrabbitSession) session,
+                            selector,
+                            getPagingParameter(parent, PARAM_OFFSET),
+                            getPagingParameter(parent, PARAM_LIMIT),
+                            getSortParameter(parent),
+                            "desc".equalsIgnoreCase(getPathParameter(parent, PARAM_ORDER))
+                                    ? Direction.DESCENDING
+                                    : Direction.ASCENDING);
                 }
+            } else if (parent instanceof GroupMembersResource membersResource) {
+                // handle the members of a group
+                return membersResource.listMembers(
+                        "true".equalsIgnoreCase(getPathParameter(parent, PARAM_DECLARED)),
+                        getPagingParameter(parent, PARAM_OFFSET),
+                        getPagingParameter(parent, PARAM_LIMIT));
             } else if (resourcesForNestedProperties) {
                 // handle nested property containers
 
                 AuthorizableWorker<Iterator<Resource>> authorizableWorker = (authorizable, relPath) -> {
                     Iterator<Resource> result = null;
-                    Resource r = ctx.getResourceResolver().resolve(authorizable.getPath());
-                    if (relPath != null) {
-                        r = r.getChild(relPath);
-                    }
-                    if (r != null) {
-                        // only include the children that are nested property containers
-                        List<Resource> propContainers = filterPropertyContainers(relPath, authorizable, r);
-                        if (!propContainers.isEmpty()) {
-                            result = new NestedChildrenIterator(
-                                    parent,
-                                    authorizable.getID(),
-                                    r.getChildren().iterator());
+                    Session session = ctx.getResourceResolver().adaptTo(Session.class);
+                    if (authorizable.isGroup() && isGroupMembersPath(relPath)) {
+                        // the members are not nested property containers
+                    } else if (session != null) {
+                        // only provide children when there is at least one nested property container
+                        List<String> childNames = getNestedPropertyIndex(session, authorizable)
+                                .getChildContainerNames(session, authorizable, relPath);
+                        if (!childNames.isEmpty()) {
+                            result = new NestedChildrenIterator(parent, authorizable, relPath, childNames.iterator());
                         }
                     }
                     return result;
@@ -327,33 +723,277 @@ public class AuthorizableResourceProvider extends ResourceProvider<Object> imple
     }
 
     /**
-     * Filter the resource children to return only the resources that are
-     * nested property containers
+     * Checks if the relative path addresses the members resource of a group
+     * or one of its children.
+     * <p>
+     * The members resource takes precedence, so a nested property container
+     * of a group that is named {@value GroupMembersResource#NAME} and its direct
+     * children are not provided as resources. Their properties are still
+     * available through the value map of the group.
+     * </p>
      *
-     * @param relPath the relative path to start from
-     * @param authorizable the user or group
-     * @param r the resource to filter the children of
-     * @return list of resources that are property containers
+     * @param relPath the path relative to the group resource
+     * @return true if the path is the members resource or a member reference
      */
-    protected List<Resource> filterPropertyContainers(String relPath, Authorizable authorizable, Resource r) {
-        List<Resource> propContainers = new ArrayList<>();
-        for (Resource cr : r.getChildren()) {
-            String childRelPath;
-            if (relPath == null) {
-                childRelPath = cr.getName();
-            } else {
-                childRelPath = String.format("%s/%s", relPath, cr.getName());
+    protected static boolean isGroupMembersPath(@Nullable String relPath) {
+        return relPath != null
+                && (relPath.equals(GroupMembersResource.NAME)
+                        || (relPath.startsWith(GroupMembersResource.NAME + "/")
+                                && relPath.indexOf('/', GroupMembersResource.NAME.length() + 1) == -1));
+    }
+
+    /**
+     * Get the members resource of a group or the reference to one of the members
+     *
+     * @param ctx the resolve context
+     * @param group the group
+     * @param path the path of the resource
+     * @param relPath the path relative to the group resource
+     * @param declaredOnly true if the member must be a declared member of the group
+     * @return the resource or null if the member was not found
+     */
+    protected @Nullable Resource getGroupMembersResource(
+            @NotNull ResolveContext<AuthorizableResolveState> ctx,
+            @NotNull Group group,
+            @NotNull String path,
+            @NotNull String relPath,
+            boolean declaredOnly)
+            throws RepositoryException {
+        Resource result = null;
+        if (relPath.equals(GroupMembersResource.NAME)) {
+            result = new GroupMembersResource(group, ctx.getResourceResolver(), path, this);
+        } else {
+            Session session = ctx.getResourceResolver().adaptTo(Session.class);
+            if (session instanceof JackrabbitSession jackrabbitSession) {
+                String memberId = relPath.substring(GroupMembersResource.NAME.length() + 1);
+                Authorizable member = jackrabbitSession.getUserManager().getAuthorizable(memberId);
+                if (member != null && (declaredOnly ? group.isDeclaredMember(member) : group.isMember(member))) {
+                    String membersPath = path.substring(0, path.length() - memberId.length() - 1);
+                    result = new GroupMembersResource(group, ctx.getResourceResolver(), membersPath, this)
+                            .toMemberResource(member);
+                }
             }
-            if (getPropertyNames(childRelPath, authorizable).hasNext()) {
-                propContainers.add(cr);
-            } else {
-                // child is not a property container?
-                if (log.isDebugEnabled()) {
-                    log.debug("skipping child that is not appear to be a nested property container: {}", cr.getName());
+        }
+        return result;
+    }
+
+    /**
+     * Get the principals that are listed as children but are not backed
+     * by an authorizable. The principals of the authorizables are backed by
+     * an item, so only the other principals are looked up as authorizables.
+     *
+     * @param session the current session
+     * @param selector the type of authorizables that are listed
+     * @return the principals that are not authorizables
+     */
+    protected @NotNull List<Principal> getNonAuthorizablePrincipals(
+            @NotNull JackrabbitSession session, @NotNull Class<? extends Authorizable> selector)
+            throws RepositoryException {
+        List<Principal> principals = new ArrayList<>();
+        PrincipalManager principalManager = session.getPrincipalManager();
+        UserManager userManager = session.getUserManager();
+        if (nonAuthorizablePrincipalsListed) {
+            PrincipalIterator it = principalManager.getPrincipals(
+                    Group.class.equals(selector)
+                            ? PrincipalManager.SEARCH_TYPE_GROUP
+                            : PrincipalManager.SEARCH_TYPE_NOT_GROUP);
+            while (it.hasNext()) {
+                Principal principal = it.nextPrincipal();
+                if (!(principal instanceof ItemBasedPrincipal) && userManager.getAuthorizable(principal) == null) {
+                    principals.add(principal);
+                }
+            }
+        } else if (Group.class.equals(selector)) {
+            Principal everyone = getNonAuthorizableEveryone(session);
+            if (everyone != null) {
+                principals.add(everyone);
+            }
+        }
+        return principals;
+    }
+
+    /**
+     * SLING-11098 the everyone group is a principal that is usually not an authorizable
+     *
+     * @param session the current session
+     * @return the everyone principal or null if it is an authorizable
+     */
+    private @Nullable Principal getNonAuthorizableEveryone(@NotNull JackrabbitSession session)
+            throws RepositoryException {
+        Principal everyone = session.getPrincipalManager().getEveryone();
+        if (everyone != null && session.getUserManager().getAuthorizable(everyone) != null) {
+            everyone = null;
+        }
+        return everyone;
+    }
+
+    /**
+     * Count the children of the users or groups resource. The count is
+     * remembered for a short time, so asking again does not repeat the query.
+     * The authorizables are counted from the rows of a node type query, which
+     * the repository may answer from the index without reading the nodes.
+     * When the index does not provide the size, at most the count limit of
+     * rows are counted and the count is an estimate when there are more.
+     * Of the principals that are not backed by an authorizable, only the
+     * everyone group is counted, so the principals are not walked.
+     *
+     * @param ctx the resolve context
+     * @param selector the type of authorizables to count
+     * @return the number of users or groups or null if they could not be counted
+     */
+    protected @Nullable AuthorizablesResource.Count countAuthorizables(
+            @NotNull ResolveContext<AuthorizableResolveState> ctx, @NotNull Class<? extends Authorizable> selector) {
+        AuthorizablesResource.Count count = null;
+        Session session = ctx.getResourceResolver().adaptTo(Session.class);
+        if (session instanceof JackrabbitSession jackrabbitSession) {
+            // the visible authorizables depend on the access rights of the user
+            CountKey key = new CountKey(session.getUserID(), selector.getName());
+            count = counts.get(key);
+            if (count == null) {
+                try {
+                    String nodeType =
+                            Group.class.equals(selector) ? UserConstants.NT_REP_GROUP : UserConstants.NT_REP_USER;
+                    Query query = session.getWorkspace()
+                            .getQueryManager()
+                            .createQuery(String.format("SELECT [jcr:path] FROM [%s]", nodeType), Query.JCR_SQL2);
+                    // one more than the limit tells if there are more
+                    query.setLimit(countLimit + 1);
+                    RowIterator rows = query.execute().getRows();
+                    long size = rows.getSize();
+                    if (size < 0) {
+                        // the size is not known up front, so count the rows
+                        size = 0;
+                        for (; size <= countLimit && rows.hasNext(); rows.nextRow()) {
+                            size++;
+                        }
+                    }
+                    boolean estimate = size > countLimit;
+                    if (estimate) {
+                        size = countLimit;
+                    }
+                    if (Group.class.equals(selector) && getNonAuthorizableEveryone(jackrabbitSession) != null) {
+                        size++;
+                    }
+                    count = new AuthorizablesResource.Count(size, estimate);
+                    counts.put(key, count);
+                } catch (RepositoryException re) {
+                    log.error("Failed to count the authorizables", re);
                 }
             }
         }
-        return propContainers;
+        return count;
+    }
+
+    /**
+     * List the users or groups from a single query. Principals that are not
+     * backed by an authorizable (like the everyone group) are not found by the
+     * query, so those are looked up separately and listed first.
+     * The sorting is done by the query, so the index can provide the
+     * requested page without sorting all the authorizables in memory.
+     *
+     * @param parent the users or groups resource
+     * @param session the current session
+     * @param selector the type of authorizables to list
+     * @param offset the number of children to skip or -1 for none
+     * @param limit the maximum number of children to return or -1 for no limit
+     * @param sort the relative path of the property to sort by or null for no sorting
+     * @param direction the sort direction
+     * @return iterator of the child resources
+     */
+    protected Iterator<Resource> listAuthorizableChildren(
+            @NotNull Resource parent,
+            @NotNull JackrabbitSession session,
+            @NotNull Class<? extends Authorizable> selector,
+            long offset,
+            long limit,
+            @Nullable String sort,
+            @NotNull Direction direction)
+            throws RepositoryException {
+        UserManager userManager = session.getUserManager();
+        List<Principal> principals = getNonAuthorizablePrincipals(session, selector);
+
+        // apply the paging to the principals first and the rest to the query
+        long skip = Math.max(offset, 0);
+        int fromIndex = (int) Math.min(skip, principals.size());
+        int toIndex = limit == -1 ? principals.size() : (int) Math.min(skip + limit, principals.size());
+        List<Principal> principalsPage = principals.subList(fromIndex, toIndex);
+        long queryOffset = skip - fromIndex;
+        long queryLimit = limit == -1 ? -1 : limit - principalsPage.size();
+
+        Iterator<Authorizable> authorizables;
+        if (queryLimit == 0) {
+            authorizables = Collections.emptyIterator();
+        } else {
+            AuthorizableQuery query = new AuthorizableQuery(selector, queryOffset, queryLimit);
+            if (sort != null) {
+                query.setSortOrder(sort, direction);
+            }
+            authorizables = userManager.findAuthorizables(query);
+        }
+        return new ChildrenIterator(
+                parent,
+                principalsPage.iterator(),
+                authorizables,
+                Group.class.equals(selector),
+                valueMapOptions.withProjection(parent));
+    }
+
+    /**
+     * Returns the value of a paging parameter that was supplied as a path
+     * parameter while resolving the resource.
+     *
+     * @param resource the resource to get the parameter value from
+     * @param name the name of the parameter
+     * @return the non-negative parameter value or -1 if not supplied or not valid
+     */
+    protected long getPagingParameter(@NotNull Resource resource, @NotNull String name) {
+        long value = -1;
+        String str = getPathParameter(resource, name);
+        if (str != null) {
+            try {
+                value = Math.max(-1, Long.parseLong(str.trim()));
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring invalid value for the {} parameter: {}", name, str);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the property path to sort by that was supplied as a path
+     * parameter while resolving the resource.
+     *
+     * @param resource the resource to get the parameter value from
+     * @return the relative path of the property (for example "profile/@familyName") or null if not supplied or not valid
+     */
+    protected @Nullable String getSortParameter(@NotNull Resource resource) {
+        String value = null;
+        String str = getPathParameter(resource, PARAM_SORT);
+        if (str != null && !str.isBlank()) {
+            try {
+                value = AuthorizableQueryLanguageProvider.toPropertyPath(str.trim());
+            } catch (IllegalArgumentException e) {
+                log.debug("Ignoring invalid value for the {} parameter: {}", PARAM_SORT, str);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value of a parameter that was supplied as a path
+     * parameter while resolving the resource.
+     *
+     * @param resource the resource to get the parameter value from
+     * @param name the name of the parameter
+     * @return the parameter value or null if not supplied
+     */
+    protected @Nullable String getPathParameter(@NotNull Resource resource, @NotNull String name) {
+        String value = null;
+        Map<String, String> parameters = resource.getResourceMetadata().getParameterMap();
+        if (parameters != null) {
+            value = parameters.get(name);
+        }
+        return value;
     }
 
     private abstract class BaseChildrenIterator implements Iterator<Resource> {
@@ -391,76 +1031,62 @@ public class AuthorizableResourceProvider extends ResourceProvider<Object> imple
             return next;
         }
 
-        protected @Nullable Resource createNext(
+        protected abstract @Nullable Resource createNext(
                 Object child, String principalName, ResourceResolver resourceResolver, Session session)
-                throws RepositoryException {
-            Resource next = null;
-            UserManager userManager = ((JackrabbitSession) session).getUserManager();
-            if (userManager != null) {
-                Authorizable authorizable = userManager.getAuthorizable(principalName);
-                if (authorizable != null) {
-                    String path;
-                    if (authorizable.isGroup()) {
-                        path = systemUserManagerGroupPrefix + principalName;
-                    } else {
-                        path = systemUserManagerUserPrefix + principalName;
-                    }
-                    next = createNext(child, resourceResolver, authorizable, path);
-                }
-            }
-            return next;
-        }
+                throws RepositoryException;
 
         protected abstract String toPrincipalName(Object child);
-
-        protected abstract Resource createNext(
-                Object child, ResourceResolver resourceResolver, Authorizable authorizable, String path)
-                throws RepositoryException;
     }
 
-    private final class NestedChildrenIterator extends BaseChildrenIterator {
-
-        private String principalName;
+    /**
+     * Iterates the nested property containers that are the children of the
+     * authorizable or one of its nested property containers
+     */
+    private final class NestedChildrenIterator implements Iterator<Resource> {
+        private final Resource parent;
+        private final Authorizable authorizable;
+        private final String relPath;
+        private final Iterator<String> childNames;
 
-        private NestedChildrenIterator(Resource parent, String principalName, Iterator<Resource> children) {
-            super(parent, children);
-            this.principalName = principalName;
+        private NestedChildrenIterator(
+                Resource parent, Authorizable authorizable, String relPath, Iterator<String> childNames) {
+            this.parent = parent;
+            this.authorizable = authorizable;
+            this.relPath = relPath;
+            this.childNames = childNames;
         }
 
         @Override
-        protected String toPrincipalName(Object child) {
-            return principalName;
+        public boolean hasNext() {
+            return childNames.hasNext();
         }
 
         @Override
-        protected Resource createNext(
-                Object child, ResourceResolver resourceResolver, Authorizable authorizable, String path)
-                throws RepositoryException {
-            Resource next = null;
-            if (child instanceof Resource childResource) {
-                // calculate the path relative to the home folder root
-                String relPath =
-                        childResource.getPath().substring(authorizable.getPath().length() + 1);
-
-                // check if the relPath resolves any valid property names
-                Iterator<String> propertyNames = getPropertyNames(relPath, authorizable);
-                if (propertyNames.hasNext()) {
-                    next = new NestedAuthorizableResource(
-                            authorizable,
-                            resourceResolver,
-                            String.format("%s/%s", path, relPath),
-                            AuthorizableResourceProvider.this,
-                            relPath);
-                }
-            }
-            return next;
+        public Resource next() {
+            String childName = childNames.next();
+            String childRelPath = relPath == null ? childName : String.format("%s/%s", relPath, childName);
+            return new NestedAuthorizableResource(
+                    authorizable,
+                    parent.getResourceResolver(),
+                    String.format("%s/%s", parent.getPath(), childName),
+                    AuthorizableResourceProvider.this,
+                    childRelPath);
         }
     }
 
     private final class ChildrenIterator extends BaseChildrenIterator {
+        private final boolean group;
+        private final AuthorizableValueMapOptions childValueMapOptions;
 
-        public ChildrenIterator(Resource parent, PrincipalIterator principals) {
-            super(parent, principals);
+        public ChildrenIterator(
+                Resource parent,
+                Iterator<Principal> principals,
+                Iterator<Authorizable> authorizables,
+                boolean group,
+                AuthorizableValueMapOptions childValueMapOptions) {
+            super(parent, concat(principals, authorizables));
+            this.group = group;
+            this.childValueMapOptions = childValueMapOptions;
         }
 
         @Override
@@ -468,6 +1094,12 @@ public class AuthorizableResourceProvider extends ResourceProvider<Object> imple
             String principalName = null;
             if (child instanceof Principal principal) {
                 principalName = principal.getName();
+            } else if (child instanceof Authorizable authorizable) {
+                try {
+                    principalName = authorizable.getID();
+                } catch (RepositoryException re) {
+                    log.error("Exception while looking up authorizable id.", re);
+                }
             }
             return principalName;
         }
@@ -476,34 +1108,65 @@ public class AuthorizableResourceProvider extends ResourceProvider<Object> imple
         protected @Nullable Resource createNext(
                 Object child, String principalName, ResourceResolver resourceResolver, Session session)
                 throws RepositoryException {
-            @Nullable Resource next = super.createNext(child, principalName, resourceResolver, session);
-            if (next == null) {
-                // SLING-11098 check for principal that is not authorizable
-                PrincipalManager principalManager = ((JackrabbitSession) session).getPrincipalManager();
-                if (principalManager != null) {
-                    @Nullable Principal principal = principalManager.getPrincipal(principalName);
-                    if (principal != null) {
-                        String path;
-                        if (principal instanceof GroupPrincipal) {
-                            path = systemUserManagerGroupPrefix + principalName;
-                        } else {
-                            path = systemUserManagerUserPrefix + principalName;
-                        }
-                        return new PrincipalResource(principal, resourceResolver, path);
-                    }
+            Resource next = null;
+            if (principalName == null) {
+                // nothing to create
+            } else if (child instanceof Authorizable authorizable) {
+                // the authorizable from the query reads its properties lazily, so
+                //  it is handed to the resource instead of being looked up again
+                String path;
+                if (group) {
+                    path = systemUserManagerGroupPrefix + principalName;
+                } else {
+                    path = systemUserManagerUserPrefix + principalName;
+                }
+                next = createNext(child, resourceResolver, authorizable, path);
+            } else if (child instanceof Principal principal) {
+                // SLING-11098 principal that is not authorizable
+                String path;
+                if (principal instanceof GroupPrincipal) {
+                    path = systemUserManagerGroupPrefix + principalName;
+                } else {
+                    path = systemUserManagerUserPrefix + principalName;
                 }
+                next = new PrincipalResource(principal, resourceResolver, path);
             }
             return next;
         }
 
-        @Override
-        protected Resource createNext(
-                Object child, ResourceResolver resourceResolver, Authorizable authorizable, String path)
-                throws RepositoryException {
-            return new AuthorizableResource(authorizable, resourceResolver, path, AuthorizableResourceProvider.this);
+        private Resource createNext(
+                Object child, ResourceResolver resourceResolver, Authorizable authorizable, String path) {
+            return new AuthorizableResource(
+                    authorizable, resourceResolver, path, AuthorizableResourceProvider.this, childValueMapOptions);
         }
     }
 
+    /**
+     * Iterates over the items of the first iterator followed by the items
+     * of the second iterator
+     */
+    private static Iterator<Object> concat(Iterator<?> first, Iterator<?> second) {
+        return new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+                return first.hasNext() || second.hasNext();
+            }
+
+            @Override
+            public Object next() {
+                if (first.hasNext()) {
+                    return first.next();
+                }
+                return second.next();
+            }
+        };
+    }
+
+    /**
+     * Key for the number of authorizables of a type as seen by the user of a session
+     */
+    private record CountKey(String userId, String type) {}
+
     /**
      * Interface for lambda expressions to do work on a resolved authorizable + optional relative path
      */
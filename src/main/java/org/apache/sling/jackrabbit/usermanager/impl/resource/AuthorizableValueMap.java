@@ -19,15 +19,20 @@
 package org.apache.sling.jackrabbit.usermanager.impl.resource;
 
 import javax.jcr.RepositoryException;
+import javax.jcr.Session;
 import javax.jcr.UnsupportedRepositoryOperationException;
+import javax.jcr.Value;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.jackrabbit.api.security.user.Authorizable;
 import org.apache.jackrabbit.api.security.user.Group;
 import org.apache.sling.jackrabbit.usermanager.resource.SystemUserManagerPaths;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * ValueMap implementation for the root property container of Authorizable Resources
@@ -39,28 +44,64 @@ public class AuthorizableValueMap extends BaseAuthorizableValueMap {
     private static final String MEMBER_OF_KEY = "memberOf";
     private static final String PATH_KEY = "path";
 
+    /**
+     * The keys of the values that are computed instead of stored with the authorizable
+     */
+    private static final List<String> COMPUTED_KEYS =
+            List.of(MEMBERS_KEY, DECLARED_MEMBERS_KEY, MEMBER_OF_KEY, DECLARED_MEMBER_OF_KEY, PATH_KEY);
+
+    /**
+     * The keys of the computed values that walk the transitive memberships
+     */
+    private static final List<String> TRANSITIVE_KEYS = List.of(MEMBERS_KEY, MEMBER_OF_KEY);
+
+    private final AuthorizableValueMapOptions options;
+
+    /**
+     * The session to read the properties with in a single pass or null to
+     * read them through the Authorizable API. Also used to check which of the
+     * members and memberships that the {@link MembershipGraph} answered are visible.
+     */
+    private final Session session;
+
     public AuthorizableValueMap(Authorizable authorizable, SystemUserManagerPaths systemUserManagerPaths) {
+        this(authorizable, systemUserManagerPaths, AuthorizableValueMapOptions.DEFAULTS);
+    }
+
+    public AuthorizableValueMap(
+            Authorizable authorizable,
+            SystemUserManagerPaths systemUserManagerPaths,
+            AuthorizableValueMapOptions options) {
+        this(authorizable, systemUserManagerPaths, options, null);
+    }
+
+    public AuthorizableValueMap(
+            Authorizable authorizable,
+            SystemUserManagerPaths systemUserManagerPaths,
+            AuthorizableValueMapOptions options,
+            @Nullable Session session) {
         super(authorizable, systemUserManagerPaths);
+        this.options = options;
+        this.session = session;
     }
 
     @Override
     protected Object read(String key) {
         Object value = null;
-        // if the item has been completely read, we need not check
-        // again, as we certainly will not find the key
-        if (!fullyRead) {
+        if (!options.isIncluded(key)) {
+            // not part of the projection
+        } else if (COMPUTED_KEYS.contains(key)) {
+            // may have been left out of a full read
+            try {
+                value = readComputedAndCache(key);
+            } catch (RepositoryException re) {
+                log.error("Could not compute authorizable value", re);
+            }
+        } else if (!fullyRead) {
+            // if the item has been completely read, we need not check
+            // again, as we certainly will not find the key
             try {
-                if (key.equals(MEMBERS_KEY) && authorizable.isGroup()) {
-                    value = getMembers((Group) authorizable, true);
-                } else if (key.equals(DECLARED_MEMBERS_KEY) && authorizable.isGroup()) {
-                    value = getMembers((Group) authorizable, false);
-                } else if (key.equals(MEMBER_OF_KEY)) {
-                    value = getMemberships(true);
-                } else if (key.equals(DECLARED_MEMBER_OF_KEY)) {
-                    value = getMemberships(false);
-                } else if (key.equals(PATH_KEY)) {
-                    value = getPath();
-                } else if (authorizable.hasProperty(key)) {
+                if (getRawValues(key) != null) {
                     value = readPropertyAndCache(key, key);
                 } else {
                     // property not found or some error accessing it
@@ -73,28 +114,75 @@ public class AuthorizableValueMap extends BaseAuthorizableValueMap {
         return value;
     }
 
+    @Override
+    protected boolean exists(String key) throws RepositoryException {
+        boolean exists;
+        if (!options.isIncluded(key)) {
+            exists = false;
+        } else if (MEMBERS_KEY.equals(key) || DECLARED_MEMBERS_KEY.equals(key)) {
+            exists = authorizable.isGroup();
+        } else if (COMPUTED_KEYS.contains(key)) {
+            // the memberships and the path are always provided
+            exists = true;
+        } else {
+            exists = authorizable.hasProperty(key);
+        }
+        return exists;
+    }
+
+    @Override
+    protected boolean isComputed(String key) {
+        return COMPUTED_KEYS.contains(key);
+    }
+
     @Override
     protected void readFully() {
         if (!fullyRead) {
             try {
-                if (authorizable.isGroup()) {
-                    cache.put(MEMBERS_KEY, getMembers((Group) authorizable, true));
-                    cache.put(DECLARED_MEMBERS_KEY, getMembers((Group) authorizable, false));
-                }
-                cache.put(MEMBER_OF_KEY, getMemberships(true));
-                cache.put(DECLARED_MEMBER_OF_KEY, getMemberships(false));
-
-                String path = getPath();
-                if (path != null) {
-                    cache.put(PATH_KEY, path);
+                // the membership values are only computed when their value is read
+                boolean group = authorizable.isGroup();
+                for (String key : COMPUTED_KEYS) {
+                    boolean applicable = group || !(MEMBERS_KEY.equals(key) || DECLARED_MEMBERS_KEY.equals(key));
+                    // a projection that names a transitive key asks for it explicitly
+                    boolean included = options.properties() == null
+                            ? options.transitiveMembershipsInFullRead() || !TRANSITIVE_KEYS.contains(key)
+                            : options.isIncluded(key);
+                    if (cache.containsKey(key) || !applicable || !included) {
+                        continue;
+                    }
+                    if (PATH_KEY.equals(key)) {
+                        readComputedAndCache(key);
+                    } else {
+                        cache.put(key, (LazyValue) () -> readComputed(key));
+                    }
                 }
 
                 // only direct property
-                Iterator<String> pi = authorizable.getPropertyNames();
-                while (pi.hasNext()) {
-                    String key = pi.next();
-                    if (!cache.containsKey(key)) {
-                        readPropertyAndCache(key, key);
+                Map<String, Value[]> snapshot = session == null || options.properties() != null
+                        ? null
+                        : options.readSnapshot(session, authorizable);
+                if (options.properties() != null) {
+                    // only the projected properties are read
+                    for (String key : options.properties()) {
+                        if (!COMPUTED_KEYS.contains(key) && !cache.containsKey(key) && getRawValues(key) != null) {
+                            readPropertyAndCache(key, key);
+                        }
+                    }
+                } else if (snapshot != null) {
+                    for (Map.Entry<String, Value[]> entry : snapshot.entrySet()) {
+                        String key = entry.getKey();
+                        putRawValues(key, entry.getValue());
+                        if (!cache.containsKey(key)) {
+                            readPropertyAndCache(key, key);
+                        }
+                    }
+                } else {
+                    Iterator<String> pi = authorizable.getPropertyNames();
+                    while (pi.hasNext()) {
+                        String key = pi.next();
+                        if (!cache.containsKey(key)) {
+                            readPropertyAndCache(key, key);
+                        }
                     }
                 }
 
@@ -105,7 +193,63 @@ public class AuthorizableValueMap extends BaseAuthorizableValueMap {
         }
     }
 
+    /**
+     * Compute the value for one of the {@link #COMPUTED_KEYS} and remember it,
+     * so each membership traversal is done at most once for this map.
+     *
+     * @param key the key to compute the value for
+     * @return the value or null if the key does not apply to the authorizable
+     */
+    private Object readComputedAndCache(String key) throws RepositoryException {
+        Object value = readComputed(key);
+        if (value != null) {
+            cache.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Compute the value for one of the {@link #COMPUTED_KEYS}
+     *
+     * @param key the key to compute the value for
+     * @return the value or null if the key does not apply to the authorizable
+     */
+    private Object readComputed(String key) throws RepositoryException {
+        Object value = null;
+        if (key.equals(MEMBERS_KEY) && authorizable.isGroup()) {
+            value = getMembers((Group) authorizable, true);
+        } else if (key.equals(DECLARED_MEMBERS_KEY) && authorizable.isGroup()) {
+            value = getMembers((Group) authorizable, false);
+        } else if (key.equals(MEMBER_OF_KEY)) {
+            value = getMemberships(true);
+        } else if (key.equals(DECLARED_MEMBER_OF_KEY)) {
+            value = getMemberships(false);
+        } else if (key.equals(PATH_KEY)) {
+            value = getPath();
+        }
+        return value;
+    }
+
+    @Override
+    protected <T> T convertToType(String name, Class<T> type) {
+        if (!options.isIncluded(name)) {
+            // not part of the projection
+            return null;
+        } else if (COMPUTED_KEYS.contains(name)) {
+            // not stored with the authorizable, so convert the remembered value
+            return convertCachedValue(name, type);
+        }
+        return super.convertToType(name, type);
+    }
+
     private String[] getMembers(Group group, boolean includeAll) throws RepositoryException {
+        MembershipGraph graph = includeAll ? options.readyMembershipGraph() : null;
+        Set<String> ids = graph == null || session == null
+                ? null
+                : graph.getMembers(group.getID(), MembershipGraph.visibleTo(session));
+        if (ids != null) {
+            return toPaths(graph, ids);
+        }
         List<String> results = new ArrayList<>();
         for (Iterator<Authorizable> it = includeAll ? group.getMembers() : group.getDeclaredMembers(); it.hasNext(); ) {
             Authorizable auth = it.next();
@@ -119,6 +263,13 @@ public class AuthorizableValueMap extends BaseAuthorizableValueMap {
     }
 
     private String[] getMemberships(boolean includeAll) throws RepositoryException {
+        MembershipGraph graph = includeAll ? options.readyMembershipGraph() : null;
+        Set<String> ids = graph == null || session == null
+                ? null
+                : graph.getMemberOf(authorizable.getID(), MembershipGraph.visibleTo(session));
+        if (ids != null) {
+            return toPaths(graph, ids);
+        }
         List<String> results = new ArrayList<>();
         for (Iterator<Group> it = includeAll ? authorizable.memberOf() : authorizable.declaredMemberOf();
                 it.hasNext(); ) {
@@ -128,6 +279,27 @@ public class AuthorizableValueMap extends BaseAuthorizableValueMap {
         return results.toArray(new String[results.size()]);
     }
 
+    /**
+     * Convert the ids that were answered by the {@link MembershipGraph} to the
+     * resource paths of the users and groups, which were already checked to be
+     * visible to the session
+     *
+     * @param graph the graph that answered the ids
+     * @param ids the ids of the users and groups
+     * @return the resource paths
+     */
+    private String[] toPaths(MembershipGraph graph, Set<String> ids) {
+        List<String> results = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            if (graph.isGroup(id)) {
+                results.add(systemUserManagerPaths.getGroupPrefix() + id);
+            } else {
+                results.add(systemUserManagerPaths.getUserPrefix() + id);
+            }
+        }
+        return results.toArray(new String[results.size()]);
+    }
+
     private String getPath() throws RepositoryException {
         try {
             return authorizable.getPath();
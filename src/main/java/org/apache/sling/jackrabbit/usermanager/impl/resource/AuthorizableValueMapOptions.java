@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Value;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.sling.api.resource.Resource;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Options for how the {@link AuthorizableValueMap} reads the values of an authorizable
+ *
+ * @param transitiveMembershipsInFullRead true if the members and memberOf values are
+ *          included when all the values are read (for example for the keySet or entrySet)
+ * @param properties the only keys that are provided or null to provide all the keys
+ * @param snapshotCache the cache of property snapshots that are shared across requests
+ *          or null to read the properties for each value map
+ * @param membershipGraph the index to answer the transitive members and memberships
+ *          from or null to walk the memberships in the repository
+ */
+public record AuthorizableValueMapOptions(
+        boolean transitiveMembershipsInFullRead,
+        @Nullable Set<String> properties,
+        @Nullable AuthorizablePropertySnapshotCache snapshotCache,
+        @Nullable MembershipGraph membershipGraph) {
+
+    /**
+     * The default options
+     */
+    public static final AuthorizableValueMapOptions DEFAULTS = new AuthorizableValueMapOptions(true);
+
+    public AuthorizableValueMapOptions(boolean transitiveMembershipsInFullRead) {
+        this(transitiveMembershipsInFullRead, null, null);
+    }
+
+    public AuthorizableValueMapOptions(boolean transitiveMembershipsInFullRead, @Nullable Set<String> properties) {
+        this(transitiveMembershipsInFullRead, properties, null);
+    }
+
+    public AuthorizableValueMapOptions(
+            boolean transitiveMembershipsInFullRead,
+            @Nullable Set<String> properties,
+            @Nullable AuthorizablePropertySnapshotCache snapshotCache) {
+        this(transitiveMembershipsInFullRead, properties, snapshotCache, null);
+    }
+
+    /**
+     * @param graph the index to answer the transitive members and memberships from
+     * @return the options that use the index
+     */
+    public @NotNull AuthorizableValueMapOptions withMembershipGraph(@Nullable MembershipGraph graph) {
+        return new AuthorizableValueMapOptions(transitiveMembershipsInFullRead, properties, snapshotCache, graph);
+    }
+
+    /**
+     * @return the index to answer the transitive members and memberships from
+     *          or null if it is not available or not built yet
+     */
+    public @Nullable MembershipGraph readyMembershipGraph() {
+        return membershipGraph != null && membershipGraph.isReady() ? membershipGraph : null;
+    }
+
+    /**
+     * Read the snapshot of the direct properties of the authorizable,
+     * from the shared cache when there is one
+     *
+     * @param session the session that resolved the authorizable
+     * @param authorizable the user or group
+     * @return the values by property name or null if the authorizable node could not be read
+     * @throws RepositoryException if the properties could not be read
+     */
+    public @Nullable Map<String, Value[]> readSnapshot(@NotNull Session session, @NotNull Authorizable authorizable)
+            throws RepositoryException {
+        if (snapshotCache != null && snapshotCache.isEnabled()) {
+            return snapshotCache.read(session, authorizable);
+        }
+        return AuthorizablePropertySnapshot.read(session, authorizable);
+    }
+
+    /**
+     * Checks if the key is provided
+     *
+     * @param key the key to check
+     * @return true if there is no projection or the key is part of the projection
+     */
+    public boolean isIncluded(@NotNull String key) {
+        return properties == null || properties.contains(key);
+    }
+
+    /**
+     * Apply the projection that was supplied as the
+     * {@link AuthorizableResourceProvider#PARAM_PROPERTIES} path parameter
+     * while resolving the resource. The value is a comma separated list of
+     * the keys to provide.
+     *
+     * @param resource the resource to get the parameter value from
+     * @return the options with the projection or these options if no projection was supplied
+     */
+    public @NotNull AuthorizableValueMapOptions withProjection(@NotNull Resource resource) {
+        AuthorizableValueMapOptions options = this;
+        Map<String, String> parameters = resource.getResourceMetadata().getParameterMap();
+        String value = parameters == null ? null : parameters.get(AuthorizableResourceProvider.PARAM_PROPERTIES);
+        if (value != null) {
+            Set<String> keys = new HashSet<>();
+            for (String key : value.split(",")) {
+                if (!key.isBlank()) {
+                    keys.add(key.trim());
+                }
+            }
+            options = new AuthorizableValueMapOptions(
+                    transitiveMembershipsInFullRead, Set.copyOf(keys), snapshotCache, membershipGraph);
+        }
+        return options;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import java.io.IOException;
+
+import jakarta.json.Json;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.servlet.Servlet;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.sling.api.SlingJakartaHttpServletRequest;
+import org.apache.sling.api.SlingJakartaHttpServletResponse;
+import org.apache.sling.api.servlets.SlingJakartaSafeMethodsServlet;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Component;
+
+/**
+ * Renders the number of users or groups as JSON without listing them.
+ * For example:
+ * <code>curl http://localhost:8080/system/userManager/user.count.json</code>
+ * <p>
+ * The response is a JSON object with the <code>count</code> of the users or
+ * groups that are visible to the current user. When there are more users or
+ * groups than the configured count limit, the count is the limit and the
+ * response also holds <code>"estimate": true</code>.
+ * </p>
+ */
+@Component(
+        service = Servlet.class,
+        property = {
+            "sling.servlet.resourceTypes=sling/users",
+            "sling.servlet.resourceTypes=sling/groups",
+            "sling.servlet.methods=GET",
+            "sling.servlet.selectors=count",
+            "sling.servlet.extensions=json"
+        })
+public class AuthorizablesCountServlet extends SlingJakartaSafeMethodsServlet {
+    private static final long serialVersionUID = 4103436468212545315L;
+
+    /**
+     * The name of the number of users or groups in the response
+     */
+    public static final String PROPERTY_COUNT = "count";
+
+    /**
+     * The name of the flag in the response that tells that the count stopped at the limit
+     */
+    public static final String PROPERTY_ESTIMATE = "estimate";
+
+    @Override
+    protected void doGet(
+            @NotNull SlingJakartaHttpServletRequest request, @NotNull SlingJakartaHttpServletResponse response)
+            throws IOException {
+        if (!(request.getResource() instanceof AuthorizablesResource resource)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        AuthorizablesResource.Count count = resource.getCount();
+        if (count == null) {
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Failed to count the authorizables");
+            return;
+        }
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        try (JsonGenerator generator = Json.createGenerator(response.getWriter())) {
+            generator.writeStartObject().write(PROPERTY_COUNT, count.value());
+            if (count.estimate()) {
+                generator.write(PROPERTY_ESTIMATE, true);
+            }
+            generator.writeEnd();
+        }
+    }
+}
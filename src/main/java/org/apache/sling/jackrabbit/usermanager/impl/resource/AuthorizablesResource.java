@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import java.util.function.Supplier;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.SyntheticResource;
+
+/**
+ * Resource implementation for the users and groups resources. The number
+ * of users or groups is provided by {@link #getCount()}, which is rendered
+ * by the {@link AuthorizablesCountServlet}, so rendering the resource itself
+ * does not count the children.
+ */
+public class AuthorizablesResource extends SyntheticResource {
+
+    /**
+     * The number of users or groups
+     *
+     * @param value the number of users or groups
+     * @param estimate true if there are at least as many users or groups as the value,
+     *          as the counting stopped at the configured limit
+     */
+    public record Count(long value, boolean estimate) {}
+
+    private final Supplier<Count> counter;
+
+    /**
+     * @param resourceResolver the resource resolver
+     * @param path the path of the resource
+     * @param resourceType the resource type
+     * @param counter supplies the number of users or groups
+     */
+    public AuthorizablesResource(
+            ResourceResolver resourceResolver, String path, String resourceType, Supplier<Count> counter) {
+        super(resourceResolver, path, resourceType);
+        this.counter = counter;
+    }
+
+    /**
+     * @return the number of users or groups or null if they could not be counted
+     */
+    public Count getCount() {
+        return counter.get();
+    }
+}
@@ -28,19 +28,24 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Array;
 import java.math.BigDecimal;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import org.apache.jackrabbit.api.security.user.Authorizable;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.jackrabbit.usermanager.resource.SystemUserManagerPaths;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,11 +59,31 @@ public abstract class BaseAuthorizableValueMap implements ValueMap {
      */
     protected final Logger log = LoggerFactory.getLogger(getClass());
 
+    /**
+     * Marks a property that was looked up but was not found
+     */
+    private static final Value[] NO_VALUES = new Value[0];
+
+    /**
+     * Marks a conversion that did not produce a value
+     */
+    private static final Object NO_RESULT = new Object();
+
     protected boolean fullyRead;
     protected final Map<String, Object> cache;
     protected Authorizable authorizable;
     protected final SystemUserManagerPaths systemUserManagerPaths;
 
+    /**
+     * The values read from the authorizable by the relative path of the property
+     */
+    private final Map<String, Value[]> rawValues = new HashMap<>();
+
+    /**
+     * The results of converting the values of a property to a type
+     */
+    private final Map<ConversionKey, Object> conversions = new HashMap<>();
+
     protected BaseAuthorizableValueMap(Authorizable authorizable, SystemUserManagerPaths systemUserManagerPaths) {
         this.authorizable = authorizable;
         this.cache = new LinkedHashMap<>();
@@ -95,23 +120,95 @@ public abstract class BaseAuthorizableValueMap implements ValueMap {
         return value;
     }
 
+    /**
+     * Checks if the key is present without reading the value, so checking
+     * for a binary property or a membership value is not more expensive
+     * than checking for any other property.
+     */
     public boolean containsKey(Object key) {
-        return get(key) != null;
+        boolean contains;
+        if (!(key instanceof String name)) {
+            contains = false;
+        } else if (cache.containsKey(name)) {
+            contains = cache.get(name) != null;
+        } else if (fullyRead && !isComputed(name)) {
+            // every stored property is cached after a full read
+            contains = false;
+        } else {
+            try {
+                contains = exists(name);
+            } catch (RepositoryException re) {
+                log.error("Could not check for authorizable property", re);
+                contains = false;
+            }
+        }
+        return contains;
     }
 
     public boolean containsValue(Object value) {
         readFully();
+        resolveAll();
         return cache.containsValue(value);
     }
 
     public Set<java.util.Map.Entry<String, Object>> entrySet() {
         readFully();
-        return cache.entrySet();
+        // the lazy values are computed as the entries are consumed
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                Iterator<Entry<String, Object>> entries = cache.entrySet().iterator();
+                return new Iterator<>() {
+                    private Entry<String, Object> next;
+
+                    @Override
+                    public boolean hasNext() {
+                        while (next == null && entries.hasNext()) {
+                            Entry<String, Object> entry = entries.next();
+                            Object value = entry.getValue() instanceof LazyValue lazyValue
+                                    ? resolve(entry.getKey(), lazyValue)
+                                    : entry.getValue();
+                            if (value == null) {
+                                // the value could not be computed, so the key is left out
+                                entries.remove();
+                            } else {
+                                entry.setValue(value);
+                                next = entry;
+                            }
+                        }
+                        return next != null;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<String, Object> entry = next;
+                        next = null;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return cache.size();
+            }
+        };
     }
 
     public Object get(Object key) {
         Object value = cache.get(key);
-        if (value == null) {
+        if (value instanceof LazyValue lazyValue) {
+            value = resolve((String) key, lazyValue);
+            if (value == null) {
+                // the value could not be computed, so the key is left out
+                cache.remove(key);
+            } else {
+                cache.put((String) key, value);
+            }
+        } else if (value == null) {
             value = read((String) key);
         }
 
@@ -134,13 +231,107 @@ public abstract class BaseAuthorizableValueMap implements ValueMap {
 
     public Collection<Object> values() {
         readFully();
+        resolveAll();
         return cache.values();
     }
 
     protected abstract Object read(String key);
 
+    /**
+     * Checks if there is a value for the key without reading the value
+     *
+     * @param key the key to check
+     * @return true if {@link #read(String)} would return a value for the key
+     * @throws RepositoryException if the authorizable could not be checked
+     */
+    protected abstract boolean exists(String key) throws RepositoryException;
+
+    /**
+     * Checks if the value for the key is computed instead of stored, so it
+     * may have been left out of a full read even though it can be read
+     *
+     * @param key the key to check
+     * @return true if the value for the key is computed
+     */
+    protected boolean isComputed(String key) {
+        return false;
+    }
+
+    /**
+     * A value that is in the key set but is only computed when
+     * the value is read
+     */
+    @FunctionalInterface
+    protected interface LazyValue {
+        Object compute() throws RepositoryException;
+    }
+
+    /**
+     * Compute a lazy value
+     *
+     * @param key the key of the value
+     * @param lazyValue the lazy value to compute
+     * @return the computed value or null if it could not be computed
+     */
+    private Object resolve(String key, LazyValue lazyValue) {
+        Object value = null;
+        try {
+            value = lazyValue.compute();
+        } catch (RepositoryException re) {
+            log.error("Could not compute the {} value of authorizable {}", key, authorizable, re);
+        }
+        return value;
+    }
+
+    /**
+     * Compute all the lazy values that are not computed yet
+     */
+    private void resolveAll() {
+        for (Iterator<Entry<String, Object>> it = cache.entrySet().iterator(); it.hasNext(); ) {
+            Entry<String, Object> entry = it.next();
+            if (entry.getValue() instanceof LazyValue lazyValue) {
+                Object value = resolve(entry.getKey(), lazyValue);
+                if (value == null) {
+                    // the value could not be computed, so the key is left out
+                    it.remove();
+                } else {
+                    entry.setValue(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the values of a property of the authorizable. The values are
+     * remembered for the lifetime of the map, so each property is read
+     * from the repository at most once.
+     *
+     * @param relPath the relative path of the property
+     * @return the values or null if the property does not exist
+     * @throws RepositoryException if the property could not be read
+     */
+    protected @Nullable Value[] getRawValues(@NotNull String relPath) throws RepositoryException {
+        Value[] values = rawValues.get(relPath);
+        if (values == null) {
+            values = authorizable.hasProperty(relPath) ? authorizable.getProperty(relPath) : null;
+            rawValues.put(relPath, values == null ? NO_VALUES : values);
+        }
+        return values == NO_VALUES ? null : values;
+    }
+
+    /**
+     * Remember the values of a property that were read by other means, so
+     * the property is not read from the authorizable again.
+     *
+     * @param relPath the relative path of the property
+     * @param values the values of the property
+     */
+    protected void putRawValues(@NotNull String relPath, @NotNull Value[] values) {
+        rawValues.put(relPath, values);
+    }
+
     protected Object readPropertyAndCache(String key, String relPath) throws RepositoryException {
-        Value[] property = authorizable.getProperty(relPath);
+        Value[] property = getRawValues(relPath);
         Object value = valuesToJavaObject(property);
         cache.put(key, value);
         return value;
@@ -200,6 +391,7 @@ public abstract class BaseAuthorizableValueMap implements ValueMap {
     @Override
     public String toString() {
         readFully();
+        resolveAll();
         return cache.toString();
     }
 
@@ -223,18 +415,26 @@ public abstract class BaseAuthorizableValueMap implements ValueMap {
 
     // ---------- Implementation helper
 
+    /**
+     * Convert the value of a property to the type. The result is remembered,
+     * so reading the same property as the same type again does not access
+     * the repository. Streams and binaries are not remembered as those can
+     * only be consumed once, and each caller gets its own copy of the
+     * mutable results like calendars, dates and arrays.
+     */
     @SuppressWarnings("unchecked")
     protected <T> T convertToType(String name, Class<T> type) {
+        ConversionKey conversionKey = new ConversionKey(name, type);
+        Object converted = conversions.get(conversionKey);
+        if (converted != null) {
+            return converted == NO_RESULT ? null : (T) copyOf(converted);
+        }
+
         T result = null;
 
         try {
-            if (authorizable.hasProperty(name)) {
-                Value[] values = authorizable.getProperty(name);
-
-                if (values == null) {
-                    return null;
-                }
-
+            Value[] values = getRawValues(name);
+            if (values != null) {
                 boolean multiValue = values.length > 1;
                 boolean array = type.isArray();
 
@@ -252,10 +452,14 @@ public abstract class BaseAuthorizableValueMap implements ValueMap {
                         result = convertToType(value, type);
                     }
                 }
+                if (type != InputStream.class && type != Binary.class) {
+                    conversions.put(conversionKey, result == null ? NO_RESULT : result);
+                    result = (T) copyOf(result);
+                }
             } else {
                 // some synthetic property not stored with the authorizable?
                 //  fallback to the default impl from the ValueMap interface
-                result = ValueMap.super.get(name, type);
+                result = convertCachedValue(name, type);
             }
         } catch (ValueFormatException vfe) {
             log.info(String.format("convertToType: Cannot convert value of %s to %s", name, type), vfe);
@@ -267,6 +471,42 @@ public abstract class BaseAuthorizableValueMap implements ValueMap {
         return result;
     }
 
+    /**
+     * Copy a remembered conversion result that the caller could change
+     *
+     * @param value the remembered result
+     * @return a copy of the value if it is mutable, otherwise the value itself
+     */
+    private static Object copyOf(Object value) {
+        Object copy;
+        if (value instanceof Calendar calendar) {
+            copy = calendar.clone();
+        } else if (value instanceof Date date) {
+            copy = date.clone();
+        } else if (value != null && value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            copy = Array.newInstance(value.getClass().getComponentType(), length);
+            for (int i = 0; i < length; i++) {
+                Array.set(copy, i, copyOf(Array.get(value, i)));
+            }
+        } else {
+            copy = value;
+        }
+        return copy;
+    }
+
+    /**
+     * Convert a value that is read through {@link #get(Object)}, so the value
+     * is taken from the cache when it was read before.
+     *
+     * @param name the name of the value
+     * @param type the type to convert the value to
+     * @return the converted value or null if not available or not convertible
+     */
+    protected <T> T convertCachedValue(String name, Class<T> type) {
+        return ValueMap.super.get(name, type);
+    }
+
     private <T> T[] convertToArray(Value[] jcrValues, Class<T> type) throws RepositoryException {
         // lazy create this list in case there are no valid type conversions
         List<T> values = null;
@@ -341,6 +581,11 @@ public abstract class BaseAuthorizableValueMap implements ValueMap {
         return type;
     }
 
+    /**
+     * Key for the result of converting the value of a property to a type
+     */
+    private record ConversionKey(String name, Class<?> type) {}
+
     public static class LazyInputStream extends InputStream {
 
         /** The JCR Value from which the input stream is requested on demand */
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Size bounded cache whose entries expire after a fixed time to live.
+ * When the cache is full the least recently used entry is evicted.
+ * <p>
+ * The entries are spread over independently locked segments, so concurrent
+ * lookups of different keys do not wait for each other. Each segment evicts
+ * its own least recently used entry.
+ * <p>
+ * An optional listener is told about each key that is removed, so the
+ * callers can keep their own index of the keys in step with the cache.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class ExpiringCache<K, V> {
+    /**
+     * The maximum number of segments
+     */
+    private static final int MAX_SEGMENTS = 16;
+
+    /**
+     * The minimum number of entries of each segment, so small caches
+     * evict the least recently used entry of the whole cache
+     */
+    private static final int MIN_SEGMENT_SIZE = 16;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Segment<K, V>[] segments;
+    private final Consumer<K> removed;
+
+    /**
+     * @param maxSize the maximum number of entries to hold (0 to disable the cache)
+     * @param ttl the time to live of each entry (0 or less for no expiration)
+     * @param unit the time unit of the ttl argument
+     */
+    public ExpiringCache(int maxSize, long ttl, @NotNull TimeUnit unit) {
+        this(maxSize, ttl, unit, null);
+    }
+
+    /**
+     * @param maxSize the maximum number of entries to hold (0 to disable the cache)
+     * @param ttl the time to live of each entry (0 or less for no expiration)
+     * @param unit the time unit of the ttl argument
+     * @param removed receives the key of each entry that is removed, evicted or expired, or null.
+     *          It is called while the segment of the key is locked, so it must not call the cache.
+     */
+    @SuppressWarnings("unchecked")
+    public ExpiringCache(int maxSize, long ttl, @NotNull TimeUnit unit, @Nullable Consumer<K> removed) {
+        this.maxSize = maxSize;
+        this.removed = removed == null ? key -> {} : removed;
+        this.ttlNanos = ttl > 0 ? unit.toNanos(ttl) : -1;
+        int count = 1;
+        while (count < MAX_SEGMENTS && count * 2 * MIN_SEGMENT_SIZE <= maxSize) {
+            count *= 2;
+        }
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            // spread the remainder over the first segments
+            segments[i] = new Segment<>(maxSize / count + (i < maxSize % count ? 1 : 0), this.removed);
+        }
+    }
+
+    private @NotNull Segment<K, V> segmentFor(@NotNull K key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[hash & (segments.length - 1)];
+    }
+
+    /**
+     * @return true if the cache holds any entries at all
+     */
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Get the value for the key
+     *
+     * @param key the key to lookup
+     * @return the value or null if there is no value or it has expired
+     */
+    public @Nullable V get(@NotNull K key) {
+        V value = null;
+        if (isEnabled()) {
+            Segment<K, V> segment = segmentFor(key);
+            synchronized (segment) {
+                CacheEntry<V> entry = segment.get(key);
+                if (entry != null) {
+                    if (entry.isExpired(System.nanoTime())) {
+                        segment.remove(key);
+                        removed.accept(key);
+                    } else {
+                        value = entry.value();
+                    }
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Put a value into the cache
+     *
+     * @param key the key of the value
+     * @param value the value to remember
+     */
+    public void put(@NotNull K key, @NotNull V value) {
+        if (isEnabled()) {
+            long expires = ttlNanos > 0 ? System.nanoTime() + ttlNanos : Long.MAX_VALUE;
+            Segment<K, V> segment = segmentFor(key);
+            synchronized (segment) {
+                segment.put(key, new CacheEntry<>(value, expires));
+            }
+        }
+    }
+
+    /**
+     * Remove the value for the key
+     *
+     * @param key the key to remove
+     */
+    public void remove(@NotNull K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            if (segment.remove(key) != null) {
+                removed.accept(key);
+            }
+        }
+    }
+
+    /**
+     * Remove the values for all the keys that match the filter
+     *
+     * @param filter the filter to check each key with
+     */
+    public void removeIf(@NotNull Predicate<K> filter) {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                for (Iterator<K> it = segment.keySet().iterator(); it.hasNext(); ) {
+                    K key = it.next();
+                    if (filter.test(key)) {
+                        it.remove();
+                        removed.accept(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all the values
+     */
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.keySet().forEach(removed);
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * @return the number of entries (including any expired entries that were not removed yet)
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Part of the entries in access order that is guarded by its own monitor
+     */
+    private static final class Segment<K, V> extends LinkedHashMap<K, CacheEntry<V>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+        private final transient Consumer<K> removed;
+
+        private Segment(int maxSize, Consumer<K> removed) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+            this.removed = removed;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+            boolean evict = size() > maxSize;
+            if (evict) {
+                removed.accept(eldest.getKey());
+            }
+            return evict;
+        }
+    }
+
+    private record CacheEntry<V>(V value, long expires) {
+        boolean isExpired(long now) {
+            return expires != Long.MAX_VALUE && now - expires >= 0;
+        }
+    }
+}
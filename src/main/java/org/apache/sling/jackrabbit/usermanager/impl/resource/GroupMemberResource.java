@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.sling.adapter.annotations.Adaptable;
+import org.apache.sling.adapter.annotations.Adapter;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+
+/**
+ * Resource implementation for a reference to a member of a group. The
+ * properties only identify the member, the properties of the member
+ * itself are provided by the resource at the <code>resourcePath</code>.
+ */
+@Adaptable(
+        adaptableClass = Resource.class,
+        adapters = {@Adapter({Map.class, ValueMap.class, Authorizable.class})})
+public class GroupMemberResource extends BaseResource {
+
+    /**
+     * The resource type of the member references
+     */
+    public static final String RESOURCE_TYPE = "sling/group/member";
+
+    /**
+     * The name of the property that provides the id of the member
+     */
+    public static final String PROPERTY_ID = "id";
+
+    /**
+     * The name of the property that provides the path of the user or group resource of the member
+     */
+    public static final String PROPERTY_RESOURCE_PATH = "resourcePath";
+
+    private final Authorizable member;
+    private final String id;
+    private final String memberResourcePath;
+
+    /**
+     * @param member the user or group that is a member
+     * @param id the id of the member
+     * @param memberResourcePath the path of the user or group resource of the member
+     * @param resourceResolver the resource resolver
+     * @param path the path of the resource
+     */
+    public GroupMemberResource(
+            Authorizable member, String id, String memberResourcePath, ResourceResolver resourceResolver, String path) {
+        super(resourceResolver, path);
+
+        this.member = member;
+        this.id = id;
+        this.memberResourcePath = memberResourcePath;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.apache.sling.api.resource.Resource#getResourceType()
+     */
+    public String getResourceType() {
+        return RESOURCE_TYPE;
+    }
+
+    /**
+     * @return the id of the member
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the path of the user or group resource of the member
+     */
+    public String getMemberResourcePath() {
+        return memberResourcePath;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.apache.sling.api.adapter.Adaptable#adaptTo(java.lang.Class)
+     */
+    @Override
+    public <T> T adaptTo(Class<T> type) {
+        if (type == Map.class || type == ValueMap.class) {
+            Map<String, Object> properties = new LinkedHashMap<>();
+            properties.put(PROPERTY_ID, id);
+            properties.put(PROPERTY_RESOURCE_PATH, memberResourcePath);
+            return type.cast(new ValueMapDecorator(properties));
+        } else if (type == Authorizable.class) {
+            return type.cast(member);
+        }
+        return super.adaptTo(type);
+    }
+
+    public String toString() {
+        return getClass().getSimpleName() + ", id=" + id + ", path=" + getPath();
+    }
+}
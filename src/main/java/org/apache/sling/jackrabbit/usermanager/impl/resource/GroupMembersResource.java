@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.jackrabbit.api.security.user.Group;
+import org.apache.jackrabbit.oak.spi.security.principal.EveryonePrincipal;
+import org.apache.sling.adapter.annotations.Adaptable;
+import org.apache.sling.adapter.annotations.Adapter;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.jackrabbit.usermanager.resource.SystemUserManagerPaths;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resource implementation for the members of a group. The children are
+ * references to the members that are found with a query for one page at a
+ * time, so a page of the members of a large group can be listed without
+ * reading the members before it or holding all the members in memory.
+ */
+@Adaptable(
+        adaptableClass = Resource.class,
+        adapters = {@Adapter({Group.class})})
+public class GroupMembersResource extends BaseResource {
+
+    /**
+     * The resource type of the group members resource
+     */
+    public static final String RESOURCE_TYPE = "sling/group/members";
+
+    /**
+     * The name of the group members resource relative to the group resource
+     */
+    public static final String NAME = "members";
+
+    private final Group group;
+    private final SystemUserManagerPaths systemUserManagerPaths;
+
+    /**
+     * @param group the group to list the members of
+     * @param resourceResolver the resource resolver
+     * @param path the path of the resource
+     * @param systemUserManagerPaths the paths of the user and group resources
+     */
+    public GroupMembersResource(
+            Group group,
+            ResourceResolver resourceResolver,
+            String path,
+            SystemUserManagerPaths systemUserManagerPaths) {
+        super(resourceResolver, path);
+
+        this.group = group;
+        this.systemUserManagerPaths = systemUserManagerPaths;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.apache.sling.api.resource.Resource#getResourceType()
+     */
+    public String getResourceType() {
+        return RESOURCE_TYPE;
+    }
+
+    /**
+     * Lists one page of the members of the group
+     *
+     * @param declaredOnly true to list only the declared members or false to also list the inherited members
+     * @param offset the number of members to skip or -1 for none
+     * @param limit the maximum number of members to return or -1 for no limit
+     * @return iterator of the member reference resources
+     * @throws RepositoryException if the members could not be read
+     */
+    public @NotNull Iterator<Resource> listMembers(boolean declaredOnly, long offset, long limit)
+            throws RepositoryException {
+        Session session = resourceResolver.adaptTo(Session.class);
+        if (session instanceof JackrabbitSession jackrabbitSession
+                && !EveryonePrincipal.NAME.equals(group.getPrincipal().getName())) {
+            // the repository skips the members before the page
+            AuthorizableQuery query = new AuthorizableQuery(Authorizable.class, Math.max(offset, 0), limit);
+            query.setScope(group.getID(), declaredOnly);
+            return new MembersIterator(jackrabbitSession.getUserManager().findAuthorizables(query), 0, -1);
+        }
+        // the members of the everyone group are computed, so they can not be queried
+        Iterator<Authorizable> members = declaredOnly ? group.getDeclaredMembers() : group.getMembers();
+        return new MembersIterator(members, Math.max(offset, 0), limit);
+    }
+
+    /**
+     * Create the reference resource for a member of the group
+     *
+     * @param member the member
+     * @return the member reference resource
+     * @throws RepositoryException if the id of the member could not be read
+     */
+    protected @NotNull GroupMemberResource toMemberResource(@NotNull Authorizable member) throws RepositoryException {
+        String id = member.getID();
+        String memberResourcePath = member.isGroup()
+                ? systemUserManagerPaths.getGroupPrefix() + id
+                : systemUserManagerPaths.getUserPrefix() + id;
+        return new GroupMemberResource(
+                member, id, memberResourcePath, resourceResolver, String.format("%s/%s", getPath(), id));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.apache.sling.api.adapter.Adaptable#adaptTo(java.lang.Class)
+     */
+    @Override
+    public <T> T adaptTo(Class<T> type) {
+        if (type == Group.class) {
+            return type.cast(group);
+        }
+        return super.adaptTo(type);
+    }
+
+    public String toString() {
+        return getClass().getSimpleName() + ", path=" + getPath();
+    }
+
+    /**
+     * Iterates one page of the members, the members before the page are
+     * skipped without creating resources for them
+     */
+    private final class MembersIterator implements Iterator<Resource> {
+        private final Logger log = LoggerFactory.getLogger(getClass());
+
+        private final Iterator<Authorizable> members;
+        private long skip;
+        private long remaining;
+        private Resource next;
+
+        private MembersIterator(Iterator<Authorizable> members, long skip, long limit) {
+            this.members = members;
+            this.skip = skip;
+            this.remaining = limit;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && remaining != 0 && members.hasNext()) {
+                Authorizable member = members.next();
+                if (skip > 0) {
+                    skip--;
+                } else {
+                    try {
+                        next = toMemberResource(member);
+                        if (remaining > 0) {
+                            remaining--;
+                        }
+                    } catch (RepositoryException re) {
+                        log.error("Exception while looking up member id.", re);
+                    }
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Resource next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Resource result = next;
+            next = null;
+            return result;
+        }
+    }
+}
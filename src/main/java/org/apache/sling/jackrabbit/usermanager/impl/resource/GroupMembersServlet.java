@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import jakarta.json.Json;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.servlet.Servlet;
+import org.apache.sling.api.SlingJakartaHttpServletRequest;
+import org.apache.sling.api.SlingJakartaHttpServletResponse;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.servlets.SlingJakartaSafeMethodsServlet;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Component;
+
+/**
+ * Renders the members of a group as JSON. Each member reference is written
+ * as soon as it is read from the group, so the memory used does not depend
+ * on the number of members. The page of members to render is selected by
+ * the path parameters of the members resource. For example:
+ * <code>curl http://localhost:8080/system/userManager/group/group1/members;offset=100;limit=50.json</code>
+ * <p>
+ * The response is a JSON object with a <code>members</code> array containing
+ * an object with the <code>id</code> and <code>resourcePath</code> of each member.
+ * </p>
+ */
+@Component(
+        service = Servlet.class,
+        property = {
+            "sling.servlet.resourceTypes=" + GroupMembersResource.RESOURCE_TYPE,
+            "sling.servlet.methods=GET",
+            "sling.servlet.extensions=json"
+        })
+public class GroupMembersServlet extends SlingJakartaSafeMethodsServlet {
+    private static final long serialVersionUID = -2573081842751234617L;
+
+    /**
+     * The name of the array of member references in the response
+     */
+    public static final String PROPERTY_MEMBERS = "members";
+
+    @Override
+    protected void doGet(
+            @NotNull SlingJakartaHttpServletRequest request, @NotNull SlingJakartaHttpServletResponse response)
+            throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        Resource resource = request.getResource();
+        try (JsonGenerator generator = Json.createGenerator(response.getWriter())) {
+            generator.writeStartObject();
+            generator.writeStartArray(PROPERTY_MEMBERS);
+            // the children are read lazily from the group one at a time
+            for (Iterator<Resource> members = resource.listChildren(); members.hasNext(); ) {
+                Resource member = members.next();
+                if (member instanceof GroupMemberResource memberResource) {
+                    generator
+                            .writeStartObject()
+                            .write(GroupMemberResource.PROPERTY_ID, memberResource.getId())
+                            .write(GroupMemberResource.PROPERTY_RESOURCE_PATH, memberResource.getMemberResourcePath())
+                            .writeEnd();
+                }
+            }
+            generator.writeEnd();
+            generator.writeEnd();
+        }
+    }
+}
@@ -0,0 +1,772 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Value;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.jackrabbit.api.security.user.Group;
+import org.apache.jackrabbit.api.security.user.UserManager;
+import org.apache.jackrabbit.oak.spi.security.principal.EveryonePrincipal;
+import org.apache.jackrabbit.oak.spi.security.user.UserConstants;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.jcr.api.SlingRepository;
+import org.apache.sling.serviceusermapping.ServiceUserMapped;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps an in-memory index of the declared memberships of the groups, so the
+ * transitive members and memberships can be answered without walking the
+ * repository for each request.
+ * <p>
+ * The index is built from a service session when the component is activated
+ * and is then updated from the changes delivered to the
+ * {@link AuthorizableChangeListener} services. It reflects the declared
+ * memberships that the service user can read, so the callers pass a check
+ * for the users and groups that are visible to the current session and the
+ * walks do not pass through the groups that the session can not see, just
+ * like the membership methods of the groups do.
+ * The index is only consulted once it has been built and returns null until then.
+ * </p>
+ * <p>
+ * The observed changes are collected and applied in batches by a single
+ * thread, so a burst of changes to the same users and groups reads them only
+ * once. When more changes are pending than configured, they are dropped and
+ * the index is built again instead.
+ * </p>
+ * <p>
+ * Only the memberships that are stored with the groups are indexed. Do not enable
+ * the index when memberships are computed dynamically (for example by an external
+ * identity provider) as those would be missing from the answers.
+ * </p>
+ */
+@Component(
+        service = {MembershipGraph.class, AuthorizableChangeListener.class},
+        property = {
+            "service.description=Index of the group memberships",
+            "service.vendor=The Apache Software Foundation"
+        })
+@Designate(ocd = MembershipGraph.Config.class)
+public class MembershipGraph implements AuthorizableChangeListener {
+
+    @ObjectClassDefinition(
+            name = "Apache Sling UserManager Membership Graph",
+            description = "Keeps an in-memory index of the group memberships")
+    public @interface Config {
+
+        @AttributeDefinition(
+                name = "Enabled",
+                description = "Specifies whether the transitive members and memberships of the users and groups "
+                        + "are answered from an in-memory index of the declared memberships. The index is built "
+                        + "when the component is activated and updated as the groups change. The index is "
+                        + "read with the default service user of the bundle, which must be mapped and be "
+                        + "allowed to read the users and groups (for example jcr:read on /home).")
+        boolean enabled() default false; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Maximum Pending Changes",
+                description = "The maximum number of changed users, groups and paths that are waiting to be "
+                        + "applied to the index. When more changes arrive, they are dropped and the index is "
+                        + "built again, during which time the memberships are read from the repository.")
+        int max_pending_changes() default 10000; // NOSONAR
+    }
+
+    /**
+     * The id and path of a declared member of a group
+     *
+     * @param id the id of the user or group
+     * @param path the repository path of the user or group
+     */
+    record Member(@NotNull String id, @NotNull String path) {}
+
+    /**
+     * default log
+     */
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * The declared member ids by group id
+     */
+    private final Map<String, Set<String>> declaredMembers = new ConcurrentHashMap<>();
+
+    /**
+     * The ids of the groups that declare the member by member id
+     */
+    private final Map<String, Set<String>> declaredMemberOf = new ConcurrentHashMap<>();
+
+    /**
+     * The ids of the indexed users and groups by repository path, sorted so the
+     * authorizables below a removed path can be found without a full scan
+     */
+    private final NavigableMap<String, String> idsByPath = new ConcurrentSkipListMap<>();
+
+    /**
+     * The repository paths of the indexed users and groups by id
+     */
+    private final Map<String, String> pathsById = new ConcurrentHashMap<>();
+
+    /**
+     * The stored member references by group id, so a change of the group that does
+     * not change its members does not read the declared members again
+     */
+    private final Map<String, List<String>> memberReferences = new ConcurrentHashMap<>();
+
+    /**
+     * The id of the group that every authorizable is a member of or null if
+     * there is no such group
+     */
+    private volatile String everyoneId; // NOSONAR
+
+    private volatile boolean ready; // NOSONAR
+
+    /**
+     * Applies the changes to the index in batches, after the initial build
+     */
+    private volatile ExecutorService executor; // NOSONAR
+
+    /**
+     * Guards the pending changes
+     */
+    private final Object pendingLock = new Object();
+
+    /**
+     * The paths that were removed since the last batch
+     */
+    private Set<String> removedPaths = new LinkedHashSet<>();
+
+    /**
+     * The paths that were added or changed since the last batch
+     */
+    private Set<String> changedPaths = new LinkedHashSet<>();
+
+    /**
+     * The ids of the users and groups that were changed since the last batch
+     */
+    private Set<String> changedIds = new LinkedHashSet<>();
+
+    /**
+     * True if too many changes were pending, so the index must be built again
+     */
+    private boolean rebuildPending;
+
+    /**
+     * True if a task to apply the pending changes was submitted and did not start yet
+     */
+    private boolean applyPending;
+
+    private int maxPendingChanges = 10000;
+
+    /**
+     * The service session that is only used by the executor thread
+     */
+    private Session session;
+
+    @Reference
+    private SlingRepository repository;
+
+    /**
+     * To require a service user before becoming active
+     */
+    @Reference
+    private ServiceUserMapped serviceUserMapped;
+
+    @Activate
+    protected void activate(final Config config) {
+        if (config.enabled()) {
+            maxPendingChanges = Math.max(1, config.max_pending_changes());
+            executor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "UserManager Membership Graph");
+                thread.setDaemon(true);
+                return thread;
+            });
+            submit(this::build);
+        }
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        ready = false;
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                // the session is only used by the executor thread
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+        if (session != null && session.isLive()) {
+            session.logout();
+        }
+        session = null;
+    }
+
+    /**
+     * @return true if the index was built and can answer the membership questions
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Get the ids of the groups that the authorizable is a direct or indirect member of
+     *
+     * @param id the id of the user or group
+     * @param visible checks if the user or group at a repository path is visible to the caller
+     * @return the ids of the visible groups or null if the index is not ready
+     */
+    public @Nullable Set<String> getMemberOf(@NotNull String id, @NotNull Predicate<String> visible) {
+        if (!ready) {
+            return null;
+        }
+        Set<String> groups = walk(id, declaredMemberOf, visible);
+        String everyone = everyoneId;
+        if (everyone != null && !everyone.equals(id) && isVisible(everyone, visible)) {
+            groups.add(everyone);
+        }
+        return groups;
+    }
+
+    /**
+     * Get the ids of the direct and indirect members of the group
+     *
+     * @param groupId the id of the group
+     * @param visible checks if the user or group at a repository path is visible to the caller
+     * @return the ids of the visible members or null if the index is not ready or does not
+     *          know the members of the group
+     */
+    public @Nullable Set<String> getMembers(@NotNull String groupId, @NotNull Predicate<String> visible) {
+        if (!ready || groupId.equals(everyoneId) || !declaredMembers.containsKey(groupId)) {
+            return null;
+        }
+        return walk(groupId, declaredMembers, visible);
+    }
+
+    /**
+     * Checks if the authorizable is a direct or indirect member of the group
+     *
+     * @param groupId the id of the group
+     * @param memberId the id of the user or group
+     * @param visible checks if the user or group at a repository path is visible to the caller
+     * @return the answer or null if the index is not ready or does not know the group
+     */
+    public @Nullable Boolean isMember(
+            @NotNull String groupId, @NotNull String memberId, @NotNull Predicate<String> visible) {
+        if (!ready || !declaredMembers.containsKey(groupId)) {
+            return null;
+        } else if (groupId.equals(everyoneId)) {
+            return !groupId.equals(memberId);
+        }
+        return walk(memberId, declaredMemberOf, visible).contains(groupId);
+    }
+
+    /**
+     * Checks if the id is known to be a group, which is the case once the
+     * declared members of the group were indexed
+     *
+     * @param id the id of the user or group
+     * @return true if the id is a group
+     */
+    public boolean isGroup(@NotNull String id) {
+        return declaredMembers.containsKey(id);
+    }
+
+    /**
+     * Check the visibility of the users and groups with the session, remembering
+     * the answer for each path
+     *
+     * @param session the session of the caller
+     * @return checks if the user or group at a repository path is visible to the session
+     */
+    public static @NotNull Predicate<String> visibleTo(@NotNull Session session) {
+        Map<String, Boolean> checked = new HashMap<>();
+        return path -> checked.computeIfAbsent(path, p -> {
+            try {
+                return session.nodeExists(p);
+            } catch (RepositoryException e) {
+                LoggerFactory.getLogger(MembershipGraph.class).debug("Could not check {}", p, e);
+                return false;
+            }
+        });
+    }
+
+    private boolean isVisible(String id, Predicate<String> visible) {
+        String path = pathsById.get(id);
+        return path != null && visible.test(path);
+    }
+
+    /**
+     * Breadth first walk of the edges starting at the id, not passing through
+     * the users and groups that are not visible
+     *
+     * @param id the id to start from
+     * @param edges the adjacent ids by id
+     * @param visible checks if the user or group at a repository path is visible
+     * @return the reachable ids, not including the start id
+     */
+    private Set<String> walk(String id, Map<String, Set<String>> edges, Predicate<String> visible) {
+        Set<String> found = new LinkedHashSet<>();
+        Set<String> hidden = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.add(id);
+        while (!pending.isEmpty()) {
+            for (String next : edges.getOrDefault(pending.poll(), Collections.emptySet())) {
+                if (next.equals(id) || found.contains(next) || hidden.contains(next)) {
+                    // already walked
+                } else if (isVisible(next, visible)) {
+                    found.add(next);
+                    pending.add(next);
+                } else {
+                    hidden.add(next);
+                }
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void onChange(@NotNull String authorizableId) {
+        synchronized (pendingLock) {
+            if (!rebuildPending) {
+                changedIds.add(authorizableId);
+            }
+            schedulePending();
+        }
+    }
+
+    @Override
+    public void onRepositoryChange(@NotNull List<ResourceChange> changes) {
+        synchronized (pendingLock) {
+            if (!rebuildPending) {
+                for (ResourceChange change : changes) {
+                    if (change.getType() == ChangeType.REMOVED) {
+                        removedPaths.add(change.getPath());
+                    } else {
+                        changedPaths.add(change.getPath());
+                    }
+                }
+            }
+            schedulePending();
+        }
+    }
+
+    /**
+     * Submit a task to apply the pending changes unless one is waiting already.
+     * Must be called while holding the pending lock.
+     */
+    private void schedulePending() {
+        if (removedPaths.size() + changedPaths.size() + changedIds.size() > maxPendingChanges) {
+            // applying each change would take longer than reading everything again
+            removedPaths = new LinkedHashSet<>();
+            changedPaths = new LinkedHashSet<>();
+            changedIds = new LinkedHashSet<>();
+            rebuildPending = true;
+        }
+        if (!applyPending && executor != null) {
+            applyPending = true;
+            submit(this::applyPending);
+        }
+    }
+
+    /**
+     * Apply the changes that were collected since the last batch.
+     * <p>
+     * The removals are applied first, so the authorizables that were removed and
+     * added again are read from the current state of the repository afterwards.
+     * </p>
+     */
+    private void applyPending() throws RepositoryException {
+        Set<String> removed;
+        Set<String> changed;
+        Set<String> ids;
+        boolean rebuild;
+        synchronized (pendingLock) {
+            removed = removedPaths;
+            changed = changedPaths;
+            ids = changedIds;
+            rebuild = rebuildPending;
+            removedPaths = new LinkedHashSet<>();
+            changedPaths = new LinkedHashSet<>();
+            changedIds = new LinkedHashSet<>();
+            rebuildPending = false;
+            applyPending = false;
+        }
+        if (rebuild) {
+            rebuild();
+            return;
+        }
+        refreshSession();
+        for (String path : removed) {
+            removed(path);
+        }
+        for (String path : changed) {
+            changed(path);
+        }
+        for (String id : ids) {
+            refresh(id);
+        }
+    }
+
+    private void submit(RepositoryTask task) {
+        ExecutorService e = executor;
+        if (e != null) {
+            try {
+                e.execute(() -> {
+                    try {
+                        task.run();
+                    } catch (RepositoryException re) {
+                        log.warn("Failed to update the membership graph", re);
+                    }
+                });
+            } catch (RejectedExecutionException ree) {
+                // deactivated
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface RepositoryTask {
+        void run() throws RepositoryException;
+    }
+
+    /**
+     * Login the service session or discard its state, so it sees the latest changes
+     */
+    private void refreshSession() throws RepositoryException {
+        if (session == null) {
+            session = repository.loginService(null, null);
+        } else {
+            session.refresh(false);
+        }
+    }
+
+    private UserManager getUserManager() throws RepositoryException {
+        return ((JackrabbitSession) session).getUserManager();
+    }
+
+    /**
+     * Read the declared members of all the groups
+     */
+    private void build() throws RepositoryException {
+        long start = System.currentTimeMillis();
+        refreshSession();
+        UserManager userManager = getUserManager();
+        Iterator<Authorizable> groups = userManager.findAuthorizables(new AuthorizableQuery(Group.class, 0, -1));
+        while (groups.hasNext()) {
+            if (groups.next() instanceof Group group) {
+                update(group);
+            }
+        }
+        ready = true;
+        log.info(
+                "Indexed the memberships of {} groups in {} ms",
+                declaredMembers.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Forget everything and read the declared members of all the groups again
+     */
+    private void rebuild() throws RepositoryException {
+        // answered from the repository until the index is complete again
+        ready = false;
+        declaredMembers.clear();
+        declaredMemberOf.clear();
+        idsByPath.clear();
+        pathsById.clear();
+        memberReferences.clear();
+        everyoneId = null;
+        build();
+    }
+
+    /**
+     * Read the declared members of the group again
+     *
+     * @param id the id of the user or group that was changed
+     */
+    private void refresh(String id) throws RepositoryException {
+        Authorizable authorizable = getUserManager().getAuthorizable(id);
+        if (authorizable instanceof Group group) {
+            update(group);
+        } else if (authorizable == null) {
+            remove(id);
+        }
+    }
+
+    /**
+     * Read the declared members of the group that owns the changed path
+     *
+     * @param path the changed repository path
+     */
+    private void changed(String path) throws RepositoryException {
+        String ownerPath = getIndexedOwnerPath(path);
+        if (ownerPath != null) {
+            // the nested nodes of a group, except for the member list, do not hold memberships
+            String relPath = path.substring(ownerPath.length());
+            boolean memberList = relPath.startsWith("/" + UserConstants.REP_MEMBERS_LIST + "/")
+                    || relPath.equals("/" + UserConstants.REP_MEMBERS_LIST);
+            if ((relPath.isEmpty() || memberList)
+                    && getUserManager().getAuthorizableByPath(ownerPath) instanceof Group group) {
+                update(group);
+            }
+            return;
+        }
+        UserManager userManager = getUserManager();
+        for (String p = path; p.lastIndexOf('/') > 0; p = p.substring(0, p.lastIndexOf('/'))) {
+            Authorizable authorizable = userManager.getAuthorizableByPath(p);
+            if (authorizable != null) {
+                if (authorizable instanceof Group group) {
+                    update(group);
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * @param path the repository path
+     * @return the path of the indexed user or group that is stored at or above the path,
+     *          or null if there is none
+     */
+    private @Nullable String getIndexedOwnerPath(String path) {
+        for (String p = path; p.lastIndexOf('/') > 0; p = p.substring(0, p.lastIndexOf('/'))) {
+            if (idsByPath.containsKey(p)) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remove the authorizables that were stored at or below the path and
+     * read the members of the group that owns the path again
+     *
+     * @param path the removed repository path
+     */
+    private void removed(String path) throws RepositoryException {
+        removeTree(path);
+        // the removed item may have been part of the members of a group, while
+        // removing a whole user or group does not change the stored members of
+        // the other groups
+        int idx = path.lastIndexOf('/');
+        if (idx > 0 && getIndexedOwnerPath(path.substring(0, idx)) != null) {
+            changed(path.substring(0, idx));
+        }
+    }
+
+    private void update(Group group) throws RepositoryException {
+        String groupId = group.getID();
+        List<String> references = readMemberReferences(group.getPath());
+        if (references != null && references.equals(memberReferences.get(groupId))) {
+            // the members are unchanged
+            return;
+        }
+        List<Member> members = new ArrayList<>();
+        for (Iterator<Authorizable> it = group.getDeclaredMembers(); it.hasNext(); ) {
+            Authorizable member = it.next();
+            members.add(new Member(member.getID(), member.getPath()));
+        }
+        if (EveryonePrincipal.NAME.equals(group.getPrincipal().getName())) {
+            everyoneId = group.getID();
+        }
+        updateGroup(groupId, group.getPath(), members);
+        if (references != null) {
+            memberReferences.put(groupId, references);
+        }
+    }
+
+    /**
+     * Read the member references that are stored with the group and in its member list
+     *
+     * @param groupPath the repository path of the group
+     * @return the references or null if they can not be read
+     */
+    private @Nullable List<String> readMemberReferences(String groupPath) throws RepositoryException {
+        if (!session.nodeExists(groupPath)) {
+            return null;
+        }
+        Node node = session.getNode(groupPath);
+        List<String> references = new ArrayList<>();
+        addMemberReferences(node, references);
+        if (node.hasNode(UserConstants.REP_MEMBERS_LIST)) {
+            for (NodeIterator it = node.getNode(UserConstants.REP_MEMBERS_LIST).getNodes(); it.hasNext(); ) {
+                addMemberReferences(it.nextNode(), references);
+            }
+        }
+        return references;
+    }
+
+    private static void addMemberReferences(Node node, List<String> references) throws RepositoryException {
+        if (node.hasProperty(UserConstants.REP_MEMBERS)) {
+            Property property = node.getProperty(UserConstants.REP_MEMBERS);
+            Value[] values = property.isMultiple() ? property.getValues() : new Value[] {property.getValue()};
+            for (Value value : values) {
+                references.add(value.getString());
+            }
+        }
+    }
+
+    /**
+     * Remember where the user or group is stored
+     */
+    private void index(String id, String path) {
+        String previous = pathsById.put(id, path);
+        if (previous != null && !previous.equals(path)) {
+            idsByPath.remove(previous, id);
+        }
+        idsByPath.put(path, id);
+    }
+
+    /**
+     * Replace the declared members of the group
+     *
+     * @param groupId the id of the group
+     * @param groupPath the repository path of the group
+     * @param members the declared members
+     */
+    void updateGroup(@NotNull String groupId, @NotNull String groupPath, @NotNull Collection<Member> members) {
+        index(groupId, groupPath);
+        Set<String> memberIds = new HashSet<>();
+        for (Member member : members) {
+            memberIds.add(member.id());
+            index(member.id(), member.path());
+        }
+        Set<String> previous = declaredMembers.put(groupId, Set.copyOf(memberIds));
+        if (previous != null) {
+            for (String id : previous) {
+                if (!memberIds.contains(id)) {
+                    removeEdge(id, groupId);
+                }
+            }
+        }
+        for (String id : memberIds) {
+            if (previous == null || !previous.contains(id)) {
+                declaredMemberOf.compute(id, (k, groups) -> {
+                    Set<String> updated = groups == null ? new HashSet<>() : new HashSet<>(groups);
+                    updated.add(groupId);
+                    return Set.copyOf(updated);
+                });
+            }
+        }
+    }
+
+    /**
+     * Remove the authorizable that was stored at the path
+     *
+     * @param path the repository path of the user or group
+     */
+    void removePath(@NotNull String path) {
+        String id = idsByPath.remove(path);
+        if (id != null) {
+            pathsById.remove(id, path);
+            remove(id);
+        }
+    }
+
+    /**
+     * Remove the authorizables that were stored at or below the path
+     *
+     * @param path the removed repository path
+     */
+    void removeTree(@NotNull String path) {
+        removePath(path);
+        // '0' is the character after '/', so this is the range of the descendant paths
+        for (String descendant : List.copyOf(
+                idsByPath.subMap(path + "/", true, path + "0", false).keySet())) {
+            removePath(descendant);
+        }
+    }
+
+    private void remove(String id) {
+        memberReferences.remove(id);
+        Set<String> members = declaredMembers.remove(id);
+        if (members != null) {
+            for (String member : members) {
+                removeEdge(member, id);
+            }
+        }
+        Set<String> groups = declaredMemberOf.remove(id);
+        if (groups != null) {
+            for (String group : groups) {
+                declaredMembers.computeIfPresent(group, (k, ids) -> {
+                    Set<String> updated = new HashSet<>(ids);
+                    updated.remove(id);
+                    return Set.copyOf(updated);
+                });
+            }
+        }
+        if (id.equals(everyoneId)) {
+            everyoneId = null;
+        }
+    }
+
+    private void removeEdge(String memberId, String groupId) {
+        declaredMemberOf.computeIfPresent(memberId, (k, groups) -> {
+            Set<String> updated = new HashSet<>(groups);
+            updated.remove(groupId);
+            return updated.isEmpty() ? null : Set.copyOf(updated);
+        });
+    }
+
+    /**
+     * Marks the index as built, for tests that fill it with {@link #updateGroup}
+     */
+    void setReady(boolean ready) {
+        this.ready = ready;
+    }
+}
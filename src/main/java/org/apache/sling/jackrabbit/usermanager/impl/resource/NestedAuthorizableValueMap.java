@@ -32,10 +32,27 @@ import org.jetbrains.annotations.NotNull;
 public class NestedAuthorizableValueMap extends BaseAuthorizableValueMap {
     private final String relPropPath;
 
+    /**
+     * The relPropPath followed by a slash, so the relative path of a
+     * property is built with a single concatenation
+     */
+    private final String relPropPrefix;
+
     public NestedAuthorizableValueMap(
             Authorizable authorizable, SystemUserManagerPaths systemUserManagerPaths, @NotNull String relPropPath) {
         super(authorizable, systemUserManagerPaths);
         this.relPropPath = relPropPath;
+        this.relPropPrefix = relPropPath.concat("/");
+    }
+
+    /**
+     * Get the path of the property relative to the authorizable
+     *
+     * @param key the key of the property in this map
+     * @return the relative path of the property
+     */
+    protected @NotNull String toRelPropKey(@NotNull String key) {
+        return relPropPrefix.concat(key);
     }
 
     @Override
@@ -46,8 +63,8 @@ public class NestedAuthorizableValueMap extends BaseAuthorizableValueMap {
         if (!fullyRead) {
             try {
                 // prepend the relPath to the key
-                String relPropKey = String.format("%s/%s", relPropPath, key);
-                if (authorizable.hasProperty(relPropKey)) {
+                String relPropKey = toRelPropKey(key);
+                if (getRawValues(relPropKey) != null) {
                     value = readPropertyAndCache(key, relPropKey);
                 } else {
                     // property not found or some error accessing it
@@ -60,6 +77,11 @@ public class NestedAuthorizableValueMap extends BaseAuthorizableValueMap {
         return value;
     }
 
+    @Override
+    protected boolean exists(String key) throws RepositoryException {
+        return authorizable.hasProperty(toRelPropKey(key));
+    }
+
     @Override
     protected void readFully() {
         if (!fullyRead) {
@@ -68,7 +90,7 @@ public class NestedAuthorizableValueMap extends BaseAuthorizableValueMap {
                 while (pi.hasNext()) {
                     String key = pi.next();
                     if (!cache.containsKey(key)) {
-                        readPropertyAndCache(key, String.format("%s/%s", relPropPath, key));
+                        readPropertyAndCache(key, toRelPropKey(key));
                     }
                 }
 
@@ -81,6 +103,6 @@ public class NestedAuthorizableValueMap extends BaseAuthorizableValueMap {
 
     @Override
     protected <T> T convertToType(String name, Class<T> type) {
-        return super.convertToType(String.format("%s/%s", relPropPath, name), type);
+        return super.convertToType(toRelPropKey(name), type);
     }
 }
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the nested property containers of an authorizable. The children
+ * of each level of the home folder are read once when the level is first
+ * asked for, so checking if a relative path is a nested property container
+ * does not need to ask the authorizable for the property names of a path
+ * that may not exist.
+ */
+public class NestedPropertyIndex {
+    private static final Logger log = LoggerFactory.getLogger(NestedPropertyIndex.class);
+
+    /**
+     * The names of the child containers by the relative path of the level ("" for the home folder)
+     */
+    private final Map<String, List<String>> childContainers = new ConcurrentHashMap<>();
+
+    /**
+     * Check if the relative path is a nested property container
+     *
+     * @param session the session to read the home folder with
+     * @param authorizable the user or group
+     * @param relPath the path relative to the home folder of the authorizable
+     * @return true if the path has any properties of the authorizable
+     * @throws RepositoryException if the path of the authorizable could not be read
+     */
+    public boolean isContainer(@NotNull Session session, @NotNull Authorizable authorizable, @NotNull String relPath)
+            throws RepositoryException {
+        int lastSlash = relPath.lastIndexOf('/');
+        String parentRelPath = lastSlash == -1 ? null : relPath.substring(0, lastSlash);
+        return getChildContainerNames(session, authorizable, parentRelPath).contains(relPath.substring(lastSlash + 1));
+    }
+
+    /**
+     * Get the names of the children that are nested property containers
+     *
+     * @param session the session to read the home folder with
+     * @param authorizable the user or group
+     * @param relPath the path relative to the home folder of the authorizable or null for the home folder
+     * @return the names of the children in the order of the nodes
+     * @throws RepositoryException if the path of the authorizable could not be read
+     */
+    public @NotNull List<String> getChildContainerNames(
+            @NotNull Session session, @NotNull Authorizable authorizable, @Nullable String relPath)
+            throws RepositoryException {
+        String key = relPath == null ? "" : relPath;
+        List<String> names = childContainers.get(key);
+        if (names == null) {
+            names = readChildContainerNames(session, authorizable, relPath);
+            childContainers.put(key, names);
+        }
+        return names;
+    }
+
+    private static List<String> readChildContainerNames(
+            @NotNull Session session, @NotNull Authorizable authorizable, @Nullable String relPath)
+            throws RepositoryException {
+        List<String> names = new ArrayList<>();
+        String path =
+                relPath == null ? authorizable.getPath() : String.format("%s/%s", authorizable.getPath(), relPath);
+        try {
+            if (session.nodeExists(path)) {
+                NodeIterator nodes = session.getNode(path).getNodes();
+                while (nodes.hasNext()) {
+                    Node child = nodes.nextNode();
+                    String childName = child.getName();
+                    String childRelPath = relPath == null ? childName : String.format("%s/%s", relPath, childName);
+                    if (hasProperties(authorizable, childRelPath)) {
+                        names.add(childName);
+                    }
+                }
+            }
+        } catch (RepositoryException re) {
+            // the level can not be read, so it has no nested property containers
+            log.debug("Failed to read the children of {}", path, re);
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    private static boolean hasProperties(@NotNull Authorizable authorizable, @NotNull String relPath) {
+        boolean hasProperties = false;
+        try {
+            hasProperties = authorizable.getPropertyNames(relPath).hasNext();
+        } catch (RepositoryException re) {
+            // for example if reading the properties of the node is denied
+            log.debug("Failed to get the property names of {}", relPath, re);
+        }
+        return hasProperties;
+    }
+}
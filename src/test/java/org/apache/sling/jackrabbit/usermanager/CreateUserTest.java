@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jackrabbit.api.security.user.User;
+import org.apache.sling.servlets.post.Modification;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test coverage for the default methods of CreateUser
+ */
+public class CreateUserTest {
+
+    /**
+     * An implementation to facilitate testing of default methods in the interface
+     */
+    public static class TestDefaultMethodsCreateUser implements CreateUser {
+
+        @Override
+        public User createUser(
+                Session jcrSession,
+                String name,
+                String password,
+                String passwordConfirm,
+                Map<String, ?> properties,
+                List<Modification> changes)
+                throws RepositoryException {
+            if (!password.equals(passwordConfirm)) {
+                throw new RepositoryException("Password value does not match the confirmation password");
+            }
+            User user = Mockito.mock(User.class);
+            Mockito.when(user.getID()).thenReturn((String) properties.get(":name"));
+            return user;
+        }
+    }
+
+    @Test
+    public void testCreateUsersSavesEachRecord() throws RepositoryException {
+        Session session = Mockito.mock(Session.class);
+        Mockito.when(session.hasPendingChanges()).thenReturn(true);
+        List<Map<String, ?>> records = List.of(
+                Map.of(":name", "user1", "pwd", "secret", "pwdConfirm", "secret"),
+                Map.of(":name", "user2", "pwd", new String[] {"secret"}, "pwdConfirm", "other"),
+                Map.of(":name", "user3", "pwd", "secret", "pwdConfirm", new String[] {"secret"}));
+        List<BulkOperationResult> results = new ArrayList<>();
+
+        new TestDefaultMethodsCreateUser()
+                .createUsers(session, records.iterator(), 10, results::add, new ArrayList<>());
+
+        assertEquals(3, results.size());
+        assertEquals("user1", results.get(0).id());
+        assertNull(results.get(0).error());
+        assertEquals(
+                "Password value does not match the confirmation password",
+                results.get(1).error());
+        assertEquals("user3", results.get(2).id());
+        assertNull(results.get(2).error());
+        // the failed record does not leave changes behind for the next one
+        verify(session, times(2)).save();
+        verify(session, times(1)).refresh(false);
+    }
+}
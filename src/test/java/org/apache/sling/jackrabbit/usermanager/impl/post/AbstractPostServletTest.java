@@ -36,6 +36,8 @@ import org.apache.sling.api.resource.ResourceNotFoundException;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.wrappers.JavaxToJakartaRequestWrapper;
 import org.apache.sling.api.wrappers.JavaxToJakartaResponseWrapper;
+import org.apache.sling.jackrabbit.usermanager.BulkOperationResult;
+import org.apache.sling.jackrabbit.usermanager.impl.resource.AuthorizableChangeListener;
 import org.apache.sling.servlethelpers.MockSlingHttpServletRequest;
 import org.apache.sling.servlethelpers.MockSlingHttpServletResponse;
 import org.apache.sling.servlets.post.JakartaHtmlResponse;
@@ -129,6 +131,63 @@ public class AbstractPostServletTest {
         assertEquals(SlingJakartaHttpServletResponse.SC_NOT_FOUND, jakartaResponse.getStatus());
     }
 
+    @Test
+    public void testDoPostNotifiesChangeListenersAfterSave() throws ServletException, IOException, RepositoryException {
+        MockSlingHttpServletRequest request = context.request();
+        MockSlingHttpServletResponse response = context.response();
+        SlingJakartaHttpServletRequest jakartaRequest = JavaxToJakartaRequestWrapper.toJakartaRequest(request);
+        SlingJakartaHttpServletResponse jakartaResponse = JavaxToJakartaResponseWrapper.toJakartaResponse(response);
+
+        Session jcrSession = context.resourceResolver().adaptTo(Session.class);
+        UserManager um = ((JackrabbitSession) jcrSession).getUserManager();
+        User testUser = um.createUser("test", "test");
+        jcrSession.save();
+        context.currentResource(context.resourceResolver().getResource(testUser.getPath()));
+
+        AuthorizableChangeListener listener = Mockito.mock(AuthorizableChangeListener.class);
+        tps.bindAuthorizableChangeListener(listener);
+        tps = Mockito.spy(tps);
+        Mockito.doAnswer(invocation -> {
+                    jcrSession.getNode(testUser.getPath()).setProperty("key", "value");
+                    tps.fireAuthorizableChange("test");
+                    // not notified before the change was saved
+                    Mockito.verify(listener, Mockito.never()).onChange("test");
+                    return null;
+                })
+                .when(tps)
+                .handleOperation(any(SlingJakartaHttpServletRequest.class), any(JakartaPostResponse.class), anyList());
+
+        tps.doPost(jakartaRequest, jakartaResponse);
+
+        assertEquals(SlingJakartaHttpServletResponse.SC_OK, jakartaResponse.getStatus());
+        assertFalse(jcrSession.hasPendingChanges());
+        Mockito.verify(listener).onChange("test");
+
+        // notified right away outside of a post request
+        tps.fireAuthorizableChange("other");
+        Mockito.verify(listener).onChange("other");
+    }
+
+    @Test
+    public void testDoBulkOperationDoesNotKeepChanges() throws IOException {
+        SlingJakartaHttpServletRequest jakartaRequest =
+                JavaxToJakartaRequestWrapper.toJakartaRequest(context.request());
+        SlingJakartaHttpServletResponse jakartaResponse =
+                JavaxToJakartaResponseWrapper.toJakartaResponse(context.response());
+
+        tps.doBulkOperation(jakartaRequest, jakartaResponse, null, (results, changes) -> {
+            for (int i = 0; i < 3; i++) {
+                changes.add(Modification.onCreated("/created" + i));
+                changes.addAll(List.of(Modification.onModified("/modified" + i)));
+                results.accept(new BulkOperationResult(i, "id" + i, null));
+            }
+            assertTrue(changes.isEmpty());
+        });
+
+        assertEquals(SlingJakartaHttpServletResponse.SC_OK, jakartaResponse.getStatus());
+        assertTrue(context.response().getOutputAsString().contains("id2"));
+    }
+
     /**
      * Test method for {@link org.apache.sling.jackrabbit.usermanager.impl.post.AbstractPostServlet#createPostResponse(org.apache.sling.api.SlingJakartaHttpServletRequest)}.
      */
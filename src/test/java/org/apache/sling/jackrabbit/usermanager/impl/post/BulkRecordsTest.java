@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.post;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests reading the records of a bulk operation
+ */
+public class BulkRecordsTest {
+
+    private static BufferedReader reader(String body) {
+        return new BufferedReader(new StringReader(body));
+    }
+
+    @Test
+    public void testJsonLines() {
+        Iterator<Map<String, Object>> records = BulkRecords.read(
+                "application/x-ndjson",
+                reader("{\":name\":\"user1\",\"pwd\":\"a\",\"age\":42,\"tags\":[\"x\",\"y\"]}\n"
+                        + "\n"
+                        + "not json\n"
+                        + "{\":name\":\"user2\",\"nothing\":null}"));
+        assertTrue(records.hasNext());
+        Map<String, Object> first = records.next();
+        assertEquals("user1", first.get(":name"));
+        assertEquals("42", first.get("age"));
+        assertArrayEquals(new String[] {"x", "y"}, (String[]) first.get("tags"));
+
+        // a malformed line fails on its own
+        assertThrows(IllegalArgumentException.class, records::next);
+
+        assertEquals(Map.of(":name", "user2"), records.next());
+        assertFalse(records.hasNext());
+    }
+
+    @Test
+    public void testCsv() {
+        Iterator<Map<String, Object>> records = BulkRecords.read(
+                "text/csv; charset=UTF-8",
+                reader(":name,pwd,description\r\n"
+                        + "user1,a,\"multi\nline, with \"\"quotes\"\"\"\r\n"
+                        + "user2,b,\r\n"
+                        + "\r\n"
+                        + "user3,c,d,e\n"));
+        assertEquals(
+                Map.of(":name", "user1", "pwd", "a", "description", "multi\nline, with \"quotes\""), records.next());
+        // empty fields are left out
+        assertEquals(Map.of(":name", "user2", "pwd", "b"), records.next());
+        assertThrows(IllegalArgumentException.class, records::next);
+        assertFalse(records.hasNext());
+    }
+
+    @Test
+    public void testCsvRepeatedKeys() {
+        Iterator<Map<String, Object>> records =
+                BulkRecords.read("text/csv", reader(":name,:member,:member,:member\ngroup1,user1,,user2\n"));
+        Map<String, Object> record = records.next();
+        assertEquals("group1", record.get(":name"));
+        assertArrayEquals(new String[] {"user1", "user2"}, (String[]) record.get(":member"));
+    }
+
+    @Test
+    public void testCsvUnterminatedQuote() {
+        String body = ":name,pwd\n\"user1,secret\n" + "x".repeat(BulkRecords.MAX_ROW_LENGTH) + "\nuser2,secret\n";
+        Iterator<Map<String, Object>> records = BulkRecords.read("text/csv", reader(body));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, records::next);
+        assertEquals("Row 1 is longer than 65536 characters", e.getMessage());
+        // the following rows can still be read
+        assertEquals("user2", records.next().get(":name"));
+        assertFalse(records.hasNext());
+    }
+
+    @Test
+    public void testFirstValue() {
+        assertEquals("a", BulkRecords.firstValue(Map.of("key", "a"), "key"));
+        assertEquals("a", BulkRecords.firstValue(Map.of("key", new String[] {"a", "b"}), "key"));
+        assertNull(BulkRecords.firstValue(Map.of("key", new String[0]), "key"));
+        assertNull(BulkRecords.firstValue(Map.of(), "key"));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Provides code coverage for AuthorizableCache
+ */
+public class AuthorizableCacheTest {
+
+    private static final AuthorizableCache.Key USER1 =
+            new AuthorizableCache.Key("admin", "user1", "/home/users/u/user1");
+    private static final AuthorizableCache.Key USER1_ANONYMOUS =
+            new AuthorizableCache.Key("anonymous", "user1", "/home/users/u/user1");
+    private static final AuthorizableCache.Key USER2 =
+            new AuthorizableCache.Key("admin", "user2", "/home/users/u/user2");
+    private static final AuthorizableCache.Key GROUP1 =
+            new AuthorizableCache.Key("admin", "group1", "/home/groups/g/group1");
+
+    private AuthorizableCache<String> newCache() {
+        AuthorizableCache<String> cache = new AuthorizableCache<>(10, 1, TimeUnit.MINUTES);
+        cache.put(USER1, "value1");
+        cache.put(USER1_ANONYMOUS, "value1a");
+        cache.put(USER2, "value2");
+        cache.put(GROUP1, "value3");
+        return cache;
+    }
+
+    @Test
+    public void testRemoveId() {
+        AuthorizableCache<String> cache = newCache();
+        cache.removeId("user1");
+        assertNull(cache.get(USER1));
+        assertNull(cache.get(USER1_ANONYMOUS));
+        assertEquals("value2", cache.get(USER2));
+        assertEquals("value3", cache.get(GROUP1));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testRemoveChangedDescendantPath() {
+        AuthorizableCache<String> cache = newCache();
+        cache.removePath("/home/users/u/user1/profile/address");
+        assertNull(cache.get(USER1));
+        assertNull(cache.get(USER1_ANONYMOUS));
+        assertEquals("value2", cache.get(USER2));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testRemoveChangedAncestorPath() {
+        AuthorizableCache<String> cache = newCache();
+        cache.removePath("/home/users");
+        assertNull(cache.get(USER1));
+        assertNull(cache.get(USER2));
+        assertEquals("value3", cache.get(GROUP1));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testRemoveSiblingPrefix() {
+        AuthorizableCache<String> cache = newCache();
+        // a sibling that shares the name prefix is not a descendant
+        cache.removePath("/home/users/u/user");
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    public void testEvictedKeysAreUnindexed() {
+        AuthorizableCache<String> cache = new AuthorizableCache<>(1, 1, TimeUnit.MINUTES);
+        cache.put(USER1, "value1");
+        cache.put(USER2, "value2");
+        assertEquals(1, cache.size());
+        assertNull(cache.get(USER1));
+        // removing the evicted entry leaves the remaining one alone
+        cache.removeId("user1");
+        assertEquals("value2", cache.get(USER2));
+        cache.removePath("/home/users/u/user2");
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testDisabled() {
+        AuthorizableCache<String> cache = new AuthorizableCache<>(0, 1, TimeUnit.MINUTES);
+        assertFalse(cache.isEnabled());
+        cache.put(USER1, "value1");
+        assertNull(cache.get(USER1));
+    }
+}
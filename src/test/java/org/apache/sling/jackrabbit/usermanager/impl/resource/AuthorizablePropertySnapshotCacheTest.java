@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.jcr.ValueFactory;
+import javax.jcr.nodetype.NodeType;
+import javax.jcr.nodetype.PropertyDefinition;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.api.security.user.User;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests the sharing and invalidation of the AuthorizablePropertySnapshotCache
+ */
+public class AuthorizablePropertySnapshotCacheTest {
+
+    private User user;
+    private Node node;
+    private AuthorizablePropertySnapshotCache cache;
+
+    @Before
+    public void setup() throws RepositoryException {
+        user = Mockito.mock(User.class);
+        Mockito.when(user.getID()).thenReturn("user1");
+        Mockito.when(user.getPath()).thenReturn("/home/users/user1");
+
+        node = Mockito.mock(Node.class);
+        Mockito.when(node.getProperties()).thenAnswer(invocation -> {
+            PropertyIterator properties = Mockito.mock(PropertyIterator.class);
+            Mockito.when(properties.hasNext()).thenReturn(false);
+            return properties;
+        });
+
+        cache = new AuthorizablePropertySnapshotCache(10, 0, TimeUnit.SECONDS);
+    }
+
+    private Session mockSession(String userId) throws RepositoryException {
+        Session session = Mockito.mock(Session.class);
+        Mockito.when(session.getUserID()).thenReturn(userId);
+        Mockito.when(session.getNode("/home/users/user1")).thenReturn(node);
+        return session;
+    }
+
+    /**
+     * Let the node have a single valued property that is defined by rep:Authorizable
+     */
+    private void mockProperty(String name, Value value) throws RepositoryException {
+        NodeType nodeType = Mockito.mock(NodeType.class);
+        Mockito.when(nodeType.isNodeType("rep:Authorizable")).thenReturn(true);
+        PropertyDefinition definition = Mockito.mock(PropertyDefinition.class);
+        Mockito.when(definition.getDeclaringNodeType()).thenReturn(nodeType);
+        Property property = Mockito.mock(Property.class);
+        Mockito.when(property.getName()).thenReturn(name);
+        Mockito.when(property.getDefinition()).thenReturn(definition);
+        Mockito.when(property.getValue()).thenReturn(value);
+        Mockito.when(node.getProperties()).thenAnswer(invocation -> {
+            PropertyIterator properties = Mockito.mock(PropertyIterator.class);
+            Mockito.when(properties.hasNext()).thenReturn(true, false);
+            Mockito.when(properties.nextProperty()).thenReturn(property);
+            return properties;
+        });
+    }
+
+    private static Value mockValue(int type, String string) throws RepositoryException {
+        Value value = Mockito.mock(Value.class);
+        Mockito.when(value.getType()).thenReturn(type);
+        Mockito.when(value.getString()).thenReturn(string);
+        return value;
+    }
+
+    @Test
+    public void testSharedAcrossSessionsOfTheSameUser() throws RepositoryException {
+        Value value = mockValue(PropertyType.LONG, "42");
+        mockProperty("age", value);
+        Map<String, Value[]> snapshot = cache.read(mockSession("reader"), user);
+        assertNotNull(snapshot);
+        assertSame(value, snapshot.get("age")[0]);
+
+        // the other session gets the values of its own value factory
+        Session session = mockSession("reader");
+        ValueFactory valueFactory = Mockito.mock(ValueFactory.class);
+        Value copy = mockValue(PropertyType.LONG, "42");
+        Mockito.when(valueFactory.createValue("42", PropertyType.LONG)).thenReturn(copy);
+        Mockito.when(session.getValueFactory()).thenReturn(valueFactory);
+        assertSame(copy, cache.read(session, user).get("age")[0]);
+        verify(node, times(1)).getProperties();
+
+        // another user may see other properties
+        cache.read(mockSession("other"), user);
+        verify(node, times(2)).getProperties();
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testInvalidate() throws RepositoryException {
+        Session session = mockSession("reader");
+        cache.read(session, user);
+        cache.invalidate("user1");
+        cache.read(session, user);
+        verify(node, times(2)).getProperties();
+
+        cache.invalidatePath("/home/users");
+        assertEquals(0, cache.size());
+        cache.invalidatePath("/home/groups");
+        cache.read(session, user);
+        cache.invalidatePath("/home/groups");
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testNotRememberedWhenChangedWhileReading() throws RepositoryException {
+        Session session = mockSession("reader");
+        Mockito.when(node.getProperties()).thenAnswer(invocation -> {
+            cache.invalidatePath("/home/users/user1/profile");
+            PropertyIterator properties = Mockito.mock(PropertyIterator.class);
+            Mockito.when(properties.hasNext()).thenReturn(false);
+            return properties;
+        });
+        assertNotNull(cache.read(session, user));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testRememberedWhenOtherAuthorizableChangedWhileReading() throws RepositoryException {
+        Session session = mockSession("reader");
+        Mockito.when(node.getProperties()).thenAnswer(invocation -> {
+            cache.invalidatePath("/home/users/user2");
+            cache.invalidate("user2");
+            PropertyIterator properties = Mockito.mock(PropertyIterator.class);
+            Mockito.when(properties.hasNext()).thenReturn(false);
+            return properties;
+        });
+        assertNotNull(cache.read(session, user));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testBinariesAreNotShared() throws RepositoryException {
+        mockProperty("photo", mockValue(PropertyType.BINARY, "binary"));
+        Session session = mockSession("reader");
+        assertNotNull(cache.read(session, user).get("photo"));
+        assertEquals(0, cache.size());
+        cache.read(session, user);
+        verify(node, times(2)).getProperties();
+    }
+
+    @Test
+    public void testNotSharedWithPendingChanges() throws RepositoryException {
+        Session session = mockSession("reader");
+        Mockito.when(session.hasPendingChanges()).thenReturn(true);
+        cache.read(session, user);
+        cache.read(session, user);
+        verify(node, times(2)).getProperties();
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import javax.jcr.Node;
+import javax.jcr.PathNotFoundException;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.jcr.nodetype.NodeType;
+import javax.jcr.nodetype.PropertyDefinition;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jackrabbit.api.security.user.User;
+import org.apache.sling.jackrabbit.usermanager.resource.SystemUserManagerPaths;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests reading the properties of an authorizable with the AuthorizablePropertySnapshot
+ */
+public class AuthorizablePropertySnapshotTest {
+
+    private Session session;
+    private User user;
+
+    @Before
+    public void setup() throws RepositoryException {
+        user = Mockito.mock(User.class);
+        Mockito.when(user.getID()).thenReturn("user1");
+        Mockito.when(user.getPath()).thenReturn("/home/users/user1");
+        Mockito.when(user.memberOf()).thenAnswer(invocation -> Collections.emptyIterator());
+        Mockito.when(user.declaredMemberOf()).thenAnswer(invocation -> Collections.emptyIterator());
+
+        List<Property> properties = List.of(
+                mockProperty("jcr:primaryType", "rep:User", true, "nt:base"),
+                mockProperty("jcr:created", "2024-01-01T00:00:00.000Z", true, "mix:created"),
+                mockProperty("jcr:title", "Title", false, "mix:title"),
+                mockProperty("key1", "value1", false, "rep:Authorizable"));
+        Iterator<Property> iterator = properties.iterator();
+        PropertyIterator propertyIterator = Mockito.mock(PropertyIterator.class);
+        Mockito.when(propertyIterator.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        Mockito.when(propertyIterator.nextProperty()).thenAnswer(invocation -> iterator.next());
+
+        Node node = Mockito.mock(Node.class);
+        Mockito.when(node.getProperties()).thenReturn(propertyIterator);
+        session = Mockito.mock(Session.class);
+        Mockito.when(session.getNode("/home/users/user1")).thenReturn(node);
+    }
+
+    private Property mockProperty(String name, String value, boolean isProtected, String declaringNodeTypeName)
+            throws RepositoryException {
+        NodeType declaringNodeType = Mockito.mock(NodeType.class);
+        Mockito.when(declaringNodeType.isNodeType(Mockito.anyString()))
+                .thenAnswer(invocation -> declaringNodeTypeName.equals(invocation.getArgument(0)));
+        PropertyDefinition definition = Mockito.mock(PropertyDefinition.class);
+        Mockito.when(definition.isProtected()).thenReturn(isProtected);
+        Mockito.when(definition.getDeclaringNodeType()).thenReturn(declaringNodeType);
+
+        Value jcrValue = Mockito.mock(Value.class);
+        Mockito.when(jcrValue.getType()).thenReturn(PropertyType.STRING);
+        Mockito.when(jcrValue.getString()).thenReturn(value);
+
+        Property property = Mockito.mock(Property.class);
+        Mockito.when(property.getName()).thenReturn(name);
+        Mockito.when(property.getDefinition()).thenReturn(definition);
+        Mockito.when(property.getValue()).thenReturn(jcrValue);
+        return property;
+    }
+
+    @Test
+    public void testReadAuthorizableProperties() throws RepositoryException {
+        Map<String, Value[]> values = AuthorizablePropertySnapshot.read(session, user);
+        assertEquals(List.of("key1"), List.copyOf(values.keySet()));
+        assertEquals("value1", values.get("key1")[0].getString());
+    }
+
+    @Test
+    public void testReadWithoutAccessToTheNode() throws RepositoryException {
+        Mockito.when(session.getNode("/home/users/user1")).thenThrow(new PathNotFoundException());
+        assertNull(AuthorizablePropertySnapshot.read(session, user));
+    }
+
+    @Test
+    public void testValueMapReadsTheSnapshot() throws RepositoryException {
+        AuthorizableValueMap vm = new AuthorizableValueMap(
+                user, Mockito.mock(SystemUserManagerPaths.class), AuthorizableValueMapOptions.DEFAULTS, session);
+        assertTrue(vm.keySet().contains("key1"));
+        assertEquals("value1", vm.get("key1", String.class));
+        assertEquals("value1", vm.get("key1"));
+        verify(user, never()).getPropertyNames();
+        verify(user, never()).getProperty(anyString());
+        verify(user, never()).hasProperty(anyString());
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import javax.jcr.Value;
+import javax.jcr.ValueFactory;
+
+import org.apache.jackrabbit.api.security.user.QueryBuilder;
+import org.apache.jackrabbit.api.security.user.QueryBuilder.Direction;
+import org.apache.jackrabbit.api.security.user.User;
+import org.apache.jackrabbit.value.ValueFactoryImpl;
+import org.apache.sling.api.resource.QuerySyntaxException;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests the parsing of the AuthorizableQueryLanguageProvider query statements
+ */
+public class AuthorizableQueryLanguageProviderTest {
+
+    private final ValueFactory vf = ValueFactoryImpl.getInstance();
+
+    @Test
+    public void testToPropertyPath() {
+        assertEquals("@email", AuthorizableQueryLanguageProvider.toPropertyPath("@email"));
+        assertEquals("@email", AuthorizableQueryLanguageProvider.toPropertyPath("email"));
+        assertEquals("profile/@email", AuthorizableQueryLanguageProvider.toPropertyPath("@profile/email"));
+        assertEquals("profile/@email", AuthorizableQueryLanguageProvider.toPropertyPath("profile/@email"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testParseQuery() {
+        AuthorizableQuery query = AuthorizableQueryLanguageProvider.parseQuery(
+                "type=user&@profile/email~=%25%40example.org&@firstName=Tom&nameMatches=t%25"
+                        + "&memberOf=group1&sort=profile/familyName&order=desc&offset=5&limit=10",
+                AuthorizableQueryLanguageProvider.LANGUAGE, vf);
+        QueryBuilder<Object> builder = Mockito.mock(QueryBuilder.class);
+        Object condition = new Object();
+        Mockito.when(builder.like(any(), any())).thenReturn(condition);
+        Mockito.when(builder.eq(any(), any())).thenReturn(condition);
+        Mockito.when(builder.nameMatches(any())).thenReturn(condition);
+        Mockito.when(builder.and(any(), any())).thenReturn(condition);
+        query.build(builder);
+
+        verify(builder).setSelector(User.class);
+        verify(builder).like("profile/@email", "%@example.org");
+        verify(builder).eq(Mockito.eq("@firstName"), any(Value.class));
+        verify(builder).nameMatches("t%");
+        verify(builder).setScope("group1", false);
+        verify(builder).setSortOrder("profile/@familyName", Direction.DESCENDING);
+        verify(builder).setLimit(5, 10);
+        verify(builder).setCondition(condition);
+    }
+
+    @Test
+    public void testParseInvalidQuery() {
+        String language = AuthorizableQueryLanguageProvider.LANGUAGE;
+        assertThrows(
+                QuerySyntaxException.class,
+                () -> AuthorizableQueryLanguageProvider.parseQuery("type=other", language, vf));
+        assertThrows(
+                QuerySyntaxException.class,
+                () -> AuthorizableQueryLanguageProvider.parseQuery("limit=many", language, vf));
+        assertThrows(
+                QuerySyntaxException.class,
+                () -> AuthorizableQueryLanguageProvider.parseQuery("unknown=1", language, vf));
+        assertThrows(
+                QuerySyntaxException.class,
+                () -> AuthorizableQueryLanguageProvider.parseQuery("memberOf", language, vf));
+        assertThrows(
+                QuerySyntaxException.class, () -> AuthorizableQueryLanguageProvider.parseQuery("sort=@", language, vf));
+    }
+}
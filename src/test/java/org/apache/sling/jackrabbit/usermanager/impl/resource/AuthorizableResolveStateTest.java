@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import javax.jcr.RepositoryException;
+
+import java.security.Principal;
+import java.util.Collections;
+
+import org.apache.jackrabbit.api.security.principal.PrincipalManager;
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.jackrabbit.api.security.user.UserManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests the lookups remembered by the AuthorizableResolveState
+ */
+public class AuthorizableResolveStateTest {
+
+    private AuthorizableResolveState state;
+    private UserManager userManager;
+    private PrincipalManager principalManager;
+
+    @Before
+    public void setup() {
+        state = new AuthorizableResolveState();
+        userManager = Mockito.mock(UserManager.class);
+        principalManager = Mockito.mock(PrincipalManager.class);
+    }
+
+    @Test
+    public void testGetAuthorizableIsRemembered() throws RepositoryException {
+        Authorizable authorizable = Mockito.mock(Authorizable.class);
+        Mockito.when(userManager.getAuthorizable("user1")).thenReturn(authorizable);
+
+        assertSame(authorizable, state.getAuthorizable(userManager, "user1"));
+        assertSame(authorizable, state.getAuthorizable(userManager, "user1"));
+        verify(userManager, times(1)).getAuthorizable("user1");
+
+        // after clearing, the lookup is done again
+        state.clear();
+        assertSame(authorizable, state.getAuthorizable(userManager, "user1"));
+        verify(userManager, times(2)).getAuthorizable("user1");
+    }
+
+    @Test
+    public void testGetAuthorizableNotFound() throws RepositoryException {
+        assertNull(state.getAuthorizable(userManager, "missing"));
+        assertNull(state.getAuthorizable(userManager, "missing"));
+        verify(userManager, times(2)).getAuthorizable("missing");
+    }
+
+    @Test
+    public void testGetPrincipalIsRemembered() {
+        Principal principal = Mockito.mock(Principal.class);
+        Mockito.when(principalManager.getPrincipal("everyone")).thenReturn(principal);
+
+        assertSame(principal, state.getPrincipal(principalManager, "everyone"));
+        assertSame(principal, state.getPrincipal(principalManager, "everyone"));
+        verify(principalManager, times(1)).getPrincipal("everyone");
+    }
+
+    @Test
+    public void testChangedAuthorizableIsForgotten() throws RepositoryException {
+        Authorizable authorizable = Mockito.mock(Authorizable.class);
+        Mockito.when(userManager.getAuthorizable("user1")).thenReturn(authorizable);
+        Mockito.when(userManager.getAuthorizable("user2")).thenReturn(authorizable);
+        state.getAuthorizable(userManager, "user1");
+        state.getAuthorizable(userManager, "user2");
+
+        // the provider forgets the entry of the changed authorizable of each open resolver
+        AuthorizableResourceProvider provider = new AuthorizableResourceProvider();
+        AuthorizableResolveState providerState = provider.authenticate(Collections.emptyMap());
+        providerState.getAuthorizable(userManager, "user1");
+        state.forget("user1");
+        provider.onChange("user1");
+
+        state.getAuthorizable(userManager, "user1");
+        state.getAuthorizable(userManager, "user2");
+        providerState.getAuthorizable(userManager, "user1");
+        verify(userManager, times(4)).getAuthorizable("user1");
+        verify(userManager, times(1)).getAuthorizable("user2");
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import javax.jcr.RepositoryException;
+
+import java.security.Principal;
+import java.util.List;
+
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.principal.GroupPrincipal;
+import org.apache.jackrabbit.api.security.principal.ItemBasedPrincipal;
+import org.apache.jackrabbit.api.security.principal.PrincipalManager;
+import org.apache.jackrabbit.api.security.user.Group;
+import org.apache.jackrabbit.api.security.user.UserManager;
+import org.apache.jackrabbit.oak.spi.security.principal.PrincipalIteratorAdapter;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests the principals that are listed by the AuthorizableResourceProvider
+ * without being backed by an authorizable
+ */
+public class AuthorizableResourceProviderTest {
+
+    private AuthorizableResourceProvider provider;
+    private JackrabbitSession session;
+    private PrincipalManager principalManager;
+    private UserManager userManager;
+    private Principal itemBasedGroup;
+    private Principal externalGroup;
+    private Principal everyone;
+
+    @Before
+    public void setup() throws RepositoryException {
+        provider = new AuthorizableResourceProvider();
+        session = Mockito.mock(JackrabbitSession.class);
+        principalManager = Mockito.mock(PrincipalManager.class);
+        userManager = Mockito.mock(UserManager.class);
+        Mockito.when(session.getPrincipalManager()).thenReturn(principalManager);
+        Mockito.when(session.getUserManager()).thenReturn(userManager);
+
+        itemBasedGroup =
+                Mockito.mock(ItemBasedPrincipal.class, Mockito.withSettings().extraInterfaces(GroupPrincipal.class));
+        externalGroup = Mockito.mock(GroupPrincipal.class);
+        everyone = Mockito.mock(GroupPrincipal.class);
+        Mockito.when(principalManager.getEveryone()).thenReturn(everyone);
+        Mockito.when(principalManager.getPrincipals(PrincipalManager.SEARCH_TYPE_GROUP))
+                .thenAnswer(
+                        invocation -> new PrincipalIteratorAdapter(List.of(everyone, itemBasedGroup, externalGroup)));
+    }
+
+    @Test
+    public void testNonAuthorizablePrincipalsFromAllProviders() throws RepositoryException {
+        AuthorizableResourceProvider.Config config = Mockito.mock(AuthorizableResourceProvider.Config.class);
+        Mockito.when(config.provider_root()).thenReturn(AuthorizableResourceProvider.DEFAULT_SYSTEM_USER_MANAGER_PATH);
+        Mockito.when(config.non_authorizable_principals_listed()).thenReturn(true);
+        provider.activate(config);
+
+        assertEquals(List.of(everyone, externalGroup), provider.getNonAuthorizablePrincipals(session, Group.class));
+        // the principals of the authorizables are not looked up again
+        verify(userManager, never()).getAuthorizable(itemBasedGroup);
+    }
+
+    @Test
+    public void testOnlyEveryoneByDefault() throws RepositoryException {
+        assertEquals(List.of(everyone), provider.getNonAuthorizablePrincipals(session, Group.class));
+        verify(principalManager, never()).getPrincipals(Mockito.anyInt());
+        verify(userManager, never()).getAuthorizable(any(String.class));
+    }
+}
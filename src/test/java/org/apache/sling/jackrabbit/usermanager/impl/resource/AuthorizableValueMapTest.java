@@ -0,0 +1,320 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Value;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.user.Group;
+import org.apache.jackrabbit.api.security.user.User;
+import org.apache.sling.jackrabbit.usermanager.resource.SystemUserManagerPaths;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests the values computed by the AuthorizableValueMap
+ */
+public class AuthorizableValueMapTest {
+
+    private User user;
+    private SystemUserManagerPaths paths;
+
+    @Before
+    public void setup() throws RepositoryException {
+        Group group = Mockito.mock(Group.class);
+        Mockito.when(group.getID()).thenReturn("group1");
+
+        user = Mockito.mock(User.class);
+        Mockito.when(user.getID()).thenReturn("user1");
+        Mockito.when(user.getPath()).thenReturn("/home/users/user1");
+        Mockito.when(user.getPropertyNames()).thenReturn(Collections.emptyIterator());
+        Mockito.when(user.memberOf())
+                .thenAnswer(invocation -> Collections.singletonList(group).iterator());
+        Mockito.when(user.declaredMemberOf())
+                .thenAnswer(invocation -> Collections.singletonList(group).iterator());
+
+        paths = Mockito.mock(SystemUserManagerPaths.class);
+        Mockito.when(paths.getGroupPrefix()).thenReturn("/system/userManager/group/");
+        Mockito.when(paths.getUserPrefix()).thenReturn("/system/userManager/user/");
+    }
+
+    @Test
+    public void testMembershipIsComputedOnce() throws RepositoryException {
+        AuthorizableValueMap vm = new AuthorizableValueMap(user, paths);
+        String[] expected = new String[] {"/system/userManager/group/group1"};
+        assertArrayEquals(expected, (String[]) vm.get("memberOf"));
+        assertArrayEquals(expected, (String[]) vm.get("memberOf"));
+        assertArrayEquals(expected, vm.get("memberOf", String[].class));
+        assertEquals(expected[0], vm.get("memberOf", String.class));
+
+        // reading everything does not walk the memberships again
+        assertNotNull(vm.get("declaredMemberOf"));
+        assertTrue(vm.keySet().contains("memberOf"));
+        verify(user, times(1)).memberOf();
+        verify(user, times(1)).declaredMemberOf();
+    }
+
+    @Test
+    public void testComputedValueIsNotStoredProperty() throws RepositoryException {
+        AuthorizableValueMap vm = new AuthorizableValueMap(user, paths);
+        assertEquals("/home/users/user1", vm.get("path", String.class));
+        verify(user, times(0)).hasProperty("path");
+    }
+
+    @Test
+    public void testMembershipIsComputedLazily() throws RepositoryException {
+        AuthorizableValueMap vm = new AuthorizableValueMap(user, paths);
+        assertTrue(vm.keySet().contains("memberOf"));
+        assertTrue(vm.keySet().contains("declaredMemberOf"));
+        assertFalse(vm.keySet().contains("members"));
+        verify(user, times(0)).memberOf();
+        verify(user, times(0)).declaredMemberOf();
+
+        assertArrayEquals(new String[] {"/system/userManager/group/group1"}, (String[]) vm.get("memberOf"));
+        verify(user, times(1)).memberOf();
+        verify(user, times(0)).declaredMemberOf();
+
+        // consuming the entries computes the rest
+        for (Map.Entry<String, Object> entry : vm.entrySet()) {
+            assertFalse(entry.getValue() == null);
+        }
+        verify(user, times(1)).memberOf();
+        verify(user, times(1)).declaredMemberOf();
+    }
+
+    @Test
+    public void testFailedLazyValueIsLeftOut() throws RepositoryException {
+        Mockito.when(user.memberOf()).thenThrow(new RepositoryException("failed"));
+        Mockito.when(user.declaredMemberOf()).thenThrow(new RepositoryException("failed"));
+        AuthorizableValueMap vm = new AuthorizableValueMap(user, paths);
+        assertTrue(vm.containsKey("memberOf"));
+        assertNull(vm.get("memberOf"));
+        // not remembered as null, so it is computed again when asked for
+        assertNull(vm.get("memberOf"));
+        verify(user, times(2)).memberOf();
+
+        // the entries skip the value that could not be computed
+        for (Map.Entry<String, Object> entry : vm.entrySet()) {
+            assertNotNull(entry.getValue());
+            assertFalse("declaredMemberOf".equals(entry.getKey()));
+        }
+        assertFalse(vm.keySet().contains("declaredMemberOf"));
+        assertFalse(vm.values().contains(null));
+    }
+
+    @Test
+    public void testTransitiveMembershipExcludedFromFullRead() throws RepositoryException {
+        AuthorizableValueMap vm = new AuthorizableValueMap(user, paths, new AuthorizableValueMapOptions(false));
+        assertFalse(vm.keySet().contains("memberOf"));
+        assertTrue(vm.keySet().contains("declaredMemberOf"));
+        assertTrue(vm.toString().contains("declaredMemberOf"));
+        verify(user, times(0)).memberOf();
+
+        // still available when asked for by name
+        assertArrayEquals(new String[] {"/system/userManager/group/group1"}, (String[]) vm.get("memberOf"));
+        verify(user, times(1)).memberOf();
+    }
+
+    @Test
+    public void testContainsKeyForTransitiveMembershipAfterFullRead() throws RepositoryException {
+        AuthorizableValueMap vm = new AuthorizableValueMap(user, paths, new AuthorizableValueMapOptions(false));
+        assertTrue(vm.containsKey("memberOf"));
+        assertFalse(vm.keySet().contains("memberOf"));
+
+        // the answer does not change once the map was read fully
+        assertTrue(vm.containsKey("memberOf"));
+        assertFalse(vm.containsKey("members"));
+        assertFalse(vm.containsKey("missing"));
+        verify(user, never()).memberOf();
+        assertNotNull(vm.get("memberOf"));
+    }
+
+    @Test
+    public void testContainsKeyDoesNotReadValues() throws RepositoryException {
+        Mockito.when(user.hasProperty("photo")).thenReturn(true);
+        AuthorizableValueMap vm = new AuthorizableValueMap(user, paths);
+        assertTrue(vm.containsKey("photo"));
+        assertFalse(vm.containsKey("missing"));
+        assertTrue(vm.containsKey("memberOf"));
+        assertTrue(vm.containsKey("declaredMemberOf"));
+        assertTrue(vm.containsKey("path"));
+        assertFalse(vm.containsKey("members"));
+        assertFalse(vm.containsKey(1));
+        verify(user, never()).getProperty(anyString());
+        verify(user, never()).memberOf();
+        verify(user, never()).declaredMemberOf();
+        verify(user, never()).getPath();
+    }
+
+    @Test
+    public void testContainsKeyForGroupMembers() throws RepositoryException {
+        Group group = Mockito.mock(Group.class);
+        Mockito.when(group.isGroup()).thenReturn(true);
+        AuthorizableValueMap vm = new AuthorizableValueMap(group, paths);
+        assertTrue(vm.containsKey("members"));
+        assertTrue(vm.containsKey("declaredMembers"));
+        verify(group, never()).getMembers();
+        verify(group, never()).getDeclaredMembers();
+    }
+
+    @Test
+    public void testTypedReadsAreCached() throws RepositoryException {
+        Value value = Mockito.mock(Value.class);
+        Mockito.when(value.getType()).thenReturn(PropertyType.LONG);
+        Mockito.when(value.getLong()).thenReturn(42L);
+        Mockito.when(value.getString()).thenReturn("42");
+        Mockito.when(user.hasProperty("age")).thenReturn(true);
+        Mockito.when(user.getProperty("age")).thenReturn(new Value[] {value});
+
+        AuthorizableValueMap vm = new AuthorizableValueMap(user, paths);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Long.valueOf(42), vm.get("age", Long.class));
+            assertEquals("42", vm.get("age", String.class));
+            assertEquals("42", vm.get("age", "0"));
+            assertNull(vm.get("missing", String.class));
+        }
+        assertEquals(42L, vm.get("age"));
+        verify(user, times(1)).hasProperty("age");
+        verify(user, times(1)).getProperty("age");
+        verify(user, times(1)).hasProperty("missing");
+        verify(value, times(1)).getString();
+    }
+
+    @Test
+    public void testCachedConversionsAreCopied() throws RepositoryException {
+        Calendar created = Calendar.getInstance();
+        created.setTimeInMillis(0);
+        Value value = Mockito.mock(Value.class);
+        Mockito.when(value.getType()).thenReturn(PropertyType.DATE);
+        Mockito.when(value.getDate()).thenAnswer(invocation -> created.clone());
+        Mockito.when(user.hasProperty("created")).thenReturn(true);
+        Mockito.when(user.getProperty("created")).thenReturn(new Value[] {value});
+
+        AuthorizableValueMap vm = new AuthorizableValueMap(user, paths);
+        vm.get("created", Calendar.class).setTimeInMillis(1);
+        vm.get("created", Date.class).setTime(1);
+        vm.get("created", Calendar[].class)[0] = null;
+        vm.get("created", Calendar[].class)[0].setTimeInMillis(1);
+
+        assertEquals(created, vm.get("created", Calendar.class));
+        assertEquals(created.getTime(), vm.get("created", Date.class));
+        assertArrayEquals(new Calendar[] {created}, vm.get("created", Calendar[].class));
+        verify(user, times(1)).getProperty("created");
+    }
+
+    @Test
+    public void testProjection() throws RepositoryException {
+        Value value = Mockito.mock(Value.class);
+        Mockito.when(value.getType()).thenReturn(PropertyType.STRING);
+        Mockito.when(value.getString()).thenReturn("user1@example.com");
+        Mockito.when(user.hasProperty("email")).thenReturn(true);
+        Mockito.when(user.getProperty("email")).thenReturn(new Value[] {value});
+        Mockito.when(user.hasProperty("age")).thenReturn(true);
+
+        AuthorizableValueMap vm = new AuthorizableValueMap(
+                user, paths, new AuthorizableValueMapOptions(true, Set.of("email", "memberOf")));
+        assertEquals(Set.of("email", "memberOf"), vm.keySet());
+        assertEquals("user1@example.com", vm.get("email", String.class));
+        assertNull(vm.get("age"));
+        assertNull(vm.get("path", String.class));
+        assertFalse(vm.containsKey("age"));
+        assertFalse(vm.containsKey("declaredMemberOf"));
+        verify(user, never()).getPropertyNames();
+        verify(user, never()).getProperty("age");
+        verify(user, never()).declaredMemberOf();
+        verify(user, never()).getPath();
+    }
+
+    @Test
+    public void testMembershipsFromGraph() throws RepositoryException {
+        MembershipGraph graph = new MembershipGraph();
+        graph.updateGroup(
+                "group2", "/home/groups/group2", List.of(new MembershipGraph.Member("group1", "/home/groups/group1")));
+        graph.updateGroup(
+                "group1", "/home/groups/group1", List.of(new MembershipGraph.Member("user1", "/home/users/user1")));
+        graph.updateGroup(
+                "hidden", "/home/groups/hidden", List.of(new MembershipGraph.Member("user1", "/home/users/user1")));
+        graph.setReady(true);
+
+        JackrabbitSession session = Mockito.mock(JackrabbitSession.class);
+        Mockito.when(session.nodeExists("/home/groups/group1")).thenReturn(true);
+        Mockito.when(session.nodeExists("/home/groups/group2")).thenReturn(true);
+
+        AuthorizableValueMap vm = new AuthorizableValueMap(
+                user, paths, AuthorizableValueMapOptions.DEFAULTS.withMembershipGraph(graph), session);
+        // the hidden group is not visible to the session
+        assertArrayEquals(
+                new String[] {"/system/userManager/group/group1", "/system/userManager/group/group2"},
+                (String[]) vm.get("memberOf"));
+        verify(user, never()).memberOf();
+        verify(session, never()).getUserManager();
+
+        // the declared memberships are still read from the authorizable
+        assertArrayEquals(new String[] {"/system/userManager/group/group1"}, (String[]) vm.get("declaredMemberOf"));
+        verify(user, times(1)).declaredMemberOf();
+    }
+
+    @Test
+    public void testMembershipsThroughHiddenGroup() throws RepositoryException {
+        // user1 -> hidden -> group2, the session can see group2 but not the group in between
+        MembershipGraph graph = new MembershipGraph();
+        graph.updateGroup(
+                "group2", "/home/groups/group2", List.of(new MembershipGraph.Member("hidden", "/home/groups/hidden")));
+        graph.updateGroup(
+                "hidden", "/home/groups/hidden", List.of(new MembershipGraph.Member("user1", "/home/users/user1")));
+        graph.setReady(true);
+
+        JackrabbitSession session = Mockito.mock(JackrabbitSession.class);
+        Mockito.when(session.nodeExists("/home/users/user1")).thenReturn(true);
+        Mockito.when(session.nodeExists("/home/groups/group2")).thenReturn(true);
+
+        AuthorizableValueMap vm = new AuthorizableValueMap(
+                user, paths, AuthorizableValueMapOptions.DEFAULTS.withMembershipGraph(graph), session);
+        assertArrayEquals(new String[0], (String[]) vm.get("memberOf"));
+
+        Group group2 = Mockito.mock(Group.class);
+        Mockito.when(group2.getID()).thenReturn("group2");
+        Mockito.when(group2.isGroup()).thenReturn(true);
+        AuthorizableValueMap groupVm = new AuthorizableValueMap(
+                group2, paths, AuthorizableValueMapOptions.DEFAULTS.withMembershipGraph(graph), session);
+        assertArrayEquals(new String[0], (String[]) groupVm.get("members"));
+        verify(group2, never()).getMembers();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.sling.api.SlingJakartaHttpServletRequest;
+import org.apache.sling.api.SlingJakartaHttpServletResponse;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the JSON rendering of the AuthorizablesCountServlet
+ */
+public class AuthorizablesCountServletTest {
+
+    @Test
+    public void testRenderCount() throws IOException {
+        AuthorizablesResource resource = new AuthorizablesResource(
+                Mockito.mock(ResourceResolver.class),
+                "/system/userManager/user",
+                "sling/users",
+                () -> new AuthorizablesResource.Count(42, false));
+
+        SlingJakartaHttpServletRequest request = Mockito.mock(SlingJakartaHttpServletRequest.class);
+        Mockito.when(request.getResource()).thenReturn(resource);
+        SlingJakartaHttpServletResponse response = Mockito.mock(SlingJakartaHttpServletResponse.class);
+        StringWriter writer = new StringWriter();
+        Mockito.when(response.getWriter()).thenReturn(new PrintWriter(writer));
+
+        new AuthorizablesCountServlet().doGet(request, response);
+
+        assertEquals("{\"count\":42}", writer.toString());
+        Mockito.verify(response).setContentType("application/json");
+    }
+
+    @Test
+    public void testRenderEstimate() throws IOException {
+        AuthorizablesResource resource = new AuthorizablesResource(
+                Mockito.mock(ResourceResolver.class),
+                "/system/userManager/user",
+                "sling/users",
+                () -> new AuthorizablesResource.Count(10000, true));
+
+        SlingJakartaHttpServletRequest request = Mockito.mock(SlingJakartaHttpServletRequest.class);
+        Mockito.when(request.getResource()).thenReturn(resource);
+        SlingJakartaHttpServletResponse response = Mockito.mock(SlingJakartaHttpServletResponse.class);
+        StringWriter writer = new StringWriter();
+        Mockito.when(response.getWriter()).thenReturn(new PrintWriter(writer));
+
+        new AuthorizablesCountServlet().doGet(request, response);
+
+        assertEquals("{\"count\":10000,\"estimate\":true}", writer.toString());
+    }
+
+    @Test
+    public void testCountFailed() throws IOException {
+        AuthorizablesResource resource = new AuthorizablesResource(
+                Mockito.mock(ResourceResolver.class), "/system/userManager/group", "sling/groups", () -> null);
+
+        SlingJakartaHttpServletRequest request = Mockito.mock(SlingJakartaHttpServletRequest.class);
+        Mockito.when(request.getResource()).thenReturn(resource);
+        SlingJakartaHttpServletResponse response = Mockito.mock(SlingJakartaHttpServletResponse.class);
+
+        new AuthorizablesCountServlet().doGet(request, response);
+
+        Mockito.verify(response)
+                .sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Failed to count the authorizables");
+    }
+}
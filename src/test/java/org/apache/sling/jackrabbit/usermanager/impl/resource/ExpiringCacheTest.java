@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Provides code coverage for ExpiringCache
+ */
+public class ExpiringCacheTest {
+
+    @Test
+    public void testGetAndPut() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, 1, TimeUnit.MINUTES);
+        assertNull(cache.get("key1"));
+        cache.put("key1", "value1");
+        assertEquals("value1", cache.get("key1"));
+    }
+
+    @Test
+    public void testDisabled() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(0, 1, TimeUnit.MINUTES);
+        assertFalse(cache.isEnabled());
+        cache.put("key1", "value1");
+        assertNull(cache.get("key1"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(2, 1, TimeUnit.MINUTES);
+        cache.put("key1", "value1");
+        cache.put("key2", "value2");
+        // touch key1 so key2 is the eldest
+        cache.get("key1");
+        cache.put("key3", "value3");
+        assertEquals(2, cache.size());
+        assertEquals("value1", cache.get("key1"));
+        assertNull(cache.get("key2"));
+        assertEquals("value3", cache.get("key3"));
+    }
+
+    @Test
+    public void testExpired() throws InterruptedException {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, 1, TimeUnit.MILLISECONDS);
+        cache.put("key1", "value1");
+        Thread.sleep(5);
+        assertNull(cache.get("key1"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testRemove() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, 1, TimeUnit.MINUTES);
+        cache.put("key1", "value1");
+        cache.put("key2", "value2");
+        cache.put("other", "value3");
+        cache.remove("key1");
+        assertNull(cache.get("key1"));
+        cache.removeIf(key -> key.startsWith("key"));
+        assertNull(cache.get("key2"));
+        assertEquals("value3", cache.get("other"));
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testSegmentedSize() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(1000, 1, TimeUnit.MINUTES);
+        for (int i = 0; i < 5000; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        assertTrue(cache.size() <= 1000);
+        assertEquals("value4999", cache.get("key4999"));
+        cache.removeIf(key -> key.equals("key4999"));
+        assertNull(cache.get("key4999"));
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testRemovedKeysAreReported() throws InterruptedException {
+        Set<String> removed = new HashSet<>();
+        ExpiringCache<String, String> cache = new ExpiringCache<>(2, 1, TimeUnit.MINUTES, removed::add);
+        cache.put("key1", "value1");
+        cache.put("key2", "value2");
+        cache.put("key3", "value3");
+        assertEquals(Set.of("key1"), removed);
+
+        cache.remove("key2");
+        cache.remove("missing");
+        assertEquals(Set.of("key1", "key2"), removed);
+
+        cache.put("key4", "value4");
+        cache.removeIf(key -> key.equals("key4"));
+        cache.clear();
+        assertEquals(Set.of("key1", "key2", "key3", "key4"), removed);
+
+        ExpiringCache<String, String> expiring = new ExpiringCache<>(10, 1, TimeUnit.MILLISECONDS, removed::remove);
+        expiring.put("key1", "value1");
+        Thread.sleep(5);
+        assertNull(expiring.get("key1"));
+        assertFalse(removed.contains("key1"));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.jackrabbit.api.security.user.Group;
+import org.apache.jackrabbit.api.security.user.QueryBuilder;
+import org.apache.jackrabbit.api.security.user.UserManager;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.jackrabbit.usermanager.resource.SystemUserManagerPaths;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests the paging of the members listed by the GroupMembersResource
+ */
+public class GroupMembersResourceTest {
+
+    private Group group;
+    private Iterator<Authorizable> members;
+    private SystemUserManagerPaths paths;
+    private GroupMembersResource resource;
+
+    @Before
+    public void setup() throws RepositoryException {
+        List<Authorizable> list = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Authorizable member = Mockito.mock(Authorizable.class);
+            Mockito.when(member.getID()).thenReturn("member" + i);
+            Mockito.when(member.isGroup()).thenReturn(i % 2 == 1);
+            list.add(member);
+        }
+        members = Mockito.spy(list.iterator());
+
+        group = Mockito.mock(Group.class);
+        Mockito.when(group.getMembers()).thenReturn(members);
+        Mockito.when(group.getDeclaredMembers()).thenReturn(members);
+
+        paths = Mockito.mock(SystemUserManagerPaths.class);
+        Mockito.when(paths.getGroupPrefix()).thenReturn("/system/userManager/group/");
+        Mockito.when(paths.getUserPrefix()).thenReturn("/system/userManager/user/");
+
+        resource = new GroupMembersResource(
+                group, Mockito.mock(ResourceResolver.class), "/system/userManager/group/group1/members", paths);
+    }
+
+    @Test
+    public void testListAllMembers() throws RepositoryException {
+        List<String> ids = listIds(resource.listMembers(false, -1, -1));
+        assertEquals(10, ids.size());
+        assertEquals("member0", ids.get(0));
+        verify(group, times(1)).getMembers();
+    }
+
+    @Test
+    public void testListPage() throws RepositoryException {
+        assertEquals(List.of("member3", "member4"), listIds(resource.listMembers(true, 3, 2)));
+        verify(group, times(1)).getDeclaredMembers();
+        // the members after the page are not read
+        verify(members, times(5)).next();
+    }
+
+    @Test
+    public void testListPageAfterTheEnd() throws RepositoryException {
+        assertFalse(resource.listMembers(false, 20, 5).hasNext());
+    }
+
+    @Test
+    public void testMemberReference() throws RepositoryException {
+        Iterator<Resource> children = resource.listMembers(false, 1, 1);
+        Resource child = children.next();
+        assertEquals("/system/userManager/group/group1/members/member1", child.getPath());
+        assertEquals(GroupMemberResource.RESOURCE_TYPE, child.getResourceType());
+        ValueMap vm = child.adaptTo(ValueMap.class);
+        assertEquals("member1", vm.get(GroupMemberResource.PROPERTY_ID, String.class));
+        assertEquals(
+                "/system/userManager/group/member1", vm.get(GroupMemberResource.PROPERTY_RESOURCE_PATH, String.class));
+        assertSame(group, resource.adaptTo(Group.class));
+        assertFalse(children.hasNext());
+    }
+
+    @Test
+    public void testListPageWithQuery() throws RepositoryException {
+        Mockito.when(group.getID()).thenReturn("group1");
+        Mockito.when(group.getPrincipal()).thenReturn(() -> "group1");
+        Authorizable member = Mockito.mock(Authorizable.class);
+        Mockito.when(member.getID()).thenReturn("member3");
+        UserManager userManager = Mockito.mock(UserManager.class);
+        ArgumentCaptor<AuthorizableQuery> query = ArgumentCaptor.forClass(AuthorizableQuery.class);
+        Mockito.when(userManager.findAuthorizables(query.capture()))
+                .thenReturn(List.of(member).iterator());
+        JackrabbitSession session = Mockito.mock(JackrabbitSession.class);
+        Mockito.when(session.getUserManager()).thenReturn(userManager);
+        ResourceResolver resolver = Mockito.mock(ResourceResolver.class);
+        Mockito.when(resolver.adaptTo(Session.class)).thenReturn(session);
+        resource = new GroupMembersResource(group, resolver, "/system/userManager/group/group1/members", paths);
+
+        assertEquals(List.of("member3"), listIds(resource.listMembers(true, 3, 2)));
+        verify(group, never()).getDeclaredMembers();
+        // the scope and the page are passed to the repository
+        @SuppressWarnings("unchecked")
+        QueryBuilder<Object> builder = Mockito.mock(QueryBuilder.class);
+        query.getValue().build(builder);
+        verify(builder).setScope("group1", true);
+        verify(builder).setLimit(3, 2);
+    }
+
+    private List<String> listIds(Iterator<Resource> children) {
+        List<String> ids = new ArrayList<>();
+        while (children.hasNext()) {
+            ids.add(((GroupMemberResource) children.next()).getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+
+import org.apache.sling.api.SlingJakartaHttpServletRequest;
+import org.apache.sling.api.SlingJakartaHttpServletResponse;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the JSON rendering of the GroupMembersServlet
+ */
+public class GroupMembersServletTest {
+
+    @Test
+    public void testRenderMembers() throws IOException {
+        ResourceResolver resourceResolver = Mockito.mock(ResourceResolver.class);
+        List<Resource> children = List.of(
+                new GroupMemberResource(
+                        null,
+                        "user1",
+                        "/system/userManager/user/user1",
+                        resourceResolver,
+                        "/system/userManager/group/group1/members/user1"),
+                new GroupMemberResource(
+                        null,
+                        "group2",
+                        "/system/userManager/group/group2",
+                        resourceResolver,
+                        "/system/userManager/group/group1/members/group2"));
+        Resource resource = Mockito.mock(Resource.class);
+        Mockito.when(resource.listChildren()).thenReturn(children.iterator());
+
+        SlingJakartaHttpServletRequest request = Mockito.mock(SlingJakartaHttpServletRequest.class);
+        Mockito.when(request.getResource()).thenReturn(resource);
+        SlingJakartaHttpServletResponse response = Mockito.mock(SlingJakartaHttpServletResponse.class);
+        StringWriter writer = new StringWriter();
+        Mockito.when(response.getWriter()).thenReturn(new PrintWriter(writer));
+
+        new GroupMembersServlet().doGet(request, response);
+
+        assertEquals(
+                "{\"members\":["
+                        + "{\"id\":\"user1\",\"resourcePath\":\"/system/userManager/user/user1\"},"
+                        + "{\"id\":\"group2\",\"resourcePath\":\"/system/userManager/group/group2\"}"
+                        + "]}",
+                writer.toString());
+        Mockito.verify(response).setContentType("application/json");
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import javax.jcr.RepositoryException;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.user.Query;
+import org.apache.jackrabbit.api.security.user.UserManager;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.jackrabbit.usermanager.impl.resource.MembershipGraph.Member;
+import org.apache.sling.jcr.api.SlingRepository;
+import org.apache.sling.serviceusermapping.ServiceUserMapped;
+import org.apache.sling.testing.mock.osgi.junit.OsgiContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests the transitive questions answered by the MembershipGraph
+ */
+public class MembershipGraphTest {
+
+    private static final Predicate<String> ALL = path -> true;
+
+    @Rule
+    public final OsgiContext context = new OsgiContext();
+
+    private MembershipGraph graph;
+
+    @Before
+    public void setup() {
+        graph = new MembershipGraph();
+        // user1 -> group1 -> group2 -> group3 -> group1 (cycle)
+        graph.updateGroup("group1", "/home/groups/group1", List.of(new Member("user1", "/home/users/user1")));
+        graph.updateGroup("group2", "/home/groups/group2", List.of(new Member("group1", "/home/groups/group1")));
+        graph.updateGroup("group3", "/home/groups/group3", List.of(new Member("group2", "/home/groups/group2")));
+        graph.updateGroup(
+                "group1",
+                "/home/groups/group1",
+                List.of(new Member("user1", "/home/users/user1"), new Member("group3", "/home/groups/group3")));
+        graph.setReady(true);
+    }
+
+    @Test
+    public void testNotReady() {
+        graph.setReady(false);
+        assertNull(graph.getMemberOf("user1", ALL));
+        assertNull(graph.getMembers("group1", ALL));
+        assertNull(graph.isMember("group1", "user1", ALL));
+    }
+
+    @Test
+    public void testTransitiveQuestions() {
+        assertEquals(Set.of("group1", "group2", "group3"), graph.getMemberOf("user1", ALL));
+        assertEquals(Set.of("group2", "group3"), graph.getMemberOf("group1", ALL));
+        assertEquals(Set.of("user1", "group1", "group2"), graph.getMembers("group3", ALL));
+        assertTrue(graph.isMember("group3", "user1", ALL));
+        assertFalse(graph.isMember("group3", "user2", ALL));
+        // unknown groups are not answered
+        assertNull(graph.getMembers("user1", ALL));
+        assertNull(graph.isMember("group4", "user1", ALL));
+    }
+
+    @Test
+    public void testUpdates() {
+        // group2 no longer contains group1
+        graph.updateGroup("group2", "/home/groups/group2", List.of());
+        assertEquals(Set.of("group1"), graph.getMemberOf("user1", ALL));
+        assertFalse(graph.isMember("group3", "user1", ALL));
+
+        // removing the user removes it from its groups
+        graph.removePath("/home/users/user1");
+        assertEquals(Set.of(), graph.getMemberOf("user1", ALL));
+        assertEquals(Set.of("group3", "group2"), graph.getMembers("group1", ALL));
+
+        // removing a group removes its members
+        graph.removePath("/home/groups/group1");
+        assertNull(graph.getMembers("group1", ALL));
+        assertEquals(Set.of("group2"), graph.getMembers("group3", ALL));
+    }
+
+    @Test
+    public void testHiddenIntermediateGroup() {
+        // group2 can not be seen, so group3 is only reachable through group1 -> group3
+        Predicate<String> visible = path -> !path.equals("/home/groups/group2");
+        graph.updateGroup("group1", "/home/groups/group1", List.of(new Member("user1", "/home/users/user1")));
+        assertEquals(Set.of("group1"), graph.getMemberOf("user1", visible));
+        assertEquals(Set.of(), graph.getMembers("group3", visible));
+        assertFalse(graph.isMember("group3", "user1", visible));
+
+        // still reachable when all the groups can be seen
+        assertEquals(Set.of("group1", "group2", "group3"), graph.getMemberOf("user1", ALL));
+        assertTrue(graph.isMember("group3", "user1", ALL));
+    }
+
+    @Test
+    public void testRemoveTree() {
+        graph.updateGroup("group4", "/home/groups/group1-other", List.of(new Member("user2", "/home/users/user2")));
+        graph.removeTree("/home/groups/group1");
+        assertNull(graph.getMembers("group1", ALL));
+        // a sibling that only shares the name prefix is kept
+        assertEquals(Set.of("user2"), graph.getMembers("group4", ALL));
+
+        graph.removeTree("/home/users");
+        assertEquals(Set.of(), graph.getMembers("group4", ALL));
+        assertEquals(Set.of(), graph.getMemberOf("user2", ALL));
+        assertTrue(graph.isGroup("group4"));
+        assertFalse(graph.isGroup("user2"));
+    }
+
+    /**
+     * Activate a graph whose initial build waits for the latch, so the changes
+     * that arrive meanwhile are pending
+     */
+    private MembershipGraph activateBlocked(UserManager userManager, CountDownLatch latch, int maxPending)
+            throws RepositoryException {
+        Mockito.when(userManager.findAuthorizables(ArgumentMatchers.any(Query.class)))
+                .thenAnswer(invocation -> {
+                    latch.await(5, TimeUnit.SECONDS);
+                    return Collections.emptyIterator();
+                });
+        JackrabbitSession session = Mockito.mock(JackrabbitSession.class);
+        Mockito.when(session.getUserManager()).thenReturn(userManager);
+        SlingRepository repository = Mockito.mock(SlingRepository.class);
+        Mockito.when(repository.loginService(null, null)).thenReturn(session);
+        context.registerService(SlingRepository.class, repository);
+        context.registerService(ServiceUserMapped.class, Mockito.mock(ServiceUserMapped.class));
+        return context.registerInjectActivateService(
+                MembershipGraph.class, "enabled", true, "max.pending.changes", maxPending);
+    }
+
+    @Test
+    public void testChangesAreCoalesced() throws RepositoryException {
+        UserManager userManager = Mockito.mock(UserManager.class);
+        CountDownLatch latch = new CountDownLatch(1);
+        MembershipGraph activated = activateBlocked(userManager, latch, 10);
+        activated.onChange("group1");
+        activated.onChange("group1");
+        activated.onChange("group1");
+        latch.countDown();
+
+        // applied after the pending changes
+        activated.onChange("group2");
+        verify(userManager, timeout(5000)).getAuthorizable("group2");
+        verify(userManager, times(1)).getAuthorizable("group1");
+        assertTrue(activated.isReady());
+    }
+
+    @Test
+    public void testTooManyChangesRebuild() throws RepositoryException {
+        UserManager userManager = Mockito.mock(UserManager.class);
+        CountDownLatch latch = new CountDownLatch(1);
+        MembershipGraph activated = activateBlocked(userManager, latch, 2);
+        activated.onRepositoryChange(List.of(
+                new ResourceChange(ChangeType.CHANGED, "/home/groups/group1", false),
+                new ResourceChange(ChangeType.CHANGED, "/home/groups/group2", false),
+                new ResourceChange(ChangeType.REMOVED, "/home/groups/group3", false)));
+        latch.countDown();
+
+        // the changes were dropped and everything was read again
+        verify(userManager, timeout(5000).times(2)).findAuthorizables(ArgumentMatchers.any(Query.class));
+        // waits for the applied changes
+        activated.deactivate();
+        verify(userManager, never()).getAuthorizableByPath(ArgumentMatchers.anyString());
+        verify(userManager, never()).getAuthorizable(ArgumentMatchers.anyString());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Value;
+
+import org.apache.jackrabbit.api.security.user.User;
+import org.apache.sling.jackrabbit.usermanager.resource.SystemUserManagerPaths;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests the NestedAuthorizableValueMap
+ */
+public class NestedAuthorizableValueMapTest {
+
+    private User user;
+    private SystemUserManagerPaths paths;
+
+    @Before
+    public void setup() throws RepositoryException {
+        user = Mockito.mock(User.class);
+        Mockito.when(user.getID()).thenReturn("user1");
+        Mockito.when(user.hasProperty("private/key2")).thenReturn(true);
+
+        paths = Mockito.mock(SystemUserManagerPaths.class);
+    }
+
+    @Test
+    public void testContainsKeyDoesNotReadValues() throws RepositoryException {
+        NestedAuthorizableValueMap vm = new NestedAuthorizableValueMap(user, paths, "private");
+        assertTrue(vm.containsKey("key2"));
+        assertFalse(vm.containsKey("key1"));
+        // the membership values are not provided by the nested properties
+        assertFalse(vm.containsKey("memberOf"));
+        verify(user, never()).getProperty(anyString());
+        verify(user, never()).memberOf();
+    }
+
+    @Test
+    public void testPropertyIsReadOnce() throws RepositoryException {
+        Value value = Mockito.mock(Value.class);
+        Mockito.when(value.getType()).thenReturn(PropertyType.STRING);
+        Mockito.when(value.getString()).thenReturn("value2");
+        Mockito.when(user.getProperty("private/key2")).thenReturn(new Value[] {value});
+
+        NestedAuthorizableValueMap vm = new NestedAuthorizableValueMap(user, paths, "private");
+        assertEquals("private/key2", vm.toRelPropKey("key2"));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("value2", vm.get("key2"));
+            assertEquals("value2", vm.get("key2", String.class));
+        }
+        verify(user, times(1)).hasProperty("private/key2");
+        verify(user, times(1)).getProperty("private/key2");
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jackrabbit.usermanager.impl.resource;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the NestedPropertyIndex read from the home folder of an authorizable
+ */
+public class NestedPropertyIndexTest {
+    @Rule
+    public final SlingContext context = new SlingContext(ResourceResolverType.JCR_MOCK);
+
+    private Session session;
+    private Authorizable authorizable;
+
+    @Before
+    public void before() throws RepositoryException {
+        session = context.resourceResolver().adaptTo(Session.class);
+        Node home = session.getRootNode().addNode("home").addNode("users").addNode("test");
+        Node profile = home.addNode("profile");
+        profile.setProperty("email", "test@example.org");
+        Node inner = profile.addNode("inner");
+        inner.addNode("deep").setProperty("key", "value");
+        home.addNode("empty");
+        home.addNode("private").setProperty("key", "value");
+
+        // the properties of the node are the authorizable properties
+        authorizable = Mockito.mock(Authorizable.class);
+        Mockito.when(authorizable.getPath()).thenReturn(home.getPath());
+        Mockito.when(authorizable.getPropertyNames(ArgumentMatchers.anyString()))
+                .thenAnswer(invocation -> {
+                    List<String> names = new ArrayList<>();
+                    PropertyIterator properties = home.getNode(invocation.getArgument(0, String.class))
+                            .getProperties();
+                    while (properties.hasNext()) {
+                        Property property = properties.nextProperty();
+                        if (!property.getName().startsWith("jcr:")) {
+                            names.add(property.getName());
+                        }
+                    }
+                    return names.iterator();
+                });
+    }
+
+    @Test
+    public void testIsContainer() throws RepositoryException {
+        NestedPropertyIndex index = new NestedPropertyIndex();
+        assertTrue(index.isContainer(session, authorizable, "profile"));
+        assertTrue(index.isContainer(session, authorizable, "profile/inner/deep"));
+        assertTrue(index.isContainer(session, authorizable, "private"));
+        assertFalse(index.isContainer(session, authorizable, "profile/inner"));
+        assertFalse(index.isContainer(session, authorizable, "empty"));
+        assertFalse(index.isContainer(session, authorizable, "missing"));
+    }
+
+    @Test
+    public void testGetChildContainerNames() throws RepositoryException {
+        NestedPropertyIndex index = new NestedPropertyIndex();
+        assertEquals(Arrays.asList("profile", "private"), index.getChildContainerNames(session, authorizable, null));
+        assertEquals(Collections.emptyList(), index.getChildContainerNames(session, authorizable, "profile"));
+        assertEquals(
+                Collections.singletonList("deep"),
+                index.getChildContainerNames(session, authorizable, "profile/inner"));
+        assertEquals(Collections.emptyList(), index.getChildContainerNames(session, authorizable, "missing"));
+    }
+
+    @Test
+    public void testMissingHomeFolder() throws RepositoryException {
+        Mockito.when(authorizable.getPath()).thenReturn("/home/users/missing");
+        NestedPropertyIndex index = new NestedPropertyIndex();
+        assertFalse(index.isContainer(session, authorizable, "profile"));
+        assertEquals(Collections.emptyList(), index.getChildContainerNames(session, authorizable, null));
+    }
+
+    @Test
+    public void testUnreadableContainerIsSkipped() throws RepositoryException {
+        Mockito.doThrow(new RepositoryException("denied")).when(authorizable).getPropertyNames("private");
+        NestedPropertyIndex index = new NestedPropertyIndex();
+        assertFalse(index.isContainer(session, authorizable, "private"));
+        assertEquals(Collections.singletonList("profile"), index.getChildContainerNames(session, authorizable, null));
+    }
+
+    @Test
+    public void testOnlyListedLevelsAreRead() throws RepositoryException {
+        NestedPropertyIndex index = new NestedPropertyIndex();
+        index.getChildContainerNames(session, authorizable, null);
+        Mockito.verify(authorizable).getPropertyNames("profile");
+        Mockito.verify(authorizable, Mockito.never()).getPropertyNames("profile/inner");
+
+        // a level is only read once
+        index.isContainer(session, authorizable, "profile");
+        Mockito.verify(authorizable).getPropertyNames("profile");
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.jackrabbit.usermanager.it;
+
+import javax.inject.Inject;
+import javax.jcr.AccessDeniedException;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.jackrabbit.api.security.user.Group;
+import org.apache.jackrabbit.api.security.user.User;
+import org.apache.jackrabbit.api.security.user.UserManager;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.jackrabbit.usermanager.BulkOperationResult;
+import org.apache.sling.jackrabbit.usermanager.CreateGroup;
+import org.apache.sling.jackrabbit.usermanager.CreateUser;
+import org.apache.sling.jackrabbit.usermanager.DeleteAuthorizables;
+import org.apache.sling.jcr.api.SlingRepository;
+import org.apache.sling.jcr.resource.api.JcrResourceConstants;
+import org.apache.sling.servlets.post.Modification;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import org.junit.runner.RunWith;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the bulk operations of the user manager services
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerClass.class)
+public class BulkOperationsIT extends UserManagerTestSupport {
+    private static AtomicLong counter = new AtomicLong(0);
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Inject
+    protected SlingRepository repository;
+
+    @Inject
+    private CreateUser createUser;
+
+    @Inject
+    private CreateGroup createGroup;
+
+    @Inject
+    private DeleteAuthorizables deleteAuthorizables;
+
+    @Inject
+    private ResourceResolverFactory resourceResolverFactory;
+
+    @Rule
+    public TestName testName = new TestName();
+
+    protected Session adminSession;
+
+    /**
+     * The ids of the users and groups to remove after the test
+     */
+    protected List<String> authorizableIds = new ArrayList<>();
+
+    @Before
+    public void setup() throws RepositoryException {
+        adminSession = repository.login(new SimpleCredentials("admin", "admin".toCharArray()));
+        assertNotNull("Expected adminSession to not be null", adminSession);
+    }
+
+    @After
+    public void teardown() {
+        try {
+            adminSession.refresh(false);
+            UserManager userManager = ((JackrabbitSession) adminSession).getUserManager();
+            for (String id : authorizableIds) {
+                Authorizable authorizable = userManager.getAuthorizable(id);
+                if (authorizable != null) {
+                    authorizable.remove();
+                }
+            }
+            if (adminSession.hasPendingChanges()) {
+                adminSession.save();
+            }
+        } catch (RepositoryException e) {
+            logger.warn(String.format("Failed to delete authorizable: %s", e.getMessage()), e);
+        }
+
+        adminSession.logout();
+    }
+
+    protected String createUniqueName(String prefix) {
+        return String.format("%s_%s%d", prefix, testName.getMethodName(), counter.incrementAndGet());
+    }
+
+    private Map<String, Object> userRecord(String name, String pwd, String pwdConfirm) {
+        authorizableIds.add(name);
+        Map<String, Object> record = new HashMap<>();
+        record.put(":name", name);
+        record.put("pwd", pwd);
+        record.put("pwdConfirm", pwdConfirm);
+        record.put("marker", name);
+        return record;
+    }
+
+    /**
+     * Test that a bad record only fails itself, whether it fails before
+     * or after changes were made for it
+     */
+    @Test
+    public void createUsers() throws RepositoryException {
+        List<Map<String, Object>> records = new ArrayList<>();
+        String name1 = createUniqueName("user");
+        records.add(userRecord(name1, "testPwd", "testPwd"));
+        // wrong password confirmation
+        records.add(userRecord(createUniqueName("user"), "testPwd", "other"));
+        String name3 = createUniqueName("user");
+        records.add(userRecord(name3, "testPwd", "testPwd"));
+        // the user already exists
+        Map<String, Object> duplicate = new HashMap<>(records.get(0));
+        records.add(duplicate);
+        String name5 = createUniqueName("user");
+        records.add(userRecord(name5, "testPwd", "testPwd"));
+        // the property name is not valid, so the user fails after it was created
+        String name6 = createUniqueName("user");
+        Map<String, Object> invalid = userRecord(name6, "testPwd", "testPwd");
+        invalid.put("invalid[name", "value");
+        records.add(invalid);
+        String name7 = createUniqueName("user");
+        records.add(userRecord(name7, "testPwd", "testPwd"));
+
+        List<BulkOperationResult> results = new ArrayList<>();
+        List<Modification> changes = new ArrayList<>();
+        createUser.createUsers(adminSession, records.iterator(), 2, results::add, changes);
+        assertFalse(adminSession.hasPendingChanges());
+
+        Map<Long, BulkOperationResult> byIndex = new HashMap<>();
+        for (BulkOperationResult result : results) {
+            byIndex.put(result.index(), result);
+        }
+        assertEquals(7, byIndex.size());
+        assertTrue(byIndex.get(0L).isSuccessful());
+        assertFalse(byIndex.get(1L).isSuccessful());
+        assertTrue(byIndex.get(2L).isSuccessful());
+        assertFalse(byIndex.get(3L).isSuccessful());
+        assertTrue(byIndex.get(4L).isSuccessful());
+        assertFalse(byIndex.get(5L).isSuccessful());
+        assertTrue(byIndex.get(6L).isSuccessful());
+
+        UserManager userManager = ((JackrabbitSession) adminSession).getUserManager();
+        for (String name : List.of(name1, name3, name5, name7)) {
+            Authorizable user = userManager.getAuthorizable(name);
+            assertNotNull("Expected user to be created: " + name, user);
+            assertEquals(name, user.getProperty("marker")[0].getString());
+        }
+        assertNull(userManager.getAuthorizable(name6));
+        assertTrue(changes.stream().anyMatch(c -> c.getSource().endsWith("/" + name7)));
+    }
+
+    /**
+     * Test that self-registration does not apply to the bulk creation
+     */
+    @Test
+    public void createUsersNotAllowed() throws RepositoryException {
+        String name = createUniqueName("user");
+        authorizableIds.add(name);
+        User user = createUser.createUser(
+                adminSession, name, "testPwd", "testPwd", Collections.emptyMap(), new ArrayList<>());
+        assertNotNull(user);
+        Session userSession = repository.login(new SimpleCredentials(name, "testPwd".toCharArray()));
+        try {
+            List<Map<String, Object>> records = List.of(userRecord(createUniqueName("user"), "testPwd", "testPwd"));
+            assertThrows(
+                    AccessDeniedException.class,
+                    () -> createUser.createUsers(userSession, records.iterator(), 10, result -> {}, new ArrayList<>()));
+        } finally {
+            userSession.logout();
+        }
+    }
+
+    private Map<String, Object> groupRecord(String name, String... members) {
+        authorizableIds.add(name);
+        Map<String, Object> record = new HashMap<>();
+        record.put(":name", name);
+        record.put("marker", name);
+        record.put(":member", members);
+        return record;
+    }
+
+    /**
+     * Test that the members are added after all the groups were created, so
+     * a group can be a member of a group of an earlier record
+     */
+    @Test
+    public void createGroups() throws RepositoryException {
+        String userName = createUniqueName("user");
+        authorizableIds.add(userName);
+        createUser.createUser(adminSession, userName, "testPwd", "testPwd", Collections.emptyMap(), new ArrayList<>());
+        adminSession.save();
+
+        String name1 = createUniqueName("group");
+        String name2 = createUniqueName("group");
+        String name3 = createUniqueName("group");
+        String name4 = createUniqueName("group");
+        List<Map<String, Object>> records = new ArrayList<>();
+        // the member group is created by a later record
+        records.add(groupRecord(name1, name2, userName));
+        records.add(groupRecord(name2, name3));
+        // the group already exists
+        records.add(groupRecord(name1));
+        records.add(groupRecord(name3, userName));
+        records.add(groupRecord(name4));
+
+        List<BulkOperationResult> results = new ArrayList<>();
+        List<Modification> changes = new ArrayList<>();
+        createGroup.createGroups(adminSession, records.iterator(), 2, results::add, changes);
+        assertFalse(adminSession.hasPendingChanges());
+
+        UserManager userManager = ((JackrabbitSession) adminSession).getUserManager();
+        Group group1 = (Group) userManager.getAuthorizable(name1);
+        Group group2 = (Group) userManager.getAuthorizable(name2);
+        Group group3 = (Group) userManager.getAuthorizable(name3);
+        Authorizable user = userManager.getAuthorizable(userName);
+        assertEquals(name1, group1.getProperty("marker")[0].getString());
+        assertTrue(group1.isDeclaredMember(group2));
+        assertTrue(group1.isDeclaredMember(user));
+        assertTrue(group2.isDeclaredMember(group3));
+        assertTrue(group3.isDeclaredMember(user));
+        assertTrue(group1.isMember(group3));
+        assertFalse(((Group) userManager.getAuthorizable(name4))
+                .getDeclaredMembers()
+                .hasNext());
+        assertTrue(changes.stream().anyMatch(c -> c.getSource().endsWith("/" + name2 + "/members")));
+
+        // each record is reported once since all the members could be added
+        assertEquals(5, results.size());
+        Map<Long, BulkOperationResult> byIndex = new HashMap<>();
+        for (BulkOperationResult result : results) {
+            byIndex.put(result.index(), result);
+        }
+        assertTrue(byIndex.get(0L).isSuccessful());
+        assertTrue(byIndex.get(1L).isSuccessful());
+        assertFalse(byIndex.get(2L).isSuccessful());
+        assertTrue(byIndex.get(3L).isSuccessful());
+        assertTrue(byIndex.get(4L).isSuccessful());
+    }
+
+    /**
+     * Test that the removals are saved in chunks and that a target
+     * that does not exist only fails itself
+     */
+    @Test
+    public void deleteAuthorizables() throws RepositoryException, LoginException {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String name = createUniqueName("user");
+            authorizableIds.add(name);
+            createUser.createUser(adminSession, name, "testPwd", "testPwd", Collections.emptyMap(), new ArrayList<>());
+            paths.add("user/" + name);
+        }
+        String groupName = createUniqueName("group");
+        authorizableIds.add(groupName);
+        createGroup.createGroup(adminSession, groupName, Collections.emptyMap(), new ArrayList<>());
+        adminSession.save();
+        paths.add(2, "user/" + createUniqueName("missing"));
+        paths.add("group/" + groupName);
+
+        List<BulkOperationResult> results = new ArrayList<>();
+        List<Modification> changes = new ArrayList<>();
+        try (ResourceResolver resourceResolver = resourceResolverFactory.getResourceResolver(
+                Collections.singletonMap(JcrResourceConstants.AUTHENTICATION_INFO_SESSION, adminSession))) {
+            Resource baseResource = resourceResolver.getResource("/system/userManager");
+            deleteAuthorizables.deleteAuthorizables(
+                    adminSession, baseResource, paths.toArray(new String[0]), 2, results::add, changes);
+        }
+        assertFalse(adminSession.hasPendingChanges());
+
+        assertEquals(7, results.size());
+        for (BulkOperationResult result : results) {
+            assertEquals(result.toString(), result.index() != 2, result.isSuccessful());
+        }
+        UserManager userManager = ((JackrabbitSession) adminSession).getUserManager();
+        for (String id : authorizableIds) {
+            assertNull(userManager.getAuthorizable(id));
+        }
+        assertEquals(6, changes.size());
+    }
+}
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import jakarta.json.JsonArray;
 import jakarta.json.JsonException;
 import jakarta.json.JsonObject;
 import jakarta.servlet.http.HttpServletResponse;
@@ -590,4 +591,30 @@ public class CreateGroupIT extends UserManagerClientTestSupport {
                 creds, getUrl, HttpServletResponse.SC_NOT_FOUND, null); // make sure the profile request returns no data
         testGroupId = null;
     }
+
+    /**
+     * Test creating many groups with one request, where a member is a group
+     * of a later record
+     */
+    @Test
+    public void testCreateGroupsInBulk() throws IOException, JsonException {
+        testGroupId = "testGroup" + getNextInt();
+        testGroupId2 = "testGroup" + getNextInt();
+        String body = String.format(
+                ":name,marker,:member%n%1$s,%1$s,%2$s%n%2$s,%2$s,%n%1$s,duplicate,%n", testGroupId, testGroupId2);
+        String postUrl = String.format("%s/system/userManager/group.create.bulk.json", baseServerUri);
+        Credentials creds = new UsernamePasswordCredentials("admin", "admin");
+        String json = getAuthenticatedPostBodyContent(creds, postUrl, "text/csv", body, HttpServletResponse.SC_OK);
+        JsonObject jsonObj = parseJson(json);
+        assertEquals(2, jsonObj.getInt("succeeded"));
+        assertEquals(1, jsonObj.getInt("failed"));
+
+        String getUrl = String.format("%s/system/userManager/group/%s.json", baseServerUri, testGroupId);
+        JsonObject group =
+                parseJson(getAuthenticatedContent(creds, getUrl, CONTENT_TYPE_JSON, HttpServletResponse.SC_OK));
+        assertEquals(testGroupId, group.getString("marker"));
+        JsonArray members = group.getJsonArray("members");
+        assertEquals(1, members.size());
+        assertEquals("/system/userManager/group/" + testGroupId2, members.getString(0));
+    }
 }
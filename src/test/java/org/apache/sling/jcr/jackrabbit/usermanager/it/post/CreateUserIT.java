@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import jakarta.json.JsonArray;
 import jakarta.json.JsonException;
 import jakarta.json.JsonObject;
 import jakarta.servlet.http.HttpServletResponse;
@@ -714,4 +715,64 @@ public class CreateUserIT extends UserManagerClientTestSupport {
                 creds, getUrl, HttpServletResponse.SC_NOT_FOUND, null); // make sure the profile request returns no data
         testUserId = null;
     }
+
+    /**
+     * Test creating many users with one request from JSON lines
+     */
+    @Test
+    public void testCreateUsersInBulk() throws IOException, JsonException {
+        testUserId = "testUser" + getNextInt();
+        testUserId2 = "testUser" + getNextInt();
+        String body = String.format(
+                "{\":name\":\"%1$s\",\"pwd\":\"testPwd\",\"pwdConfirm\":\"testPwd\",\"marker\":\"%1$s\"}%n"
+                        + "{\":name\":\"%2$s\",\"pwd\":\"testPwd\",\"pwdConfirm\":\"wrong\"}%n"
+                        + "{\":name\":\"%2$s\",\"pwd\":\"testPwd\",\"pwdConfirm\":\"testPwd\"}%n",
+                testUserId, testUserId2);
+        String postUrl = String.format("%s/system/userManager/user.create.bulk.json", baseServerUri);
+        Credentials creds = new UsernamePasswordCredentials("admin", "admin");
+        String json = getAuthenticatedPostBodyContent(
+                creds, postUrl, "application/x-ndjson", body, HttpServletResponse.SC_OK);
+        JsonObject jsonObj = parseJson(json);
+        assertEquals(2, jsonObj.getInt("succeeded"));
+        assertEquals(1, jsonObj.getInt("failed"));
+        JsonArray results = jsonObj.getJsonArray("results");
+        assertEquals(3, results.size());
+        assertTrue(results.getJsonObject(1).containsKey("error"));
+
+        String getUrl = String.format("%s/system/userManager/user/%s.json", baseServerUri, testUserId);
+        JsonObject user =
+                parseJson(getAuthenticatedContent(creds, getUrl, CONTENT_TYPE_JSON, HttpServletResponse.SC_OK));
+        assertEquals(testUserId, user.getString("marker"));
+        assertFalse(user.containsKey("pwd"));
+    }
+
+    /**
+     * Test creating many users with one request from CSV
+     */
+    @Test
+    public void testCreateUsersInBulkFromCsv() throws IOException, JsonException {
+        testUserId = "testUser" + getNextInt();
+        String body = String.format(":name,pwd,pwdConfirm,marker%n%1$s,testPwd,testPwd,\"%1$s\"%n", testUserId);
+        String postUrl = String.format("%s/system/userManager/user.create.bulk.json", baseServerUri);
+        Credentials creds = new UsernamePasswordCredentials("admin", "admin");
+        String json = getAuthenticatedPostBodyContent(creds, postUrl, "text/csv", body, HttpServletResponse.SC_OK);
+        assertEquals(1, parseJson(json).getInt("succeeded"));
+
+        String getUrl = String.format("%s/system/userManager/user/%s.json", baseServerUri, testUserId);
+        JsonObject user =
+                parseJson(getAuthenticatedContent(creds, getUrl, CONTENT_TYPE_JSON, HttpServletResponse.SC_OK));
+        assertEquals(testUserId, user.getString("marker"));
+    }
+
+    /**
+     * Test that self-registration does not apply to the bulk creation
+     */
+    @Test
+    public void testCreateUsersInBulkNotAuthorized() throws IOException {
+        testUserId2 = createTestUser();
+        String body = String.format("{\":name\":\"testUser%d\",\"pwd\":\"a\",\"pwdConfirm\":\"a\"}", getNextInt());
+        String postUrl = String.format("%s/system/userManager/user.create.bulk.json", baseServerUri);
+        Credentials creds = new UsernamePasswordCredentials(testUserId2, "testPwd");
+        getAuthenticatedPostBodyContent(creds, postUrl, "application/x-ndjson", body, HttpServletResponse.SC_FORBIDDEN);
+    }
 }
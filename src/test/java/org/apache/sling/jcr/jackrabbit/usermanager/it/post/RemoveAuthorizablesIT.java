@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import jakarta.json.JsonArray;
 import jakarta.json.JsonException;
 import jakarta.json.JsonObject;
 import jakarta.servlet.http.HttpServletResponse;
@@ -328,4 +329,39 @@ public class RemoveAuthorizablesIT extends UserManagerClientTestSupport {
     public void testRemoveAuthorizableInvalidRedirectWithInvalidURI() throws IOException, JsonException {
         testRemoveAuthorizablesRedirect("https://", SC_UNPROCESSABLE_ENTITY);
     }
+
+    /**
+     * Test removing users and groups with a chunked request, where one of
+     * the targets does not exist
+     */
+    @Test
+    public void testRemoveAuthorizablesInChunks() throws IOException, JsonException {
+        String userId = createTestUser();
+        String groupId = createTestGroup();
+
+        Credentials creds = new UsernamePasswordCredentials("admin", "admin");
+
+        String postUrl = String.format("%s/system/userManager.delete.bulk.json", baseServerUri);
+        List<NameValuePair> postParams = new ArrayList<>();
+        postParams.add(new BasicNameValuePair(":applyTo", "group/" + groupId));
+        postParams.add(new BasicNameValuePair(":applyTo", "user/notExisting" + getNextInt()));
+        postParams.add(new BasicNameValuePair(":applyTo", "user/" + userId));
+        String json =
+                getAuthenticatedPostContent(creds, postUrl, CONTENT_TYPE_JSON, postParams, HttpServletResponse.SC_OK);
+        JsonObject jsonObj = parseJson(json);
+        assertEquals(2, jsonObj.getInt("succeeded"));
+        assertEquals(1, jsonObj.getInt("failed"));
+        JsonArray results = jsonObj.getJsonArray("results");
+        assertEquals(3, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            JsonObject result = results.getJsonObject(i);
+            // only the target that does not exist has failed
+            assertEquals(result.getInt("index") == 1, result.containsKey("error"));
+        }
+
+        String getUrl = String.format("%s/system/userManager/user/%s.json", baseServerUri, userId);
+        assertAuthenticatedHttpStatus(creds, getUrl, HttpServletResponse.SC_NOT_FOUND, null);
+        getUrl = String.format("%s/system/userManager/group/%s.json", baseServerUri, groupId);
+        assertAuthenticatedHttpStatus(creds, getUrl, HttpServletResponse.SC_NOT_FOUND, null);
+    }
 }
@@ -38,6 +38,7 @@ import org.ops4j.pax.exam.spi.reactors.PerClass;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests for the 'updateAuthorizable' Sling Post Operation on
@@ -221,6 +222,80 @@ public class UpdateGroupIT extends UserManagerClientTestSupport {
         assertEquals(0, memberships.size());
     }
 
+    /**
+     * Test updating the members with a mix of ids, which are applied in one
+     * call, and resource paths, which are resolved one at a time
+     */
+    @Test
+    public void testUpdateGroupMembersByIdAndPath() throws IOException, JsonException {
+        testGroupId = createTestGroup();
+        testUserId = createTestUser();
+        testUserId2 = createTestUser();
+
+        Credentials creds = new UsernamePasswordCredentials("admin", "admin");
+        String postUrl = String.format("%s/system/userManager/group/%s.update.html", baseServerUri, testGroupId);
+
+        List<NameValuePair> postParams = new ArrayList<>();
+        postParams.add(new BasicNameValuePair(":member", testUserId));
+        postParams.add(new BasicNameValuePair(":member", "/system/userManager/user/" + testUserId2));
+        postParams.add(new BasicNameValuePair(":member", ""));
+        assertAuthenticatedPostStatus(creds, postUrl, HttpServletResponse.SC_OK, postParams, null);
+
+        JsonArray members = getTestGroupMembers(creds);
+        assertEquals(2, members.size());
+        List<String> memberPaths = List.of(members.getString(0), members.getString(1));
+        assertTrue(memberPaths.contains("/system/userManager/user/" + testUserId));
+        assertTrue(memberPaths.contains("/system/userManager/user/" + testUserId2));
+
+        // remove one member by id and the other one by path
+        postParams.clear();
+        postParams.add(new BasicNameValuePair(":member@Delete", testUserId2));
+        postParams.add(new BasicNameValuePair(":member@Delete", "/system/userManager/user/" + testUserId));
+        assertAuthenticatedPostStatus(creds, postUrl, HttpServletResponse.SC_OK, postParams, null);
+
+        members = getTestGroupMembers(creds);
+        assertEquals(0, members.size());
+    }
+
+    /**
+     * Test replacing the declared members with the complete set of members
+     */
+    @Test
+    public void testUpdateGroupMemberSet() throws IOException, JsonException {
+        testGroupId = createTestGroup();
+        testUserId = createTestUser();
+        testUserId2 = createTestUser();
+
+        Credentials creds = new UsernamePasswordCredentials("admin", "admin");
+        String postUrl = String.format("%s/system/userManager/group/%s.update.html", baseServerUri, testGroupId);
+
+        List<NameValuePair> postParams = new ArrayList<>();
+        postParams.add(new BasicNameValuePair(":member", testUserId));
+        assertAuthenticatedPostStatus(creds, postUrl, HttpServletResponse.SC_OK, postParams, null);
+
+        // the first member is removed and the second one is added
+        postParams.clear();
+        postParams.add(new BasicNameValuePair(":memberSet", testUserId2));
+        assertAuthenticatedPostStatus(creds, postUrl, HttpServletResponse.SC_OK, postParams, null);
+        JsonArray members = getTestGroupMembers(creds);
+        assertEquals(1, members.size());
+        assertEquals("/system/userManager/user/" + testUserId2, members.getString(0));
+
+        // nothing changes when the set is the same
+        postParams.clear();
+        postParams.add(new BasicNameValuePair(":memberSet", "/system/userManager/user/" + testUserId2));
+        assertAuthenticatedPostStatus(creds, postUrl, HttpServletResponse.SC_OK, postParams, null);
+        members = getTestGroupMembers(creds);
+        assertEquals(1, members.size());
+
+        // an empty set removes all the members
+        postParams.clear();
+        postParams.add(new BasicNameValuePair(":memberSet", ""));
+        assertAuthenticatedPostStatus(creds, postUrl, HttpServletResponse.SC_OK, postParams, null);
+        members = getTestGroupMembers(creds);
+        assertEquals(0, members.size());
+    }
+
     JsonArray getTestUserMemberships(Credentials creds) throws IOException, JsonException {
         String getUrl = String.format("%s/system/userManager/user/%s.json", baseServerUri, testUserId);
         assertAuthenticatedHttpStatus(
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -54,6 +55,8 @@ import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.impl.client.BasicAuthCache;
 import org.apache.http.impl.client.BasicCookieStore;
@@ -448,6 +451,18 @@ public abstract class UserManagerClientTestSupport extends UserManagerTestSuppor
         });
     }
 
+    protected String getAuthenticatedPostBodyContent(
+            Credentials creds, String url, String contentType, String body, int expectedStatusCode) throws IOException {
+        return (String) doAuthenticatedWork(creds, () -> {
+            HttpPost postRequest = new HttpPost(url);
+            postRequest.setEntity(new StringEntity(body, ContentType.create(contentType, StandardCharsets.UTF_8)));
+            try (CloseableHttpResponse response = httpClient.execute(postRequest, httpContext)) {
+                verifyHttpStatus(response, null, expectedStatusCode);
+                return EntityUtils.toString(response.getEntity());
+            }
+        });
+    }
+
     protected String createTestUser() throws IOException {
         String postUrl = String.format("%s/system/userManager/user.create.html", baseServerUri);
 
@@ -24,8 +24,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Dictionary;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.jackrabbit.api.security.user.Authorizable;
 import org.apache.jackrabbit.api.security.user.Group;
@@ -34,8 +37,13 @@ import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.jackrabbit.usermanager.impl.resource.AuthorizableQueryLanguageProvider;
 import org.apache.sling.jackrabbit.usermanager.impl.resource.AuthorizableResourceProvider;
+import org.apache.sling.jackrabbit.usermanager.impl.resource.AuthorizablesResource;
+import org.apache.sling.jackrabbit.usermanager.impl.resource.GroupMemberResource;
+import org.apache.sling.jackrabbit.usermanager.impl.resource.GroupMembersResource;
 import org.apache.sling.jackrabbit.usermanager.resource.SystemUserManagerPaths;
+import org.apache.sling.jcr.jackrabbit.usermanager.it.Retry;
 import org.apache.sling.jcr.resource.api.JcrResourceConstants;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -45,9 +53,11 @@ import org.junit.runner.RunWith;
 import org.ops4j.pax.exam.junit.PaxExam;
 import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
 import org.ops4j.pax.exam.spi.reactors.PerClass;
+import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -267,6 +277,48 @@ public class AuthorizableResourceProviderIT extends BaseAuthorizableResourcesIT
         }
     }
 
+    /**
+     * Test paged iteration of the usermanager users resource children
+     */
+    @Test
+    public void listUsersChildrenPaged() throws LoginException, RepositoryException, IOException {
+        try (ResourceResolver resourceResolver = resourceResolverFactory.getResourceResolver(
+                Collections.singletonMap(JcrResourceConstants.AUTHENTICATION_INFO_SESSION, adminSession))) {
+            Resource resource = resourceResolver.resolve("/system/userManager/user;offset=1;limit=2");
+            assertTrue(
+                    "Expected resource type of sling/users for: " + resource.getPath(),
+                    resource.isResourceType("sling/users"));
+
+            int count = 0;
+            for (Resource child : resource.getChildren()) {
+                assertTrue(child.isResourceType("sling/user"));
+                count++;
+            }
+            assertEquals(2, count);
+        }
+    }
+
+    /**
+     * Test paged iteration of the usermanager groups resource children
+     */
+    @Test
+    public void listGroupsChildrenPaged() throws LoginException, RepositoryException, IOException {
+        try (ResourceResolver resourceResolver = resourceResolverFactory.getResourceResolver(
+                Collections.singletonMap(JcrResourceConstants.AUTHENTICATION_INFO_SESSION, adminSession))) {
+            Resource resource = resourceResolver.resolve("/system/userManager/group;limit=1");
+            assertTrue(
+                    "Expected resource type of sling/groups for: " + resource.getPath(),
+                    resource.isResourceType("sling/groups"));
+
+            int count = 0;
+            for (Resource child : resource.getChildren()) {
+                assertTrue(child.isResourceType("sling/group"));
+                count++;
+            }
+            assertEquals(1, count);
+        }
+    }
+
     @Test
     public void adaptResourceToMap() throws LoginException, RepositoryException {
         createResourcesForAdaptTo();
@@ -391,4 +443,371 @@ public class AuthorizableResourceProviderIT extends BaseAuthorizableResourcesIT
             assertNull(userResource);
         }
     }
+
+    /**
+     * Test that an unknown id that was looked up before is found
+     * after a user or group with that id is created
+     */
+    @Test
+    public void getResourceAfterCreate() throws LoginException, RepositoryException {
+        String userId = createUniqueName("user");
+        String groupId = createUniqueName("group");
+        try (ResourceResolver resourceResolver = resourceResolverFactory.getResourceResolver(
+                Collections.singletonMap(JcrResourceConstants.AUTHENTICATION_INFO_SESSION, adminSession))) {
+            assertNull(resourceResolver.getResource(userManagerPaths.getUserPrefix() + userId));
+            assertNull(resourceResolver.getResource(userManagerPaths.getGroupPrefix() + groupId));
+        }
+
+        createUser.createUser(adminSession, userId, "testPwd", "testPwd", Collections.emptyMap(), new ArrayList<>());
+        createGroup.createGroup(adminSession, groupId, Collections.emptyMap(), new ArrayList<>());
+        if (adminSession.hasPendingChanges()) {
+            adminSession.save();
+        }
+
+        try (ResourceResolver resourceResolver = resourceResolverFactory.getResourceResolver(
+                Collections.singletonMap(JcrResourceConstants.AUTHENTICATION_INFO_SESSION, adminSession))) {
+            assertNotNull(resourceResolver.getResource(userManagerPaths.getUserPrefix() + userId));
+            assertNotNull(resourceResolver.getResource(userManagerPaths.getGroupPrefix() + groupId));
+        } finally {
+            deleteUser.deleteUser(adminSession, userId, new ArrayList<>());
+            deleteGroup.deleteGroup(adminSession, groupId, new ArrayList<>());
+            if (adminSession.hasPendingChanges()) {
+                adminSession.save();
+            }
+        }
+    }
+
+    /**
+     * Test finding users and groups with the usermanager query language
+     */
+    @Test
+    public void findResources() throws LoginException, RepositoryException {
+        try (ResourceResolver resourceResolver = resourceResolverFactory.getResourceResolver(
+                Collections.singletonMap(JcrResourceConstants.AUTHENTICATION_INFO_SESSION, adminSession))) {
+            Iterator<Resource> resources = resourceResolver.findResources(
+                    "type=user&nameMatches=" + user1.getID(), AuthorizableQueryLanguageProvider.LANGUAGE);
+            assertTrue(resources.hasNext());
+            Resource resource = resources.next();
+            assertEquals(userManagerPaths.getUserPrefix() + user1.getID(), resource.getPath());
+            assertTrue(resource.isResourceType("sling/user"));
+            assertFalse(resources.hasNext());
+
+            // a group is not a user
+            resources = resourceResolver.findResources(
+                    "type=user&nameMatches=" + group1.getID(), AuthorizableQueryLanguageProvider.LANGUAGE);
+            assertFalse(resources.hasNext());
+
+            resources = resourceResolver.findResources(
+                    "type=group&@rep:principalName=" + group1.getID(), AuthorizableQueryLanguageProvider.LANGUAGE);
+            assertTrue(resources.hasNext());
+            assertEquals(
+                    userManagerPaths.getGroupPrefix() + group1.getID(),
+                    resources.next().getPath());
+            assertFalse(resources.hasNext());
+
+            // paging of the results
+            resources = resourceResolver.findResources(
+                    "nameMatches=%25&sort=rep:principalName&limit=1", AuthorizableQueryLanguageProvider.LANGUAGE);
+            assertTrue(resources.hasNext());
+            resources.next();
+            assertFalse(resources.hasNext());
+
+            Iterator<Map<String, Object>> rows = resourceResolver.queryResources(
+                    "type=user&nameMatches=" + user1.getID(), AuthorizableQueryLanguageProvider.LANGUAGE);
+            assertTrue(rows.hasNext());
+            assertNotNull(rows.next());
+        }
+    }
+
+    /**
+     * Test that the listed children adapt to the authorizable the listing query found
+     */
+    @Test
+    public void adaptListedChildren() throws LoginException, RepositoryException {
+        try (ResourceResolver resourceResolver = resourceResolverFactory.getResourceResolver(
+                Collections.singletonMap(JcrResourceConstants.AUTHENTICATION_INFO_SESSION, adminSession))) {
+            Resource users = resourceResolver.resolve(userManagerPaths.getUsersPath());
+            Resource userResource = findChild(users, user1.getID());
+            assertNotNull(userResource);
+            assertTrue(userResource.isResourceType("sling/user"));
+            User user = userResource.adaptTo(User.class);
+            assertNotNull(user);
+            assertEquals(user1.getID(), user.getID());
+            assertNull(userResource.adaptTo(Group.class));
+            assertNotNull(userResource.adaptTo(ValueMap.class));
+
+            Resource groups = resourceResolver.resolve(userManagerPaths.getGroupsPath());
+            Resource groupResource = findChild(groups, group1.getID());
+            assertNotNull(groupResource);
+            assertTrue(groupResource.isResourceType("sling/group"));
+            Group group = groupResource.adaptTo(Group.class);
+            assertNotNull(group);
+            assertEquals(group1.getID(), group.getID());
+            assertNull(groupResource.adaptTo(User.class));
+            assertNotNull(groupResource.adaptTo(Authorizable.class));
+        }
+    }
+
+    /**
+     * Test the number of children of the users and groups resources
+     */
+    @Test
+    public void countChildren() throws LoginException, RepositoryException {
+        try (ResourceResolver resourceResolver = resourceResolverFactory.getResourceResolver(
+                Collections.singletonMap(JcrResourceConstants.AUTHENTICATION_INFO_SESSION, adminSession))) {
+            for (String path : new String[] {userManagerPaths.getUsersPath(), userManagerPaths.getGroupsPath()}) {
+                Resource resource = resourceResolver.resolve(path);
+                long expected = 0;
+                for (Iterator<Resource> children = resource.listChildren(); children.hasNext(); children.next()) {
+                    expected++;
+                }
+                assertTrue(expected > 0);
+                assertTrue(resource instanceof AuthorizablesResource);
+                assertEquals(
+                        new AuthorizablesResource.Count(expected, false),
+                        ((AuthorizablesResource) resource).getCount());
+                // rendering the properties does not count the children
+                assertNull(resource.getValueMap().get("count"));
+            }
+        }
+    }
+
+    /**
+     * Test sorting the usermanager users resource children
+     */
+    @Test
+    public void listUsersChildrenSorted() throws LoginException, RepositoryException {
+        try (ResourceResolver resourceResolver = resourceResolverFactory.getResourceResolver(
+                Collections.singletonMap(JcrResourceConstants.AUTHENTICATION_INFO_SESSION, adminSession))) {
+            List<String> ascending =
+                    listChildNames(resourceResolver.resolve("/system/userManager/user;sort='rep:authorizableId'"));
+            List<String> descending = listChildNames(
+                    resourceResolver.resolve("/system/userManager/user;sort='rep:authorizableId';order=desc"));
+            assertTrue(ascending.size() > 1);
+            List<String> expected = new ArrayList<>(ascending);
+            Collections.sort(expected);
+            assertEquals(expected, ascending);
+            Collections.reverse(expected);
+            assertEquals(expected, descending);
+
+            // the top of the sorted list
+            assertEquals(
+                    descending.subList(0, 1),
+                    listChildNames(resourceResolver.resolve(
+                            "/system/userManager/user;sort='rep:authorizableId';order=desc;limit=1")));
+        }
+    }
+
+    /**
+     * Test paged iteration of the members of a group
+     */
+    @Test
+    public void listGroupMembersPaged() throws LoginException, RepositoryException {
+        String subGroupId = createUniqueName("group");
+        String subUserId = createUniqueName("user");
+        Group subGroup = null;
+        User subUser = null;
+        try {
+            createResourcesForAdaptTo();
+            subUser = createUser.createUser(
+                    adminSession, subUserId, "testPwd", "testPwd", Collections.emptyMap(), new ArrayList<>());
+            subGroup = createGroup.createGroup(adminSession, subGroupId, Collections.emptyMap(), new ArrayList<>());
+            subGroup.addMember(subUser);
+            group1.addMember(user1);
+            group1.addMember(subGroup);
+            adminSession.save();
+
+            try (ResourceResolver resourceResolver = resourceResolverFactory.getResourceResolver(
+                    Collections.singletonMap(JcrResourceConstants.AUTHENTICATION_INFO_SESSION, adminSession))) {
+                String membersPath = userManagerPaths.getGroupPrefix() + group1.getID() + "/members";
+                Resource members = resourceResolver.resolve(membersPath);
+                assertTrue(members.isResourceType(GroupMembersResource.RESOURCE_TYPE));
+
+                List<String> all = listChildNames(members);
+                assertEquals(3, all.size());
+                assertTrue(all.containsAll(List.of(user1.getID(), subGroupId, subUserId)));
+
+                List<String> declared = listChildNames(resourceResolver.resolve(membersPath + ";declared=true"));
+                assertEquals(2, declared.size());
+                assertFalse(declared.contains(subUserId));
+
+                List<String> page = listChildNames(resourceResolver.resolve(membersPath + ";offset=1;limit=1"));
+                assertEquals(all.subList(1, 2), page);
+
+                // each member reference resolves to the member
+                Resource member = resourceResolver.getResource(membersPath + "/" + subUserId);
+                assertNotNull(member);
+                ValueMap vm = member.getValueMap();
+                assertEquals(subUserId, vm.get(GroupMemberResource.PROPERTY_ID, String.class));
+                assertEquals(
+                        userManagerPaths.getUserPrefix() + subUserId,
+                        vm.get(GroupMemberResource.PROPERTY_RESOURCE_PATH, String.class));
+                assertNull(resourceResolver.getResource(membersPath + "/" + group1.getID()));
+
+                // the members resource is only provided for groups
+                assertNull(resourceResolver.getResource(userManagerPaths.getUserPrefix() + user1.getID() + "/members"));
+            }
+        } finally {
+            adminSession.refresh(false);
+            if (subUser != null) {
+                deleteUser.deleteUser(adminSession, subUserId, new ArrayList<>());
+            }
+            if (subGroup != null) {
+                deleteGroup.deleteGroup(adminSession, subGroupId, new ArrayList<>());
+            }
+        }
+    }
+
+    /**
+     * Test limiting the properties of the users to a projection
+     */
+    @Test
+    public void projectProperties() throws LoginException, RepositoryException {
+        createResourcesForAdaptTo();
+        try (ResourceResolver resourceResolver = resourceResolverFactory.getResourceResolver(
+                Collections.singletonMap(JcrResourceConstants.AUTHENTICATION_INFO_SESSION, adminSession))) {
+            Resource resource = resourceResolver.resolve(
+                    String.format("%s%s;properties='key1,memberOf'", userManagerPaths.getUserPrefix(), user1.getID()));
+            ValueMap vm = resource.getValueMap();
+            assertEquals(Set.of("key1", "memberOf"), vm.keySet());
+            assertEquals("value1", vm.get("key1", String.class));
+            assertNull(vm.get("path"));
+
+            // the projection of the users resource applies to the children
+            Resource users =
+                    resourceResolver.resolve(String.format("%s;properties='key1'", userManagerPaths.getUsersPath()));
+            Resource child = findChild(users, user1.getID());
+            assertNotNull(child);
+            assertEquals(Set.of("key1"), child.getValueMap().keySet());
+        }
+    }
+
+    /**
+     * Test that the shared property snapshots are discarded when the user changes
+     */
+    @Test
+    public void sharedPropertySnapshots() throws LoginException, RepositoryException, IOException {
+        org.osgi.service.cm.Configuration configuration = configAdmin.getConfiguration(
+                "org.apache.sling.jackrabbit.usermanager.impl.resource.AuthorizableResourceProvider", null);
+        Dictionary<String, Object> originalServiceProps = configuration.getProperties();
+        try {
+            configuration.update(replaceConfigProp(originalServiceProps, "property.snapshot.cache.size", 100));
+            new WaitForServiceUpdated(
+                    5000, 100, bundleContext, SystemUserManagerPaths.class, "property.snapshot.cache.size", 100);
+
+            String userPath = userManagerPaths.getUserPrefix() + user1.getID();
+            user1.setProperty("key1", adminSession.getValueFactory().createValue("value1"));
+            adminSession.save();
+            assertEquals("value1", readProperty(userPath, "key1"));
+            assertEquals("value1", readProperty(userPath, "key1"));
+
+            user1.setProperty("key1", adminSession.getValueFactory().createValue("value2"));
+            adminSession.save();
+            new Retry(5000, 100) {
+                @Override
+                protected boolean exec() {
+                    try {
+                        return "value2".equals(readProperty(userPath, "key1"));
+                    } catch (LoginException e) {
+                        return false;
+                    }
+                }
+            };
+        } finally {
+            configuration.update(originalServiceProps);
+            new WaitForServiceUpdated(
+                    5000,
+                    100,
+                    bundleContext,
+                    SystemUserManagerPaths.class,
+                    "property.snapshot.cache.size",
+                    originalServiceProps == null || originalServiceProps.get("property.snapshot.cache.size") == null
+                            ? 0
+                            : originalServiceProps.get("property.snapshot.cache.size"));
+        }
+    }
+
+    /**
+     * Test that the transitive memberships are answered while the membership
+     * graph is enabled and follow the changes to the groups
+     */
+    @Test
+    public void membershipGraph() throws LoginException, RepositoryException, IOException, InvalidSyntaxException {
+        String pid = "org.apache.sling.jackrabbit.usermanager.impl.resource.MembershipGraph";
+        org.osgi.service.cm.Configuration configuration = configAdmin.getConfiguration(pid, null);
+        Dictionary<String, Object> originalServiceProps = configuration.getProperties();
+        String outerGroupId = createUniqueName("group");
+        Group outerGroup = null;
+        try {
+            outerGroup = createGroup.createGroup(adminSession, outerGroupId, Collections.emptyMap(), new ArrayList<>());
+            outerGroup.addMember(group1);
+            group1.addMember(user1);
+            adminSession.save();
+
+            configuration.update(replaceConfigProp(originalServiceProps, "enabled", true));
+            String filter = String.format("(&(component.name=%s)(enabled=true))", pid);
+            new Retry(5000, 100) {
+                @Override
+                protected boolean exec() {
+                    try {
+                        return bundleContext.getServiceReferences((String) null, filter) != null;
+                    } catch (InvalidSyntaxException e) {
+                        return false;
+                    }
+                }
+            };
+
+            String userPath = userManagerPaths.getUserPrefix() + user1.getID();
+            Set<String> expected = Set.of(
+                    userManagerPaths.getGroupPrefix() + group1.getID(),
+                    userManagerPaths.getGroupPrefix() + outerGroupId);
+            assertEquals(expected, Set.of((String[]) readProperty(userPath, "memberOf")));
+
+            // the answers follow the observed changes
+            outerGroup.removeMember(group1);
+            adminSession.save();
+            Set<String> expectedAfterRemove = Set.of(userManagerPaths.getGroupPrefix() + group1.getID());
+            new Retry(5000, 100) {
+                @Override
+                protected boolean exec() {
+                    try {
+                        return expectedAfterRemove.equals(Set.of((String[]) readProperty(userPath, "memberOf")));
+                    } catch (LoginException e) {
+                        return false;
+                    }
+                }
+            };
+        } finally {
+            configuration.update(originalServiceProps);
+            adminSession.refresh(false);
+            if (outerGroup != null) {
+                deleteGroup.deleteGroup(adminSession, outerGroupId, new ArrayList<>());
+            }
+        }
+    }
+
+    private @Nullable Object readProperty(@NotNull String path, @NotNull String key) throws LoginException {
+        try (ResourceResolver resourceResolver = resourceResolverFactory.getResourceResolver(
+                Collections.singletonMap(JcrResourceConstants.AUTHENTICATION_INFO_SESSION, adminSession))) {
+            // a full read uses the property snapshot
+            return new HashMap<>(resourceResolver.resolve(path).getValueMap()).get(key);
+        }
+    }
+
+    private @NotNull List<String> listChildNames(@NotNull Resource parent) {
+        List<String> names = new ArrayList<>();
+        for (Resource child : parent.getChildren()) {
+            names.add(child.getName());
+        }
+        return names;
+    }
+
+    private @Nullable Resource findChild(@NotNull Resource parent, @NotNull String name) {
+        for (Resource child : parent.getChildren()) {
+            if (name.equals(child.getName())) {
+                return child;
+            }
+        }
+        return null;
+    }
 }
@@ -22,6 +22,7 @@ import javax.jcr.RepositoryException;
 
 import java.io.IOException;
 import java.security.Principal;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
@@ -41,6 +42,8 @@ import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
 import org.ops4j.pax.exam.spi.reactors.PerClass;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -105,6 +108,32 @@ public class PrincipalResourcesIT extends BaseAuthorizableResourcesIT {
         }
     }
 
+    /**
+     * Test paged iteration of the usermanager groups resource children lists
+     * the everyone principal first
+     */
+    @Test
+    public void listGroupsChildrenPaged() throws LoginException, RepositoryException, IOException {
+        group1 = createGroup.createGroup(
+                adminSession, createUniqueName("group"), Collections.emptyMap(), new ArrayList<>());
+        adminSession.save();
+
+        try (ResourceResolver resourceResolver = resourceResolverFactory.getResourceResolver(
+                Collections.singletonMap(JcrResourceConstants.AUTHENTICATION_INFO_SESSION, adminSession))) {
+            Resource resource = resourceResolver.resolve("/system/userManager/group;offset=0;limit=1");
+            Iterator<Resource> children = resource.listChildren();
+            assertTrue(children.hasNext());
+            assertEquals(EveryonePrincipal.NAME, children.next().getName());
+            assertFalse(children.hasNext());
+
+            resource = resourceResolver.resolve("/system/userManager/group;offset=1;limit=1");
+            children = resource.listChildren();
+            assertTrue(children.hasNext());
+            assertNotEquals(EveryonePrincipal.NAME, children.next().getName());
+            assertFalse(children.hasNext());
+        }
+    }
+
     @Test
     public void adaptResourceToMap() throws LoginException, RepositoryException {
         try (ResourceResolver resourceResolver = resourceResolverFactory.getResourceResolver(